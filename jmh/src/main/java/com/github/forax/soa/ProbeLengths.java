@@ -0,0 +1,49 @@
+package com.github.forax.soa;
+
+import java.util.Objects;
+
+/**
+ * Reports the probe lengths of the keys of a {@link StructOfArrayMap}.
+ * This class is in the package of the library because it calls the package-private method
+ * {@code StructOfArrayMap.probeLength(int)}, so it must be loaded by the same class loader
+ * as the library, which is the case in the jar of the benchmarks.
+ */
+public final class ProbeLengths {
+  private ProbeLengths() {}
+
+  // the last bucket counts all the probe lengths greater or equal to BUCKETS
+  private static final int BUCKETS = 17;
+
+  /**
+   * Returns the histogram, the average and the maximum of the probe lengths of keys stored in a map.
+   * @param map the map.
+   * @param keys the keys, all of them must be in the map.
+   * @return a human readable histogram of the probe lengths.
+   * @throws IllegalArgumentException if a key is not in the map.
+   */
+  public static String histogram(StructOfArrayMap<?> map, int[] keys) {
+    Objects.requireNonNull(map);
+    Objects.requireNonNull(keys);
+    var counts = new int[BUCKETS];
+    var sum = 0L;
+    var max = 0;
+    for (var key : keys) {
+      var probeLength = map.probeLength(key);
+      if (probeLength == 0) {
+        throw new IllegalArgumentException("key " + key + " is not in the map");
+      }
+      counts[Math.min(probeLength, BUCKETS) - 1]++;
+      sum += probeLength;
+      max = Math.max(max, probeLength);
+    }
+    var builder = new StringBuilder();
+    builder.append("average ").append(keys.length == 0? 0.0: (double) sum / keys.length)
+        .append(", max ").append(max).append('\n');
+    for (var i = 0; i < BUCKETS; i++) {
+      if (counts[i] != 0) {
+        builder.append(String.format("  %3d%s %d%n", i + 1, i == BUCKETS - 1? "+": " ", counts[i]));
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.forax.soa.jmh;
+
+import java.util.function.IntFunction;
+
+/**
+ * The record shapes used by the benchmarks.
+ */
+public enum Shape {
+  PRIMITIVE(Primitive.class, i -> new Primitive(i, i, i, i)),
+  MIXED(Mixed.class, i -> new Mixed(i, "name" + (i & 1023), i, i)),
+  WIDE(Wide.class, i -> new Wide(i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i));
+
+  public record Primitive(int x, long y, double z, float w) {}
+  public record Mixed(int id, String name, double score, long timestamp) {}
+  public record Wide(int c0, int c1, long c2, long c3, double c4, double c5, float c6, float c7,
+                     int c8, int c9, long c10, long c11, double c12, double c13, float c14, float c15) {}
+
+  private final Class<? extends Record> recordType;
+  private final IntFunction<? extends Record> factory;
+
+  Shape(Class<? extends Record> recordType, IntFunction<? extends Record> factory) {
+    this.recordType = recordType;
+    this.factory = factory;
+  }
+
+  @SuppressWarnings("unchecked")
+  public Class<Record> recordType() {
+    return (Class<Record>) recordType;
+  }
+
+  public Record create(int i) {
+    return factory.apply(i);
+  }
+}
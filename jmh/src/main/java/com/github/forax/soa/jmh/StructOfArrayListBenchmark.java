@@ -0,0 +1,102 @@
+package com.github.forax.soa.jmh;
+
+import com.github.forax.soa.StructOfArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+// mvn -B install && cd jmh && mvn -B package && java -jar target/benchmarks.jar StructOfArrayListBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StructOfArrayListBenchmark {
+  @Param({ "soa", "arraylist" })
+  private String implementation;
+
+  @Param({ "PRIMITIVE", "MIXED", "WIDE" })
+  private Shape shape;
+
+  @Param({ "1000", "100000", "1000000", "10000000" })
+  private int size;
+
+  private List<Record> list;
+  private Record element;
+
+  private List<Record> newList(int capacity) {
+    return switch (implementation) {
+      case "soa" -> StructOfArrayList.of(lookup(), shape.recordType(), capacity);
+      case "arraylist" -> new ArrayList<>(capacity);
+      default -> throw new AssertionError("unknown implementation " + implementation);
+    };
+  }
+
+  @Setup
+  public void setup() {
+    list = newList(size);
+    for (var i = 0; i < size; i++) {
+      list.add(shape.create(i));
+    }
+    element = shape.create(size - 1);
+  }
+
+  @Benchmark
+  public List<Record> add() {
+    var list = newList(0);
+    for (var i = 0; i < size; i++) {
+      list.add(shape.create(i));
+    }
+    return list;
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (var i = 0; i < size; i++) {
+      blackhole.consume(list.get(i));
+    }
+  }
+
+  @Benchmark
+  public void set() {
+    for (var i = 0; i < size; i++) {
+      list.set(i, shape.create(i));
+    }
+  }
+
+  @Benchmark
+  public int indexOf() {
+    return list.indexOf(element);
+  }
+
+  @Benchmark
+  public void iterate(Blackhole blackhole) {
+    for (var record : list) {
+      blackhole.consume(record);
+    }
+  }
+
+  @Benchmark
+  public Record removeAndAdd() {
+    // keep the size constant, StructOfArrayList swaps with the last element, ArrayList shifts
+    var removed = list.remove(size >> 1);
+    list.add(removed);
+    return removed;
+  }
+}
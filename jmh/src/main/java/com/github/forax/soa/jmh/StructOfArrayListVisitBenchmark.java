@@ -0,0 +1,61 @@
+package com.github.forax.soa.jmh;
+
+import com.github.forax.soa.StructOfArrayList;
+import com.github.forax.soa.jmh.Shape.Primitive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+// Scans all the components of a list, forEach creates a record per element,
+// forEachComponents calls a visitor with the values of the components,
+// the call to the visitor is linked to the visitor type, so it can be inlined in the loop.
+//
+// mvn -B install && cd jmh && mvn -B package && java -jar target/benchmarks.jar StructOfArrayListVisitBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StructOfArrayListVisitBenchmark {
+  public interface PrimitiveVisitor { void visit(int x, long y, double z, float w); }
+
+  @Param({ "1000", "100000", "1000000" })
+  private int size;
+
+  private StructOfArrayList<Primitive> list;
+
+  @Setup
+  public void setup() {
+    list = StructOfArrayList.of(lookup(), Primitive.class, size);
+    for (var i = 0; i < size; i++) {
+      list.add((Primitive) Shape.PRIMITIVE.create(i));
+    }
+  }
+
+  @Benchmark
+  public double forEach() {
+    var sum = new double[1];
+    list.forEach(p -> sum[0] += p.x() + p.y() + p.z() + p.w());
+    return sum[0];
+  }
+
+  @Benchmark
+  public double forEachComponents() {
+    var sum = new double[1];
+    list.forEachComponents(PrimitiveVisitor.class, (x, y, z, w) -> sum[0] += x + y + z + w);
+    return sum[0];
+  }
+}
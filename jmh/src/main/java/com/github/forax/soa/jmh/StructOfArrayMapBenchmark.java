@@ -0,0 +1,102 @@
+package com.github.forax.soa.jmh;
+
+import com.github.forax.soa.StructOfArrayMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+// mvn -B install && cd jmh && mvn -B package && java -jar target/benchmarks.jar StructOfArrayMapBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StructOfArrayMapBenchmark {
+  @Param({ "soa", "hashmap" })
+  private String implementation;
+
+  @Param({ "PRIMITIVE", "MIXED", "WIDE" })
+  private Shape shape;
+
+  @Param({ "1000", "100000", "1000000", "10000000" })
+  private int size;
+
+  private Map<Integer, Record> map;
+  private int[] keys;
+
+  private Map<Integer, Record> newMap(int capacity) {
+    return switch (implementation) {
+      case "soa" -> StructOfArrayMap.of(lookup(), shape.recordType(), capacity);
+      case "hashmap" -> new HashMap<>(capacity);
+      default -> throw new AssertionError("unknown implementation " + implementation);
+    };
+  }
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    keys = random.ints(size).toArray();
+    map = newMap(size);
+    for (var i = 0; i < size; i++) {
+      map.put(keys[i], shape.create(i));
+    }
+  }
+
+  @Benchmark
+  public Map<Integer, Record> put() {
+    var map = newMap(0);
+    for (var i = 0; i < size; i++) {
+      map.put(keys[i], shape.create(i));
+    }
+    return map;
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) {
+    for (var key : keys) {
+      blackhole.consume(map.get(key));
+    }
+  }
+
+  @Benchmark
+  public int containsKey() {
+    var count = 0;
+    for (var key : keys) {
+      if (map.containsKey(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public Record removeAndPut() {
+    // keep the size constant
+    var key = keys[size >> 1];
+    var removed = map.remove(key);
+    map.put(key, removed);
+    return removed;
+  }
+
+  @Benchmark
+  public void forEach(Blackhole blackhole) {
+    map.forEach((key, value) -> blackhole.consume(value));
+  }
+}
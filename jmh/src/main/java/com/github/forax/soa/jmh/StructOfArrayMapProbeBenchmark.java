@@ -0,0 +1,91 @@
+package com.github.forax.soa.jmh;
+
+import com.github.forax.soa.ProbeLengths;
+import com.github.forax.soa.StructOfArrayMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+// Lookups with strided keys, the keys are multiples of a power of two, up to 2^24.
+// For the large strides, the keys wrap around, so there are at most 2^32 / stride distinct keys.
+// The histogram of the probe lengths is printed at the end of each trial,
+// the main method prints the histograms without running the benchmarks.
+//
+// mvn -B install && cd jmh && mvn -B package && java -jar target/benchmarks.jar StructOfArrayMapProbeBenchmark
+// java -cp target/benchmarks.jar com.github.forax.soa.jmh.StructOfArrayMapProbeBenchmark
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StructOfArrayMapProbeBenchmark {
+  @Param({ "1", "16", "256", "4096", "65536", "1048576", "16777216" })
+  private int stride;
+
+  @Param({ "1000", "100000", "1000000" })
+  private int size;
+
+  private StructOfArrayMap<Record> map;
+  private int[] keys;
+
+  @Setup
+  public void setup() {
+    keys = IntStream.range(0, size).map(i -> i * stride).distinct().toArray();
+    map = StructOfArrayMap.of(lookup(), Shape.PRIMITIVE.recordType());
+    for (var i = 0; i < keys.length; i++) {
+      map.putInt(keys[i], Shape.PRIMITIVE.create(i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void printProbeLengths() {
+    System.out.println();
+    System.out.println("probe lengths, stride " + stride + ", size " + keys.length);
+    System.out.print(ProbeLengths.histogram(map, keys));
+  }
+
+  @Benchmark
+  public void getInt(Blackhole blackhole) {
+    for (var key : keys) {
+      blackhole.consume(map.getInt(key));
+    }
+  }
+
+  @Benchmark
+  public int containsKeyInt() {
+    var count = 0;
+    for (var key : keys) {
+      if (map.containsKeyInt(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public static void main(String[] args) {
+    for (var stride : new int[] { 1, 16, 256, 4096, 65536, 1048576, 16777216 }) {
+      var benchmark = new StructOfArrayMapProbeBenchmark();
+      benchmark.stride = stride;
+      benchmark.size = 1_000_000;
+      benchmark.setup();
+      benchmark.printProbeLengths();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.github.forax.soa;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// helper methods called by the specialized classes to store boolean components in a bitset,
+// the value of the element at index is stored at the bit (index * stride + offset),
+// stride is the number of components sharing the bitset and offset the rank of the component,
+// an off-heap bitset is a direct ByteBuffer of longs
+final class Bits {
+  private Bits() {}
+
+  static int length(int capacity, int stride) {
+    return (int) (((long) capacity * stride + 63) >>> 6);
+  }
+
+  static long[] newBits(int capacity, int stride) {
+    return new long[length(capacity, stride)];
+  }
+
+  static long[] copyOf(long[] bits, int capacity, int stride) {
+    return Arrays.copyOf(bits, length(capacity, stride));
+  }
+
+  static int capacity(long[] bits, int stride) {
+    return (int) Math.min(((long) bits.length << 6) / stride, Integer.MAX_VALUE);
+  }
+
+  static boolean get(long[] bits, int index, int stride, int offset) {
+    var bit = (long) index * stride + offset;
+    return (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  static void set(long[] bits, int index, int stride, int offset, boolean value) {
+    var bit = (long) index * stride + offset;
+    var word = (int) (bit >>> 6);
+    if (value) {
+      bits[word] |= 1L << bit;
+    } else {
+      bits[word] &= ~(1L << bit);
+    }
+  }
+
+  // copy the bits of the count first elements of src to the elements of dst starting at index,
+  // the bits are copied 64 by 64, src and dst can be the same array if the ranges do not overlap
+  static void copy(long[] src, long[] dst, int index, int count, int stride) {
+    var length = (long) count * stride;
+    var dstBit = (long) index * stride;
+    for (var bit = 0L; bit < length; bit += 64) {
+      var bitCount = length - bit;
+      var mask = bitCount >= 64? -1L: (1L << bitCount) - 1;
+      var value = src[(int) (bit >>> 6)] & mask;
+      var dst0 = dstBit + bit;
+      var word = (int) (dst0 >>> 6);
+      var shift = (int) (dst0 & 63);
+      dst[word] = (dst[word] & ~(mask << shift)) | (value << shift);
+      if (shift != 0 && (mask >>> (64 - shift)) != 0) {
+        dst[word + 1] = (dst[word + 1] & ~(mask >>> (64 - shift))) | (value >>> (64 - shift));
+      }
+    }
+  }
+
+  // the number of bytes used to store the bits of size elements
+  static int byteSize(int size, int stride) {
+    return length(size, stride) << 3;
+  }
+
+  static ByteBuffer newOffHeapBits(int capacity, int stride) {
+    return OffHeap.allocate(length(capacity, stride), 3);
+  }
+
+  static ByteBuffer copyOf(ByteBuffer bits, int capacity, int stride) {
+    return OffHeap.copyOf(bits, length(capacity, stride), 3);
+  }
+
+  static int capacity(ByteBuffer bits, int stride) {
+    return (int) Math.min(((long) OffHeap.capacity(bits, 3) << 6) / stride, Integer.MAX_VALUE);
+  }
+
+  static boolean get(ByteBuffer bits, int index, int stride, int offset) {
+    var bit = (long) index * stride + offset;
+    return (bits.getLong((int) (bit >>> 6) << 3) & (1L << bit)) != 0;
+  }
+
+  static void set(ByteBuffer bits, int index, int stride, int offset, boolean value) {
+    var bit = (long) index * stride + offset;
+    var position = (int) (bit >>> 6) << 3;
+    var word = bits.getLong(position);
+    bits.putLong(position, value? word | 1L << bit: word & ~(1L << bit));
+  }
+}
@@ -0,0 +1,359 @@
+package com.github.forax.soa;
+
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+
+public final class ChunkedStructOfArrayList$Template extends ChunkedStructOfArrayList {
+  private int[][] array0;
+  private String[][] array1;
+
+  public ChunkedStructOfArrayList$Template(int capacity) {
+    super(0, false);
+    Snippets.start();
+    array0 = (int[][]) Chunks.newChunks(int[][].class, capacity);
+    array1 = (String[][]) Chunks.newChunks(String[][].class, capacity);
+    Snippets.end();
+  }
+
+  @Override
+  final Object valueAt(int index) {
+    Snippets.start();
+    var element = new Person(array0[index >> 16][index & 0xFFFF], array1[index >> 16][index & 0xFFFF]);
+    Snippets.end();
+    return element;
+  }
+
+  @Override
+  final void valueAt(int index, Object item) {
+    var element = (Person) item;
+    Snippets.start();
+    array0[index >> 16][index & 0xFFFF] = element.age();
+    array1[index >> 16][index & 0xFFFF] = element.name();
+    Snippets.end();
+  }
+
+  @Override
+  final int intAt(int component, int index) {
+    Snippets.start();
+    if (component == 0) {
+      return array0[index >> 16][index & 0xFFFF];
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void intAt(int component, int index, int value) {
+    Snippets.start();
+    if (component == 0) {
+      array0[index >> 16][index & 0xFFFF] = value;
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final long longAt(int component, int index) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void longAt(int component, int index, long value) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final double doubleAt(int component, int index) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void doubleAt(int component, int index, double value) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final boolean booleanAt(int component, int index) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void booleanAt(int component, int index, boolean value) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final byte byteAt(int component, int index) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void byteAt(int component, int index, byte value) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final short shortAt(int component, int index) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void shortAt(int component, int index, short value) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final char charAt(int component, int index) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void charAt(int component, int index, char value) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final float floatAt(int component, int index) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void floatAt(int component, int index, float value) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object objectAt(int component, int index) {
+    Snippets.start();
+    if (component == 1) {
+      return array1[index >> 16][index & 0xFFFF];
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void objectAt(int component, int index, Object value) {
+    Snippets.start();
+    if (component == 1) {
+      array1[index >> 16][index & 0xFFFF] = (String) value;
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object columnArray(int component) {
+    return null;  // the columns are not stored in a single array
+  }
+
+  @Override
+  final void copyElement(int to, int from) {
+    Snippets.start();
+    array0[to >> 16][to & 0xFFFF] = array0[from >> 16][from & 0xFFFF];
+    array1[to >> 16][to & 0xFFFF] = array1[from >> 16][from & 0xFFFF];
+    Snippets.end();
+  }
+
+  @Override
+  final void swapElements(int i, int j) {
+    Snippets.start();
+    var value0 = array0[i >> 16][i & 0xFFFF];
+    array0[i >> 16][i & 0xFFFF] = array0[j >> 16][j & 0xFFFF];
+    array0[j >> 16][j & 0xFFFF] = value0;
+    var value1 = array1[i >> 16][i & 0xFFFF];
+    array1[i >> 16][i & 0xFFFF] = array1[j >> 16][j & 0xFFFF];
+    array1[j >> 16][j & 0xFFFF] = value1;
+    Snippets.end();
+  }
+
+  @Override
+  final void visitElements(Class visitorType, Object visitor, int expectedModCount) throws Throwable {
+    int i;  // must be declared before the snippet
+    for(i = 0; i < size; i++) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      Snippets.start();
+      // invokedynamic visit(Class, Object, int, String)V, calls the visitor with array0[i >> 16][i & 0xFFFF] and array1[i >> 16][i & 0xFFFF]
+      Snippets.end();
+    }
+  }
+
+  @Override
+  final StructOfArrayList newSnapshot() {
+    // copyAll() shares the full chunks, so the chunks can not be shared with a snapshot
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  final void zeroElement(int index) {
+    Snippets.start();
+    array1[index >> 16][index & 0xFFFF] = null;
+    Snippets.end();
+  }
+
+  public Object remove(int index) {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    Objects.checkIndex(index, size);
+    var old = valueAt(index);
+    var last = size - 1;
+    copyElement(index, last);
+    zeroElement(last);
+    size = last;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    Objects.requireNonNull(o);
+    if (!(o instanceof Person element)) {
+      return -1;
+    }
+    int i;  // must be declared before the snippet
+    Snippets.start();
+    var v0 = element.age();
+    var v1 = element.name();
+    Snippets.end();
+    for(i = 0; i < size; i++) {
+      Snippets.start();
+      if (array0[i >> 16][i & 0xFFFF] == v0 && Objects.equals(array1[i >> 16][i & 0xFFFF], v1)) {
+        return i;
+      }
+      Snippets.end();
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    Objects.requireNonNull(o);
+    if (!(o instanceof Person person)) {
+      return -1;
+    }
+    int i;  // must be declared before the snippet
+    Snippets.start();
+    var v0 = person.age();
+    var v1 = person.name();
+    Snippets.end();
+    for(i = size; --i >= 0;) {
+      Snippets.start();
+      if (array0[i >> 16][i & 0xFFFF] == v0 && Objects.equals(array1[i >> 16][i & 0xFFFF], v1)) {
+        return i;
+      }
+      Snippets.end();
+    }
+    return -1;
+  }
+
+  @Override
+  final void copyAll(int newLength) {
+    Snippets.start();
+    array0 = (int[][]) Chunks.copyOf(array0, newLength);
+    array1 = (String[][]) Chunks.copyOf(array1, newLength);
+    Snippets.end();
+  }
+
+  @Override
+  final int capacity() {
+    int capacity;  // must be declared before the snippet
+    Snippets.start();
+    capacity = Chunks.capacity(array0);
+    Snippets.end();
+    return capacity;
+  }
+
+  @Override
+  final void appendElements(StructOfArrayList list) {
+    var other = (ChunkedStructOfArrayList$Template) list;
+    var index = size;
+    var count = other.size;
+    Snippets.start();
+    Chunks.copy(other.array0, array0, index, count);
+    Chunks.copy(other.array1, array1, index, count);
+    Snippets.end();
+  }
+
+  private void resize() {
+    grow(size + 1);
+  }
+
+  @Override
+  public boolean add(Object item) {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    var element = (Person) item;
+    Objects.requireNonNull(element);
+    Snippets.start();
+    if (size == Chunks.capacity(array0)) {
+      resize();
+    }
+    Snippets.end();
+    var index = size;
+    valueAt(index, element);
+    size = index + 1;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    Snippets.start();
+    array0 = (int[][]) Chunks.newChunks(int[][].class, 0);
+    array1 = (String[][]) Chunks.newChunks(String[][].class, 0);
+    Snippets.end();
+    size = 0;
+    modCount++;
+  }
+}
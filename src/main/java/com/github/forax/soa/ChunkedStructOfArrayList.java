@@ -0,0 +1,101 @@
+package com.github.forax.soa;
+
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.Objects;
+
+/**
+ * A {@link StructOfArrayList} that stores each column in fixed size chunks instead of a single array,
+ * for the lists of hundreds of millions of elements.
+ * <p>
+ * Each column is an array of chunks of 65 536 elements, the value of the element at {@code index}
+ * is at {@code chunks[index >> 16][index & 0xFFFF]}. All the chunks are full apart the last one,
+ * so a small list does not allocate more than a plain list.
+ * When the list grows, the full chunks are kept as is and new chunks are allocated,
+ * only the last chunk (at most 65 536 elements) is copied. So growing a list never allocates
+ * a huge array, which is costly for the GC (by example a humongous allocation with G1),
+ * nor needs twice the memory of a column during the copy.
+ * <p>
+ * The boolean components are stored in bitsets that are not chunked, a bitset of 50 million elements
+ * is only 6 MB.
+ * <p>
+ * By default, the list grows like a {@link StructOfArrayList} until it reaches the size of a chunk,
+ * then chunk by chunk.
+ * <p>
+ * Because the chunks are shared when the list grows, {@link #snapshot()} is not supported.
+ * The columns are not stored in a single array, so the operations on the columns
+ * of primitive values do not use the SIMD instructions.
+ *
+ * @param <E> the type of the item, must be a record
+ *
+ * @see StructOfArrayList
+ */
+public abstract class ChunkedStructOfArrayList<E> extends StructOfArrayList<E> {
+  // below the size of a chunk, grow like a list, then allocate the chunks needed
+  private static final GrowthPolicy CHUNKED_GROWTH_POLICY = (capacity, minCapacity) -> {
+    if (minCapacity <= Chunks.SIZE) {
+      var newCapacity = capacity == 0? 16: capacity + (capacity >> 1);
+      return Math.min(Chunks.SIZE, Math.max(minCapacity, newCapacity));
+    }
+    var newCapacity = ((long) minCapacity + Chunks.MASK) & ~(long) Chunks.MASK;
+    return (int) Math.min(newCapacity, Integer.MAX_VALUE);
+  };
+
+  ChunkedStructOfArrayList(int size, boolean unmodifiable) {
+    super(size, unmodifiable);
+    growthPolicy = CHUNKED_GROWTH_POLICY;
+  }
+
+  /**
+   * Creates a chunked struct of arrays seen as a list.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @return a fresh empty list
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the list item
+   */
+  public static <T extends Record> ChunkedStructOfArrayList<T> of(Lookup lookup, Class<T> recordType) {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    return of(lookup, recordType, 0);
+  }
+
+  /**
+   * Creates a chunked struct of arrays seen as a list with a given initial capacity.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @param capacity an initial capacity
+   * @return a fresh empty list
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record or the capacity is negative
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the list item
+   */
+  public static <T extends Record> ChunkedStructOfArrayList<T> of(Lookup lookup, Class<T> recordType, int capacity) {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    try {
+      lookup.accessClass(recordType);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!recordType.isRecord()) {
+      throw new IllegalArgumentException("recordType is not a record");
+    }
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0");
+    }
+    var erasedLookup = lookup.in(recordType);
+    var defaultConstructor = RT.defaultChunkedListConstructor(erasedLookup);
+    try {
+      return (ChunkedStructOfArrayList<T>) defaultConstructor.invokeExact(capacity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw (LinkageError) new LinkageError().initCause(t);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.github.forax.soa;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+// helper methods called by the specialized classes of ChunkedStructOfArrayList,
+// a column is stored in an array of chunks, the value at index is at chunks[index >> SHIFT][index & MASK],
+// all the chunks have SIZE elements apart the last one that can be shorter,
+// so a small list does not allocate a full chunk and growing only copies the last chunk
+final class Chunks {
+  private Chunks() {}
+
+  static final int SHIFT = 16;
+  static final int SIZE = 1 << SHIFT;
+  static final int MASK = SIZE - 1;
+
+  // the number of chunks needed to store capacity elements
+  private static int chunkCount(int capacity) {
+    return (int) (((long) capacity + MASK) >> SHIFT);
+  }
+
+  // the length of the chunk at chunkIndex for an array of chunks storing capacity elements
+  private static int chunkLength(int capacity, int chunkIndex) {
+    return Math.min(SIZE, capacity - (chunkIndex << SHIFT));
+  }
+
+  // chunksType is the type of the array of chunks, by example int[][].class
+  static Object[] newChunks(Class<?> chunksType, int capacity) {
+    var chunkType = chunksType.componentType();
+    var chunkCount = chunkCount(capacity);
+    var chunks = (Object[]) Array.newInstance(chunkType, chunkCount);
+    for (var i = 0; i < chunkCount; i++) {
+      chunks[i] = Array.newInstance(chunkType.componentType(), chunkLength(capacity, i));
+    }
+    return chunks;
+  }
+
+  static int capacity(Object[] chunks) {
+    var chunkCount = chunks.length;
+    if (chunkCount == 0) {
+      return 0;
+    }
+    return ((chunkCount - 1) << SHIFT) + Array.getLength(chunks[chunkCount - 1]);
+  }
+
+  // the full chunks are shared with the new array of chunks, only the last chunk is copied,
+  // the chunks must not be used after this call
+  static Object[] copyOf(Object[] chunks, int capacity) {
+    var chunkType = chunks.getClass().componentType();
+    var chunkCount = chunkCount(capacity);
+    var newChunks = Arrays.copyOf(chunks, chunkCount);
+    for (var i = 0; i < chunkCount; i++) {
+      var chunk = newChunks[i];
+      var chunkLength = chunkLength(capacity, i);
+      if (chunk != null && Array.getLength(chunk) == chunkLength) {
+        continue;
+      }
+      var newChunk = Array.newInstance(chunkType.componentType(), chunkLength);
+      if (chunk != null) {
+        System.arraycopy(chunk, 0, newChunk, 0, Math.min(Array.getLength(chunk), chunkLength));
+      }
+      newChunks[i] = newChunk;
+    }
+    return newChunks;
+  }
+
+  // copy the count first elements of src to the elements of dst starting at index, chunk by chunk,
+  // src and dst can be the same array of chunks if the ranges do not overlap
+  static void copy(Object[] src, Object[] dst, int index, int count) {
+    var srcIndex = 0;
+    while (srcIndex < count) {
+      var dstIndex = index + srcIndex;
+      var length = Math.min(count - srcIndex, Math.min(SIZE - (srcIndex & MASK), SIZE - (dstIndex & MASK)));
+      System.arraycopy(src[srcIndex >> SHIFT], srcIndex & MASK, dst[dstIndex >> SHIFT], dstIndex & MASK, length);
+      srcIndex += length;
+    }
+  }
+}
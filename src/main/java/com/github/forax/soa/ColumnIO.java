@@ -0,0 +1,234 @@
+package com.github.forax.soa;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// bulk reads and writes of the columns of a struct of arrays to a blocking channel,
+// a column is a block starting with a tag (the descriptor of its element type) and its length,
+// followed by the values copied from/to the array through a buffer using the views of the buffer,
+// a string is written as its length in bytes (-1 means null) followed by its UTF-8 bytes
+final class ColumnIO {
+  private ColumnIO() {}
+
+  private static final int BUFFER_SIZE = 64 * 1_024;
+
+  @FunctionalInterface
+  private interface BulkCopy {
+    // copy count values starting at offset in the array from/to the buffer at its current position
+    void copy(int offset, int count);
+  }
+
+  static final class Writer {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    Writer(WritableByteChannel channel, ByteOrder order) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(order);
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    private void ensureWritable(int byteCount) throws IOException {
+      if (buffer.remaining() < byteCount) {
+        flush();
+      }
+    }
+
+    void writeByte(byte value) throws IOException {
+      ensureWritable(1);
+      buffer.put(value);
+    }
+
+    void writeInt(int value) throws IOException {
+      ensureWritable(4);
+      buffer.putInt(value);
+    }
+
+    void writeString(String value) throws IOException {
+      if (value == null) {
+        writeInt(-1);
+        return;
+      }
+      var bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      writeBulk(bytes.length, 0, (offset, count) -> buffer.put(buffer.position(), bytes, offset, count));
+    }
+
+    private void writeBulk(int length, int shift, BulkCopy copy) throws IOException {
+      for (var offset = 0; offset < length;) {
+        ensureWritable(1 << shift);
+        var count = Math.min(length - offset, buffer.remaining() >> shift);
+        copy.copy(offset, count);
+        buffer.position(buffer.position() + (count << shift));
+        offset += count;
+      }
+    }
+
+    private void writeHeader(char tag, int length) throws IOException {
+      writeByte((byte) tag);
+      writeInt(length);
+    }
+
+    void writeColumn(Object column) throws IOException {
+      if (column instanceof int[] array) {
+        writeHeader('I', array.length);
+        writeBulk(array.length, 2, (offset, count) -> buffer.asIntBuffer().put(array, offset, count));
+      } else if (column instanceof long[] array) {
+        writeHeader('J', array.length);
+        writeBulk(array.length, 3, (offset, count) -> buffer.asLongBuffer().put(array, offset, count));
+      } else if (column instanceof double[] array) {
+        writeHeader('D', array.length);
+        writeBulk(array.length, 3, (offset, count) -> buffer.asDoubleBuffer().put(array, offset, count));
+      } else if (column instanceof float[] array) {
+        writeHeader('F', array.length);
+        writeBulk(array.length, 2, (offset, count) -> buffer.asFloatBuffer().put(array, offset, count));
+      } else if (column instanceof short[] array) {
+        writeHeader('S', array.length);
+        writeBulk(array.length, 1, (offset, count) -> buffer.asShortBuffer().put(array, offset, count));
+      } else if (column instanceof char[] array) {
+        writeHeader('C', array.length);
+        writeBulk(array.length, 1, (offset, count) -> buffer.asCharBuffer().put(array, offset, count));
+      } else if (column instanceof byte[] array) {
+        writeHeader('B', array.length);
+        writeBulk(array.length, 0, (offset, count) -> buffer.put(buffer.position(), array, offset, count));
+      } else if (column instanceof Object[] array) {
+        writeHeader('L', array.length);
+        for (var value : array) {
+          writeString((String) value);
+        }
+      } else {
+        throw new AssertionError("invalid column " + column);
+      }
+    }
+  }
+
+  static final class Reader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    Reader(ReadableByteChannel channel) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).limit(0);
+    }
+
+    void order(ByteOrder order) {
+      buffer.order(order);
+    }
+
+    private void ensureReadable(int byteCount) throws IOException {
+      if (buffer.remaining() >= byteCount) {
+        return;
+      }
+      buffer.compact();
+      while (buffer.position() < byteCount) {
+        if (channel.read(buffer) == -1) {
+          throw new EOFException();
+        }
+      }
+      buffer.flip();
+    }
+
+    byte readByte() throws IOException {
+      ensureReadable(1);
+      return buffer.get();
+    }
+
+    int readInt() throws IOException {
+      ensureReadable(4);
+      return buffer.getInt();
+    }
+
+    private int readLength() throws IOException {
+      var length = readInt();
+      if (length < 0) {
+        throw new IOException("invalid length " + length);
+      }
+      return length;
+    }
+
+    String readString() throws IOException {
+      var length = readInt();
+      if (length == -1) {
+        return null;
+      }
+      if (length < 0) {
+        throw new IOException("invalid length " + length);
+      }
+      var bytes = new byte[length];
+      readBulk(length, 0, (offset, count) -> buffer.get(buffer.position(), bytes, offset, count));
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readBulk(int length, int shift, BulkCopy copy) throws IOException {
+      for (var offset = 0; offset < length;) {
+        ensureReadable(1 << shift);
+        var count = Math.min(length - offset, buffer.remaining() >> shift);
+        copy.copy(offset, count);
+        buffer.position(buffer.position() + (count << shift));
+        offset += count;
+      }
+    }
+
+    Object readColumn() throws IOException {
+      var tag = (char) readByte();
+      var length = readLength();
+      switch (tag) {
+        case 'I' -> {
+          var array = new int[length];
+          readBulk(length, 2, (offset, count) -> buffer.asIntBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'J' -> {
+          var array = new long[length];
+          readBulk(length, 3, (offset, count) -> buffer.asLongBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'D' -> {
+          var array = new double[length];
+          readBulk(length, 3, (offset, count) -> buffer.asDoubleBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'F' -> {
+          var array = new float[length];
+          readBulk(length, 2, (offset, count) -> buffer.asFloatBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'S' -> {
+          var array = new short[length];
+          readBulk(length, 1, (offset, count) -> buffer.asShortBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'C' -> {
+          var array = new char[length];
+          readBulk(length, 1, (offset, count) -> buffer.asCharBuffer().get(array, offset, count));
+          return array;
+        }
+        case 'B' -> {
+          var array = new byte[length];
+          readBulk(length, 0, (offset, count) -> buffer.get(buffer.position(), array, offset, count));
+          return array;
+        }
+        case 'L' -> {
+          var array = new Object[length];
+          for (var i = 0; i < length; i++) {
+            array[i] = readString();
+          }
+          return array;
+        }
+        default -> throw new IOException("invalid column tag " + tag);
+      }
+    }
+  }
+}
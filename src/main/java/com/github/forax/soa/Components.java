@@ -0,0 +1,108 @@
+package com.github.forax.soa;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+// the description of the components of a record and of how they are stored,
+// this class does not depend on ASM so it can be used at runtime without ASM
+final class Components {
+  private Components() {}
+
+  // how a component is stored, a boolean component is stored in a bitset,
+  // either its own or a bitset shared by all the boolean components of the record,
+  // an enum component is stored as its ordinal + 1 (0 means null) in a byte or a short array,
+  // a component annotated with @DictionaryEncoded is stored as its code in a dictionary (0 means null),
+  // the static methods are declared here and not in Templates because RT calls them and should not load ASM
+  enum Storage {
+    ARRAY, BITSET, SHARED_BITSET, BYTE_ORDINAL, SHORT_ORDINAL, DICTIONARY;
+
+    static Storage of(Class<?> type, boolean packedBooleans) {
+      if (type != boolean.class) {
+        return ARRAY;
+      }
+      return packedBooleans? SHARED_BITSET: BITSET;
+    }
+
+    static Storage ofEnum(int enumConstantCount) {
+      if (enumConstantCount < 1 << 8) {
+        return BYTE_ORDINAL;
+      }
+      if (enumConstantCount < 1 << 16) {
+        return SHORT_ORDINAL;
+      }
+      return ARRAY;
+    }
+  }
+
+  // the name of the component of a nested record is a path, by example "start.x",
+  // an off-heap component is stored in a direct ByteBuffer instead of an array,
+  // a chunked component is stored in an array of chunks (see Chunks) instead of an array
+  record RecordComponent(String name, Class<?> type, Storage storage, boolean offHeap, boolean chunked) {
+    RecordComponent(String name, Class<?> type, Storage storage) {
+      this(name, type, storage, false, false);
+    }
+  }
+
+  // the components stored in an array of primitive values or in a bitset are stored off-heap
+  static List<RecordComponent> offHeap(List<RecordComponent> components) {
+    return components.stream()
+        .map(c -> storageType(c).isPrimitive()? new RecordComponent(c.name(), c.type(), c.storage(), true, false): c)
+        .toList();
+  }
+
+  // the components stored in an array are stored in chunks, the bitsets stay a single array
+  static List<RecordComponent> chunked(List<RecordComponent> components) {
+    return components.stream()
+        .map(c -> isBitSet(c)? c: new RecordComponent(c.name(), c.type(), c.storage(), false, true))
+        .toList();
+  }
+
+  // all the components stored in the shared bitset use the field of the first one
+  static int fieldIndex(List<RecordComponent> components, int i) {
+    if (components.get(i).storage() != Storage.SHARED_BITSET) {
+      return i;
+    }
+    return IntStream.range(0, components.size())
+        .filter(j -> components.get(j).storage() == Storage.SHARED_BITSET)
+        .findFirst()
+        .orElseThrow();
+  }
+
+  // true if the component at index i has its own field
+  static boolean hasField(List<RecordComponent> components, int i) {
+    return fieldIndex(components, i) == i;
+  }
+
+  static boolean isBitSet(RecordComponent component) {
+    return component.storage() == Storage.BITSET || component.storage() == Storage.SHARED_BITSET;
+  }
+
+  // the type of the elements of the array storing the component
+  static Class<?> storageType(RecordComponent component) {
+    return switch (component.storage()) {
+      case ARRAY -> component.type();
+      case BITSET, SHARED_BITSET -> long.class;
+      case BYTE_ORDINAL -> byte.class;
+      case SHORT_ORDINAL -> short.class;
+      case DICTIONARY -> int.class;
+    };
+  }
+
+  // number of components sharing the bitset of the component at index i
+  static int bitStride(List<RecordComponent> components, int i) {
+    var storage = components.get(i).storage();
+    if (storage != Storage.SHARED_BITSET) {
+      return 1;
+    }
+    return (int) components.stream().filter(c -> c.storage() == storage).count();
+  }
+
+  // rank of the component at index i in its bitset
+  static int bitOffset(List<RecordComponent> components, int i) {
+    var storage = components.get(i).storage();
+    if (storage != Storage.SHARED_BITSET) {
+      return 0;
+    }
+    return (int) components.subList(0, i).stream().filter(c -> c.storage() == storage).count();
+  }
+}
@@ -0,0 +1,294 @@
+package com.github.forax.soa;
+
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A thread-safe hash map that stores integer keys and record values inside a struct of arrays.
+ * <p>
+ * This map is a {@link StructOfArrayMap} guarded by a {@link StampedLock}.
+ * The methods that only read the map, {@link #getInt(int)}, {@link #getOrDefaultInt(int, Object)},
+ * {@link #containsKeyInt(int)} and {@link #size()} first try an optimistic read that does not
+ * acquire the lock, the result is used only if no update happened during the read,
+ * otherwise the read is retried holding the read lock.
+ * A record is never created from values read optimistically, the optimistic read only
+ * finds the key, the record is then created holding the read lock.
+ * So the searches do not contend with each other and only the updates pay for the coordination.
+ * <p>
+ * The methods that modify the map, {@link #putInt(int, Object)}, {@link #putIfAbsentInt(int, Object)},
+ * {@link #removeInt(int)} and {@link #clear()} hold the write lock.
+ * <p>
+ * Null as a value is not supported (it's not a record after all) so all methods that takes
+ * a value as parameter throw a {@link NullPointerException} if {@code null} is passed.
+ * <p>
+ * This map does not implement {@link java.util.Map}, {@link #toMap()} returns a copy of the map
+ * as a {@link StructOfArrayMap}.
+ *
+ * @param <E> the type of the item
+ *
+ * @see StructOfArrayMap
+ */
+public final class ConcurrentStructOfArrayMap<E> {
+  private final StructOfArrayMap<E> map;
+  private final Lookup lookup;
+  private final Class<? extends Record> recordType;
+  private final StampedLock lock = new StampedLock();
+
+  private ConcurrentStructOfArrayMap(StructOfArrayMap<E> map, Lookup lookup, Class<? extends Record> recordType) {
+    this.map = map;
+    this.lookup = lookup;
+    this.recordType = recordType;
+  }
+
+  /**
+   * Returns the number of keys of the map.
+   *
+   * @return the number of keys of the map.
+   */
+  public int size() {
+    var stamp = lock.tryOptimisticRead();
+    var size = map.size;
+    if (lock.validate(stamp)) {
+      return size;
+    }
+    stamp = lock.readLock();
+    try {
+      return map.size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns true if the map is empty.
+   *
+   * @return true if the map is empty.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Returns true if the map contains the key {@code key}.
+   *
+   * @param key a key
+   * @return true if the map contains the key.
+   */
+  public boolean containsKeyInt(int key) {
+    var stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      var indexes = map.indexes;
+      var keys = map.keys;
+      var index = StructOfArrayMap.probe(indexes, keys, key);
+      if (lock.validate(stamp)) {
+        return index != StructOfArrayMap.EMPTY;
+      }
+      // the arrays were read during an update, retry with the read lock
+    }
+    stamp = lock.readLock();
+    try {
+      return map.containsKeyInt(key);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the value associated to the key {@code key} or null.
+   *
+   * @param key a key
+   * @return the value associated to the key or null.
+   */
+  public E getInt(int key) {
+    return getOrDefaultInt(key, null);
+  }
+
+  /**
+   * Returns the value associated to the key {@code key} or the default value.
+   * <p>
+   * The key is first searched without acquiring the lock, if an update happened
+   * during the search, the key is searched again holding the read lock.
+   * The record is always created holding the read lock.
+   *
+   * @param key a key
+   * @param defaultValue the value returned if there is no value associated to the key
+   * @return the value associated to the key or the default value.
+   */
+  public E getOrDefaultInt(int key, E defaultValue) {
+    var stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      var indexes = map.indexes;
+      var keys = map.keys;
+      var index = StructOfArrayMap.probe(indexes, keys, key);
+      if (lock.validate(stamp)) {
+        if (index == StructOfArrayMap.EMPTY) {
+          return defaultValue;
+        }
+        // the record is only created if no update happened since the index was read,
+        // holding the read lock so the record constructor never sees a torn element
+        stamp = lock.tryConvertToReadLock(stamp);
+        if (stamp != 0) {
+          try {
+            return map.valueAt(index);
+          } finally {
+            lock.unlockRead(stamp);
+          }
+        }
+      }
+      // the arrays were read during an update, retry with the read lock
+    }
+    stamp = lock.readLock();
+    try {
+      return map.getOrDefaultInt(key, defaultValue);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Associates the value {@code value} to the key {@code key}.
+   *
+   * @param key a key
+   * @param value a value
+   * @return the value previously associated to the key or null.
+   * @throws NullPointerException if the value is null
+   */
+  public E putInt(int key, E value) {
+    Objects.requireNonNull(value);
+    var stamp = lock.writeLock();
+    try {
+      return map.putInt(key, value);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Associates the value {@code value} to the key {@code key} if the key is not already in the map.
+   *
+   * @param key a key
+   * @param value a value
+   * @return the value associated to the key or null if the value was inserted.
+   * @throws NullPointerException if the value is null
+   */
+  public E putIfAbsentInt(int key, E value) {
+    Objects.requireNonNull(value);
+    var stamp = lock.writeLock();
+    try {
+      var old = map.getInt(key);
+      if (old == null) {
+        map.putInt(key, value);
+      }
+      return old;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes the value associated to the key {@code key}.
+   *
+   * @param key a key
+   * @return the value previously associated to the key or null.
+   */
+  public E removeInt(int key) {
+    var stamp = lock.writeLock();
+    try {
+      return map.removeInt(key);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes all the keys and values of the map.
+   */
+  public void clear() {
+    var stamp = lock.writeLock();
+    try {
+      map.clear();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Calls the action with each key and value of the map holding the read lock,
+   * so the action should not modify the map.
+   *
+   * @param action an action called with each key and value
+   * @throws NullPointerException if the action is null
+   */
+  public void forEach(BiConsumer<? super Integer, ? super E> action) {
+    Objects.requireNonNull(action);
+    var stamp = lock.readLock();
+    try {
+      map.forEach(action);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns a copy of the map.
+   *
+   * @return a new map containing the keys and values of this map.
+   */
+  public StructOfArrayMap<E> toMap() {
+    var stamp = lock.readLock();
+    try {
+      @SuppressWarnings("unchecked")
+      var copy = (StructOfArrayMap<E>) StructOfArrayMap.of(lookup, recordType, map.size);
+      copy.putAll(map);
+      return copy;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public String toString() {
+    var stamp = lock.readLock();
+    try {
+      return map.toString();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Create an empty concurrent map.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @return a fresh empty map
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the map value
+   */
+  public static <T extends Record> ConcurrentStructOfArrayMap<T> of(Lookup lookup, Class<T> recordType) {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    return of(lookup, recordType, 0);
+  }
+
+  /**
+   * Create an empty concurrent map with an initial capacity.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @param capacity an initial capacity
+   * @return a fresh empty map
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record or the capacity is negative
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the map value
+   */
+  public static <T extends Record> ConcurrentStructOfArrayMap<T> of(Lookup lookup, Class<T> recordType, int capacity) {
+    var map = StructOfArrayMap.of(lookup, recordType, capacity);
+    return new ConcurrentStructOfArrayMap<>(map, lookup, recordType);
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.forax.soa;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// a dictionary storing the values of a component annotated with @DictionaryEncoded,
+// a value is stored as its code in the dictionary, 0 means null,
+// a dictionary is shared by all the lists and maps of a record type so it is thread safe
+final class Dictionary {
+  private final ConcurrentHashMap<Object, Integer> codes = new ConcurrentHashMap<>();
+  private volatile Object[] values = new Object[16];
+  private int size = 1;  // code 0 is null
+
+  int encode(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    var code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    return add(value);
+  }
+
+  private synchronized int add(Object value) {
+    var code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    var values = this.values;
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size << 1);
+      this.values = values;
+    }
+    var newCode = size++;
+    values[newCode] = value;
+    codes.put(value, newCode);  // publish the value
+    return newCode;
+  }
+
+  // returns the code of the value or -1 if the value is not in the dictionary
+  int lookup(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    var code = codes.get(value);
+    return code == null? -1: code;
+  }
+
+  Object decode(int code) {
+    return values[code];
+  }
+}
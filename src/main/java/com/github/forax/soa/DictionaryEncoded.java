@@ -0,0 +1,29 @@
+package com.github.forax.soa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks to store the values of the annotated record component in a dictionary.
+ * <pre>
+ *   record Customer(String name, &#64;DictionaryEncoded String country) {}
+ * </pre>
+ * <p>
+ * Each distinct value is stored once in a dictionary shared by all the lists and maps
+ * of the record type, and the column only stores the code of the value in an {@code int} array.
+ * The values read from the column are the instances stored in the dictionary, so equal values
+ * are the same instance. {@link StructOfArrayList#indexOf(Object)} and
+ * {@link StructOfArrayMap#containsValue(Object)} compare the codes instead of calling
+ * {@link Object#equals(Object)}.
+ * <p>
+ * This encoding is only suitable for components with few distinct values, like a country or a status,
+ * because the values are never removed from the dictionary. The values must be immutable
+ * and implement {@code equals} and {@code hashCode}, which is the case of {@link String}.
+ * This annotation can not be used on a component of primitive type.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.RECORD_COMPONENT)
+public @interface DictionaryEncoded {
+}
@@ -0,0 +1,43 @@
+package com.github.forax.soa;
+
+import com.github.forax.soa.StructOfArrayList.Comparison;
+
+// loops on the first size values of the arrays of the columns,
+// vectorized if the module jdk.incubator.vector is available (--add-modules jdk.incubator.vector),
+// scalar otherwise, min() and max() require size > 0
+abstract class Kernels {
+  static final Kernels KERNELS = kernels();
+
+  private static Kernels kernels() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return new ScalarKernels();
+    }
+    // VectorKernels is loaded by name, so it is not linked if the module is not available
+    try {
+      return (Kernels) Class.forName("com.github.forax.soa.VectorKernels").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return new ScalarKernels();
+    }
+  }
+
+  abstract int count(int[] array, int size, Comparison comparison, int value);
+  abstract int count(long[] array, int size, Comparison comparison, long value);
+  abstract int count(double[] array, int size, Comparison comparison, double value);
+
+  // store the indexes of the matching values in indexes and return the number of indexes
+  abstract int filterIndexes(int[] array, int size, Comparison comparison, int value, int[] indexes);
+  abstract int filterIndexes(long[] array, int size, Comparison comparison, long value, int[] indexes);
+  abstract int filterIndexes(double[] array, int size, Comparison comparison, double value, int[] indexes);
+
+  abstract int min(int[] array, int size);
+  abstract long min(long[] array, int size);
+  abstract double min(double[] array, int size);
+
+  abstract int max(int[] array, int size);
+  abstract long max(long[] array, int size);
+  abstract double max(double[] array, int size);
+
+  abstract long sum(int[] array, int size);
+  abstract long sum(long[] array, int size);
+  abstract double sum(double[] array, int size);
+}
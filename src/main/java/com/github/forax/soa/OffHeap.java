@@ -0,0 +1,71 @@
+package com.github.forax.soa;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+// helper methods called by the specialized classes of OffHeapStructOfArrayList,
+// a column is stored in a direct buffer, the value at index is at the offset (index << shift)
+// with shift the log2 of the size of the value
+final class OffHeap {
+  private OffHeap() {}
+
+  // Unsafe.invokeCleaner(ByteBuffer) bound to the instance of sun.misc.Unsafe,
+  // this is the only access to sun.misc.Unsafe, it is found by reflection so the code does not
+  // reference an internal API at compile time, null if not available (jdk.unsupported not present),
+  // in that case the memory of a buffer is released by the GC when the buffer is not reachable anymore
+  private static final MethodHandle INVOKE_CLEANER;
+  static {
+    MethodHandle invokeCleaner;
+    try {
+      var unsafeClass = Class.forName("sun.misc.Unsafe");
+      var field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      invokeCleaner = MethodHandles.publicLookup()
+          .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+          .bindTo(field.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      invokeCleaner = null;
+    }
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  static ByteBuffer allocate(int capacity, int shift) {
+    if (capacity > Integer.MAX_VALUE >> shift) {
+      throw new OutOfMemoryError("capacity too large " + capacity);
+    }
+    return ByteBuffer.allocateDirect(capacity << shift).order(ByteOrder.nativeOrder());
+  }
+
+  static ByteBuffer copyOf(ByteBuffer buffer, int capacity, int shift) {
+    var newBuffer = allocate(capacity, shift);
+    newBuffer.put(0, buffer, 0, Math.min(buffer.capacity(), newBuffer.capacity()));
+    free(buffer);
+    return newBuffer;
+  }
+
+  static int capacity(ByteBuffer buffer, int shift) {
+    return buffer.capacity() >> shift;
+  }
+
+  // free the memory now instead of waiting the GC, the buffer must not be used after,
+  // a buffer mapped in read-write mode is written back to its file before being unmapped
+  static void free(ByteBuffer buffer) {
+    if (buffer instanceof MappedByteBuffer mappedBuffer && !mappedBuffer.isReadOnly()) {
+      mappedBuffer.force();
+    }
+    if (INVOKE_CLEANER == null) {
+      return;  // the GC will free the memory
+    }
+    try {
+      INVOKE_CLEANER.invokeExact(buffer);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw (LinkageError) new LinkageError().initCause(t);
+    }
+  }
+}
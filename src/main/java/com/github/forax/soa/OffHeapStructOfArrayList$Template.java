@@ -0,0 +1,402 @@
+package com.github.forax.soa;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+
+public final class OffHeapStructOfArrayList$Template extends OffHeapStructOfArrayList {
+  private ByteBuffer array0;
+  private String[] array1;
+
+  /* snippet */
+  public OffHeapStructOfArrayList$Template(int size, boolean unmodifiable, ByteBuffer array0, String[] array1) {
+    super(size, unmodifiable);
+    this.array0 = array0;
+    this.array1 = array1;
+  }
+
+  public OffHeapStructOfArrayList$Template(int capacity) {
+    super(0, false);
+    Snippets.start();
+    array0 = OffHeap.allocate(capacity, 2);
+    array1 = new String[capacity];
+    Snippets.end();
+  }
+
+  @Override
+  final Object valueAt(int index) {
+    Snippets.start();
+    var element = new Person(array0.getInt(index << 2), array1[index]);
+    Snippets.end();
+    return element;
+  }
+
+  @Override
+  final void valueAt(int index, Object item) {
+    var element = (Person) item;
+    Snippets.start();
+    array0.putInt(index << 2, element.age());
+    array1[index] = element.name();
+    Snippets.end();
+  }
+
+  @Override
+  final int intAt(int component, int index) {
+    Snippets.start();
+    if (component == 0) {
+      return array0.getInt(index << 2);
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void intAt(int component, int index, int value) {
+    Snippets.start();
+    if (component == 0) {
+      array0.putInt(index << 2, value);
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final long longAt(int component, int index) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void longAt(int component, int index, long value) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final double doubleAt(int component, int index) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void doubleAt(int component, int index, double value) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final boolean booleanAt(int component, int index) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void booleanAt(int component, int index, boolean value) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final byte byteAt(int component, int index) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void byteAt(int component, int index, byte value) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final short shortAt(int component, int index) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void shortAt(int component, int index, short value) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final char charAt(int component, int index) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void charAt(int component, int index, char value) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final float floatAt(int component, int index) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void floatAt(int component, int index, float value) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object objectAt(int component, int index) {
+    Snippets.start();
+    if (component == 1) {
+      return array1[index];
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void objectAt(int component, int index, Object value) {
+    Snippets.start();
+    if (component == 1) {
+      array1[index] = (String) value;
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object columnArray(int component) {
+    return null;  // the columns are not stored in arrays
+  }
+
+  @Override
+  final void copyElement(int to, int from) {
+    Snippets.start();
+    array0.putInt(to << 2, array0.getInt(from << 2));
+    array1[to] = array1[from];
+    Snippets.end();
+  }
+
+  @Override
+  final void swapElements(int i, int j) {
+    Snippets.start();
+    var value0 = array0.getInt(i << 2);
+    array0.putInt(i << 2, array0.getInt(j << 2));
+    array0.putInt(j << 2, value0);
+    var value1 = array1[i];
+    array1[i] = array1[j];
+    array1[j] = value1;
+    Snippets.end();
+  }
+
+  @Override
+  final void visitElements(Class visitorType, Object visitor, int expectedModCount) throws Throwable {
+    int i;  // must be declared before the snippet
+    for(i = 0; i < size; i++) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      Snippets.start();
+      // invokedynamic visit(Class, Object, int, String)V, calls the visitor with array0.getInt(i << 2) and array1[i]
+      Snippets.end();
+    }
+  }
+
+  @Override
+  final StructOfArrayList newSnapshot() {
+    // the memory of an off-heap list is freed by close(), it can not be shared
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  final void zeroElement(int index) {
+    Snippets.start();
+    array1[index] = null;
+    Snippets.end();
+  }
+
+  public Object remove(int index) {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    Objects.checkIndex(index, size);
+    var old = valueAt(index);
+    var last = size - 1;
+    copyElement(index, last);
+    zeroElement(last);
+    size = last;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    Objects.requireNonNull(o);
+    if (!(o instanceof Person element)) {
+      return -1;
+    }
+    int i;  // must be declared before the snippet
+    Snippets.start();
+    var v0 = element.age();
+    var v1 = element.name();
+    Snippets.end();
+    for(i = 0; i < size; i++) {
+      Snippets.start();
+      if (array0.getInt(i << 2) == v0 && Objects.equals(array1[i], v1)) {
+        return i;
+      }
+      Snippets.end();
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    Objects.requireNonNull(o);
+    if (!(o instanceof Person person)) {
+      return -1;
+    }
+    int i;  // must be declared before the snippet
+    Snippets.start();
+    var v0 = person.age();
+    var v1 = person.name();
+    Snippets.end();
+    for(i = size; --i >= 0;) {
+      Snippets.start();
+      if (array0.getInt(i << 2) == v0 && Objects.equals(array1[i], v1)) {
+        return i;
+      }
+      Snippets.end();
+    }
+    return -1;
+  }
+
+  @Override
+  final void copyAll(int newLength) {
+    Snippets.start();
+    array0 = OffHeap.copyOf(array0, newLength, 2);
+    array1 = Arrays.copyOf(array1, newLength);
+    Snippets.end();
+  }
+
+  @Override
+  final int capacity() {
+    int capacity;  // must be declared before the snippet
+    Snippets.start();
+    capacity = OffHeap.capacity(array0, 2);
+    Snippets.end();
+    return capacity;
+  }
+
+  @Override
+  final void appendElements(StructOfArrayList list) {
+    // the elements are copied one by one, the columns are already big enough
+    var index = size;
+    var count = list.size;
+    for(var i = 0; i < count; i++) {
+      valueAt(index + i, list.valueAt(i));
+    }
+  }
+
+  private void resize() {
+    grow(size + 1);
+  }
+
+  @Override
+  public boolean add(Object item) {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    if (closed) {
+      throw new IllegalStateException("list closed");
+    }
+    var element = (Person) item;
+    Objects.requireNonNull(element);
+    Snippets.start();
+    if (size == OffHeap.capacity(array0, 2)) {
+      resize();
+    }
+    Snippets.end();
+    var index = size;
+    valueAt(index, element);
+    size = index + 1;
+    modCount++;
+    return true;
+  }
+
+  private void freeAll() {
+    Snippets.start();
+    OffHeap.free(array0);
+    Snippets.end();
+  }
+
+  private void resetAll() {
+    Snippets.start();
+    array0 = OffHeap.allocate(0, 2);
+    array1 = new String[0];
+    Snippets.end();
+  }
+
+  @Override
+  public void clear() {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    freeAll();
+    resetAll();
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  final ByteBuffer[] columns(int size) {
+    ByteBuffer[] columns;  // must be declared before the snippet
+    Snippets.start();
+    columns = new ByteBuffer[] { array0.slice(0, size << 2), null };
+    Snippets.end();
+    return columns;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    freeAll();
+    resetAll();
+    size = 0;
+    modCount++;
+    closed = true;
+  }
+}
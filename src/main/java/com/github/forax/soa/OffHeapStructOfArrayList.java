@@ -0,0 +1,329 @@
+package com.github.forax.soa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A {@link StructOfArrayList} that stores the primitive components of the records outside
+ * of the Java heap, so the columns are not scanned nor copied by the GC.
+ * <p>
+ * Each column of primitive values (including the ordinals of the enums and the codes of
+ * the {@link DictionaryEncoded} components) is stored in a direct {@link java.nio.ByteBuffer}.
+ * The boolean components are stored in bitsets and the other components are stored in arrays,
+ * both on the Java heap.
+ * <p>
+ * The native memory is released by {@link #close()}, or by the GC if the list is not closed.
+ * Once closed, the list is empty and elements can not be added anymore.
+ * <pre>
+ *   try(var list = OffHeapStructOfArrayList.of(lookup(), Point.class, 10_000_000)) {
+ *     ...
+ *   }
+ * </pre>
+ * <p>
+ * A list can be persisted to a directory with {@link #writeTo(Path)}, one file per column, and
+ * reopened later with {@link #map(Lookup, Class, Path, MapMode)} without deserialization,
+ * the files are mapped in memory so the pages are loaded lazily and shared between the processes.
+ * <pre>
+ *   list.writeTo(directory);
+ *   ...
+ *   try(var mappedList = OffHeapStructOfArrayList.map(lookup(), Point.class, directory, MapMode.READ_ONLY)) {
+ *     ...
+ *   }
+ * </pre>
+ * <p>
+ * A column can not store more than 2 GB, by example no more than 268 435 455 long values.
+ *
+ * @param <E> the type of the item, must be a record
+ *
+ * @see StructOfArrayList
+ */
+public abstract class OffHeapStructOfArrayList<E> extends StructOfArrayList<E> implements AutoCloseable {
+  boolean closed;
+
+  OffHeapStructOfArrayList(int size, boolean unmodifiable) {
+    super(size, unmodifiable);
+  }
+
+  @Override
+  final void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("list closed");
+    }
+  }
+
+  // the columns truncated to size elements, one per field, null if the field is not stored off-heap
+  abstract ByteBuffer[] columns(int size);
+
+  /**
+   * Releases the native memory used by the list.
+   * After this call, the list is empty and calling {@link #add(Object)}, {@link #addAll(java.util.Collection)},
+   * {@link #ensureCapacity(int)} or {@link #trimToSize()} throws an {@link IllegalStateException}.
+   * Calling this method several times has no effect.
+   * <p>
+   * If the list was created by {@link #map(Lookup, Class, Path, MapMode)}, the files are unmapped,
+   * the modifications done in {@link MapMode#READ_WRITE} mode are written back to the files before.
+   */
+  @Override
+  public abstract void close();
+
+  private static final int MAGIC = 0x534f4131;  // SOA1
+  private static final String HEADER = "header";
+  private static final String COLUMN_SUFFIX = ".column";
+
+  // the components stored off-heap as primitive values, ordinals or bits can be persisted,
+  // a component stored in an array of objects or as a code of a dictionary can not
+  private static boolean isPersistable(Components.RecordComponent component) {
+    return switch (component.storage()) {
+      case ARRAY -> component.type().isPrimitive();
+      case BITSET, SHARED_BITSET, BYTE_ORDINAL, SHORT_ORDINAL -> true;
+      case DICTIONARY -> false;
+    };
+  }
+
+  private static String notPersistableMessage(List<Components.RecordComponent> components) {
+    return components.stream()
+        .filter(component -> !isPersistable(component))
+        .map(component -> "component " + component.name() + " can not be persisted")
+        .findFirst()
+        .orElse(null);
+  }
+
+  // the name of the file of each column, a bitset shared by several components is named after the first one
+  private static List<String> columnNames(List<Components.RecordComponent> components) {
+    var names = new ArrayList<String>();
+    var sharedBitSet = false;
+    for (var component : components) {
+      if (component.storage() == Components.Storage.SHARED_BITSET) {
+        if (sharedBitSet) {
+          continue;
+        }
+        sharedBitSet = true;
+      }
+      names.add(component.name());
+    }
+    return names;
+  }
+
+  /**
+   * Writes the elements of the list into a directory, one file per column plus a header file.
+   * The directory is created if it does not exist and the existing files are overwritten.
+   * The files use the byte order of the platform.
+   *
+   * @param directory a directory
+   * @throws NullPointerException if the directory is null
+   * @throws UnsupportedOperationException if a component is not a primitive value or an enum,
+   *   or is annotated with {@link DictionaryEncoded}
+   * @throws IOException if an I/O error occurs
+   *
+   * @see #map(Lookup, Class, Path, MapMode)
+   */
+  public final void writeTo(Path directory) throws IOException {
+    Objects.requireNonNull(directory);
+    var components = RT.components(RT.recordType(getClass()));
+    var message = notPersistableMessage(components);
+    if (message != null) {
+      throw new UnsupportedOperationException(message);
+    }
+    var size = this.size;
+    var columns = columns(size);
+    var names = columnNames(components);
+    Files.createDirectories(directory);
+
+    // the header is written last so a directory partially written can not be mapped
+    var header = directory.resolve(HEADER);
+    Files.deleteIfExists(header);
+    for (var i = 0; i < columns.length; i++) {
+      var column = columns[i];
+      try(var channel = FileChannel.open(directory.resolve(names.get(i) + COLUMN_SUFFIX), CREATE, WRITE, TRUNCATE_EXISTING)) {
+        while (column.hasRemaining()) {
+          channel.write(column);
+        }
+      }
+    }
+    try(var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(header)))) {
+      output.writeInt(MAGIC);
+      output.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+      output.writeInt(size);
+      output.writeInt(components.size());
+      for (var component : components) {
+        output.writeUTF(component.name());
+        output.writeUTF(component.type().getName());
+        output.writeUTF(component.storage().name());
+      }
+    }
+  }
+
+  /**
+   * Creates an off-heap struct of arrays seen as a list.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @return a fresh empty list
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the list item
+   */
+  public static <T extends Record> OffHeapStructOfArrayList<T> of(Lookup lookup, Class<T> recordType) {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    return of(lookup, recordType, 0);
+  }
+
+  /**
+   * Creates an off-heap struct of arrays seen as a list with a given initial capacity.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @param capacity an initial capacity
+   * @return a fresh empty list
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record or the capacity is negative
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @param <T> the type of the list item
+   */
+  public static <T extends Record> OffHeapStructOfArrayList<T> of(Lookup lookup, Class<T> recordType, int capacity) {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    try {
+      lookup.accessClass(recordType);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!recordType.isRecord()) {
+      throw new IllegalArgumentException("recordType is not a record");
+    }
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0");
+    }
+    var erasedLookup = lookup.in(recordType);
+    var defaultConstructor = RT.defaultOffHeapListConstructor(erasedLookup);
+    try {
+      return (OffHeapStructOfArrayList<T>) defaultConstructor.invokeExact(capacity);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw (LinkageError) new LinkageError().initCause(t);
+    }
+  }
+
+  /**
+   * Maps in memory a list written by {@link #writeTo(Path)}.
+   * The elements are not read, the pages of the files are loaded on demand by the OS.
+   * <p>
+   * The returned list has a fixed size, {@link #set(int, Object)} and the setters of the columns
+   * are allowed if the mode is {@link MapMode#READ_WRITE} (the files are updated) or
+   * {@link MapMode#PRIVATE} (the files are not updated), and throw an {@link UnsupportedOperationException}
+   * if the mode is {@link MapMode#READ_ONLY}.
+   * The files are unmapped when the list is {@link #close() closed}.
+   * <p>
+   * The record must have the same components as the record used to write the list,
+   * and the constants of the enums must be declared in the same order.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @param directory the directory containing the files
+   * @param mode how the files are mapped
+   * @return a list of fixed size backed by the files
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record or a component is not a primitive value
+   *   or an enum, or is annotated with {@link DictionaryEncoded}
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @throws IOException if an I/O error occurs or if the files were not written by a list of the same record
+   *   on a platform with the same byte order
+   * @param <T> the type of the list item
+   *
+   * @see #writeTo(Path)
+   */
+  public static <T extends Record> OffHeapStructOfArrayList<T> map(Lookup lookup, Class<T> recordType, Path directory, MapMode mode) throws IOException {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    Objects.requireNonNull(directory);
+    Objects.requireNonNull(mode);
+    try {
+      lookup.accessClass(recordType);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    if (!recordType.isRecord()) {
+      throw new IllegalArgumentException("recordType is not a record");
+    }
+    var components = RT.components(recordType);
+    var message = notPersistableMessage(components);
+    if (message != null) {
+      throw new IllegalArgumentException(message);
+    }
+
+    int size;
+    try(var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(HEADER))))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("invalid header in " + directory);
+      }
+      if (input.readBoolean() != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN)) {
+        throw new IOException("list written with a different byte order");
+      }
+      size = input.readInt();
+      if (input.readInt() != components.size()) {
+        throw new IOException("list written with a different record than " + recordType.getName());
+      }
+      for (var component : components) {
+        if (!input.readUTF().equals(component.name())
+            || !input.readUTF().equals(component.type().getName())
+            || !input.readUTF().equals(component.storage().name())) {
+          throw new IOException("list written with a different record than " + recordType.getName());
+        }
+      }
+    }
+
+    var names = columnNames(components);
+    var arguments = new ArrayList<>();
+    arguments.add(size);
+    arguments.add(true);  // unmodifiable
+    Set<StandardOpenOption> openOptions = mode == MapMode.READ_ONLY? Set.of(READ): Set.of(READ, WRITE);
+    for (var name : names) {
+      try(var channel = FileChannel.open(directory.resolve(name + COLUMN_SUFFIX), openOptions)) {
+        arguments.add(channel.map(mode, 0, channel.size()).order(ByteOrder.nativeOrder()));
+      }
+    }
+
+    var erasedLookup = lookup.in(recordType);
+    var canonicalConstructor = RT.offHeapListCanonicalConstructor(erasedLookup, names.size());
+    OffHeapStructOfArrayList<T> list;
+    try {
+      list = (OffHeapStructOfArrayList<T>) canonicalConstructor.invokeWithArguments(arguments);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw (LinkageError) new LinkageError().initCause(t);
+    }
+
+    // check that the files are large enough
+    try {
+      list.columns(size);
+    } catch (IndexOutOfBoundsException e) {
+      list.close();
+      throw new IOException("column file too short in " + directory, e);
+    }
+    return list;
+  }
+}
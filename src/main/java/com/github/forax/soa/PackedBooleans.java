@@ -0,0 +1,26 @@
+package com.github.forax.soa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks to store all the boolean components of the annotated record in one bitset
+ * shared by all the components.
+ * <pre>
+ *   &#64;PackedBooleans
+ *   record Flags(boolean visible, boolean enabled, boolean selected) {}
+ * </pre>
+ * <p>
+ * By default, each boolean component is stored in its own bitset (a {@code long[]} storing
+ * 64 values per long). With this annotation, the values of all the boolean components
+ * of an element are stored next to each other in the same bitset, which avoids one
+ * array per component and keeps the flags of an element in the same cache line.
+ * <p>
+ * The boolean components of the nested records are also stored in the shared bitset.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PackedBooleans {
+}
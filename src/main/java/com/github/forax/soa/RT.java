@@ -6,11 +6,23 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.stream.Stream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import static java.lang.invoke.MethodType.methodType;
+import static java.util.stream.Collectors.toUnmodifiableMap;
 
 final class RT {
   private RT() {}
@@ -24,10 +36,27 @@ final class RT {
     }
   }
 
-  private record Species(Class<?> specializedClass, Lookup recordLookup, MethodHandle defaultConstructor) {
+  // componentIndexes and componentTypes are computed once per species,
+  // so finding a component by its name does not use reflection
+  private record Species(Class<?> specializedClass, Lookup recordLookup, MethodHandle defaultConstructor,
+                         List<Components.RecordComponent> components,
+                         Map<String, Integer> componentIndexes, Class<?>[] componentTypes) {
+    Species(Class<?> specializedClass, Lookup recordLookup, MethodHandle defaultConstructor,
+            List<Components.RecordComponent> components) {
+      this(specializedClass, recordLookup, defaultConstructor, components,
+          IntStream.range(0, components.size()).boxed().collect(toUnmodifiableMap(i -> components.get(i).name(), i -> i)),
+          components.stream().map(c -> componentType(recordLookup.lookupClass(), c.name())).toArray(Class<?>[]::new));
+    }
+
     public Class<?> recordType() {
       return recordLookup.lookupClass();
     }
+
+    // the index of the component name or -1
+    int componentIndex(String name) {
+      var index = componentIndexes.get(name);
+      return index == null? -1: index;
+    }
   }
 
 
@@ -60,6 +89,206 @@ final class RT {
     return TEMPLATE.get(specializedClass);
   }
 
+  static Class<?> recordType(Class<?> specializedClass) {
+    return species(specializedClass).recordType();
+  }
+
+  // the components of a record, the components of a nested record are flattened,
+  // the name of a flattened component is its path, by example "start.x"
+  static List<Components.RecordComponent> components(Class<?> recordType) {
+    var packedBooleans = recordType.isAnnotationPresent(PackedBooleans.class);
+    var components = new ArrayList<Components.RecordComponent>();
+    flatten(recordType, "", packedBooleans, new HashSet<>(), components);
+    return List.copyOf(components);
+  }
+
+  private static void flatten(Class<?> recordType, String prefix, boolean packedBooleans, Set<Class<?>> enclosings, List<Components.RecordComponent> components) {
+    enclosings.add(recordType);
+    for (var component : recordType.getRecordComponents()) {
+      var name = prefix + component.getName();
+      var type = component.getType();
+      // a recursive record or an empty record are not flattened
+      if (type.isRecord() && type.getRecordComponents().length != 0 && !enclosings.contains(type)) {
+        flatten(type, name + ".", packedBooleans, enclosings, components);
+        continue;
+      }
+      components.add(new Components.RecordComponent(name, type.isPrimitive()? type: Object.class, storage(component, packedBooleans)));
+    }
+    enclosings.remove(recordType);
+  }
+
+  private static Components.Storage storage(RecordComponent component, boolean packedBooleans) {
+    var type = component.getType();
+    if (component.isAnnotationPresent(DictionaryEncoded.class)) {
+      if (type.isPrimitive()) {
+        throw new IllegalArgumentException("@DictionaryEncoded can not annotate the primitive component " + component);
+      }
+      return Components.Storage.DICTIONARY;
+    }
+    if (type.isEnum()) {
+      return Components.Storage.ofEnum(type.getEnumConstants().length);
+    }
+    return Components.Storage.of(type, packedBooleans);
+  }
+
+  // find the record component from a path, by example "start.x"
+  private static RecordComponent recordComponent(Class<?> recordType, String path) {
+    RecordComponent component = null;
+    var type = recordType;
+    for (var name : path.split("\\.")) {
+      component = Arrays.stream(type.getRecordComponents())
+          .filter(c -> c.getName().equals(name))
+          .findFirst()
+          .orElseThrow();
+      type = component.getType();
+    }
+    return component;
+  }
+
+  // the declared type of a component, the type of RecordComponent is erased to Object if not primitive
+  static Class<?> componentType(Class<?> recordType, String path) {
+    return recordComponent(recordType, path).getType();
+  }
+
+  // the declared type of the component name of the record of a specialized class
+  static Class<?> componentTypeOf(Class<?> specializedClass, String name) {
+    var species = species(specializedClass);
+    var index = species.componentIndex(name);
+    if (index == -1) {
+      throw new IllegalArgumentException("no component named " + name);
+    }
+    return species.componentTypes()[index];
+  }
+
+  // the declared types of the components of the record of a specialized class, in the order of the components,
+  // the array is shared and must not be modified
+  static Class<?>[] componentTypes(Class<?> specializedClass) {
+    return species(specializedClass).componentTypes();
+  }
+
+  static int componentIndex(Class<?> specializedClass, String name, Class<?> type) {
+    var species = species(specializedClass);
+    var index = species.componentIndex(name);
+    if (index == -1) {
+      throw new IllegalArgumentException("no component named " + name);
+    }
+    if (species.componentTypes()[index] != type) {
+      throw new IllegalArgumentException("component " + name + " is not of type " + type.getName());
+    }
+    return index;
+  }
+
+  // the visitors of the elements of a specialized class, by functional interface
+  private static final ClassValue<ConcurrentHashMap<Class<?>, MethodHandle>> VISITORS = new ClassValue<>() {
+    @Override
+    protected ConcurrentHashMap<Class<?>, MethodHandle> computeValue(Class<?> specializedClass) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  // a method handle that calls the abstract method of the functional interface visitorType
+  // with the values of the components of an element, the type of the method handle is
+  // (visitorType, types of the components)void with the non-primitive components typed as Object
+  static MethodHandle componentVisitor(Class<?> specializedClass, Class<?> visitorType) {
+    return VISITORS.get(specializedClass).computeIfAbsent(visitorType, __ -> createComponentVisitor(specializedClass, visitorType));
+  }
+
+  // the call site of the loop of visitElements, an inline cache on the visitor type,
+  // each visitor type already seen is tested by a guard and calls the abstract method of the visitor type
+  // with an invokeinterface, so the JIT can inline the visitor in the loop,
+  // after MAX_DEPTH visitor types, the method handle of the visitor type is found at each call
+  private static final class VisitorCallSite extends MutableCallSite {
+    private static final int MAX_DEPTH = 8;
+    private static final MethodHandle FALLBACK, SAME_TYPE, GENERIC_VISITOR;
+    static {
+      var lookup = MethodHandles.lookup();
+      try {
+        FALLBACK = lookup.findVirtual(VisitorCallSite.class, "fallback", methodType(Object.class, Object[].class));
+        SAME_TYPE = lookup.findStatic(VisitorCallSite.class, "sameType", methodType(boolean.class, Class.class, Class.class));
+        GENERIC_VISITOR = lookup.findStatic(VisitorCallSite.class, "genericVisitor",
+            methodType(MethodHandle.class, Class.class, MethodType.class, Class.class));
+      } catch (NoSuchMethodException | IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    private final Class<?> specializedClass;
+    private int depth;
+
+    private VisitorCallSite(Class<?> specializedClass, MethodType type) {
+      super(type);
+      this.specializedClass = specializedClass;
+      setTarget(FALLBACK.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type));
+    }
+
+    private static boolean sameType(Class<?> expectedType, Class<?> visitorType) {
+      return expectedType == visitorType;
+    }
+
+    private static MethodHandle genericVisitor(Class<?> specializedClass, MethodType type, Class<?> visitorType) {
+      return componentVisitor(specializedClass, visitorType).asType(type);
+    }
+
+    private Object fallback(Object[] args) throws Throwable {
+      var visitorType = (Class<?>) args[0];
+      var visitor = componentVisitor(specializedClass, visitorType);
+      var target = MethodHandles.dropArguments(visitor, 0, Class.class).asType(type());
+      if (depth < MAX_DEPTH) {
+        depth++;
+        setTarget(MethodHandles.guardWithTest(SAME_TYPE.bindTo(visitorType), target, getTarget()));
+      } else {
+        var visitorHandleType = type().dropParameterTypes(0, 1);
+        var genericVisitor = MethodHandles.insertArguments(GENERIC_VISITOR, 0, specializedClass, visitorHandleType);
+        setTarget(MethodHandles.filterArguments(MethodHandles.exactInvoker(visitorHandleType), 0, genericVisitor));
+      }
+      return target.invokeWithArguments(args);
+    }
+  }
+
+  private static boolean isObjectMethod(Method method) {
+    try {
+      Object.class.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static MethodHandle createComponentVisitor(Class<?> specializedClass, Class<?> visitorType) {
+    if (!visitorType.isInterface()) {
+      throw new IllegalArgumentException(visitorType.getName() + " is not an interface");
+    }
+    var methods = Arrays.stream(visitorType.getMethods())
+        .filter(m -> Modifier.isAbstract(m.getModifiers()) && !isObjectMethod(m))
+        .toList();
+    if (methods.size() != 1) {
+      throw new IllegalArgumentException(visitorType.getName() + " is not a functional interface");
+    }
+    var method = methods.get(0);
+    var species = species(specializedClass);
+    var components = species.components();
+    var parameterTypes = method.getParameterTypes();
+    if (parameterTypes.length != components.size()) {
+      throw new IllegalArgumentException(method + " should have " + components.size() + " parameters");
+    }
+    for (var i = 0; i < parameterTypes.length; i++) {
+      var name = components.get(i).name();
+      var componentType = species.componentTypes()[i];
+      var parameterType = parameterTypes[i];
+      if (componentType.isPrimitive()? parameterType != componentType: !parameterType.isAssignableFrom(componentType)) {
+        throw new IllegalArgumentException("the parameter " + i + " of " + method + " is not compatible with the component " + name + " of type " + componentType.getName());
+      }
+    }
+    MethodHandle target;
+    try {
+      target = species.recordLookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    var erasedTypes = components.stream().<Class<?>>map(Components.RecordComponent::type).toList();
+    return target.asType(methodType(void.class, erasedTypes).insertParameterTypes(0, visitorType));
+  }
+
   private static final Lookup LOOKUP = MethodHandles.lookup();
 
   private static final ThreadLocal<Lookup> LOOKUP_LOCAL = new ThreadLocal<>();
@@ -67,25 +296,59 @@ final class RT {
       classValue(StructOfArrayList$Template.class, methodType(void.class, int.class, boolean.class), StructOfArrayList.class);
   private static final ClassValue<Species> SPECIES_MAP =
       classValue(StructOfArrayMap$Template.class, methodType(void.class, int.class), StructOfArrayMap.class);
+  private static final ClassValue<Species> SPECIES_OFF_HEAP_LIST =
+      classValue(OffHeapStructOfArrayList$Template.class, methodType(void.class, int.class), OffHeapStructOfArrayList.class);
+  private static final ClassValue<Species> SPECIES_CHUNKED_LIST =
+      classValue(ChunkedStructOfArrayList$Template.class, methodType(void.class, int.class), ChunkedStructOfArrayList.class);
+
+  static String specializedClassName(Class<?> template, String recordName) {
+    return template.getName() + '$' + recordName.replace('.', '_');
+  }
+
+  // ASM is an optional dependency, it is only needed to generate the specialized classes at runtime
+  private static boolean isASMAvailable() {
+    try {
+      Class.forName("org.objectweb.asm.ClassVisitor", false, RT.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Class<?> specializedClass(Class<?> template, Class<?> recordType) {
+    // use the class generated at compile time by the annotation processor if it exists
+    try {
+      return LOOKUP.findClass(specializedClassName(template, recordType.getName()));
+    } catch (ClassNotFoundException e) {
+      // not generated at compile time, generate it now
+    } catch (IllegalAccessException e) {
+      throw (LinkageError) new LinkageError().initCause(e);
+    }
+    if (!isASMAvailable()) {
+      throw new LinkageError("the specialized class of " + recordType.getName() + " was not generated at compile time"
+          + " and ASM (org.ow2.asm:asm, asm-util and asm-commons) is not available to generate it at runtime,"
+          + " either annotate the record with @StructOfArray or add ASM to the classpath");
+    }
+    var generator = TemplateGenerator.specialized(template, recordType);
+    var bytecode = generator.generate();
+    try {
+      return LOOKUP.defineClass(bytecode);
+    } catch (IllegalAccessException e) {
+      throw (LinkageError) new LinkageError().initCause(e);
+    }
+  }
 
   private static ClassValue<Species> classValue(Class<?> template, MethodType constructorType, Class<?> baseClass) {
     return new ClassValue<>() {
       @Override
       protected Species computeValue(Class<?> type) {
-        var generator = TemplateGenerator.specialized(template, type);
-        var bytecode = generator.generate();
-        Class<?> specializedClass;
-        try {
-          specializedClass = LOOKUP.defineClass(bytecode);
-        } catch (IllegalAccessException e) {
-          throw (LinkageError) new LinkageError().initCause(e);
-        }
+        var specializedClass = specializedClass(template, type);
         var defaultConstructor = constructor(specializedClass, constructorType, baseClass);
         var recordLookup = LOOKUP_LOCAL.get();
         if (recordLookup == null) {
           throw new AssertionError("record lookup not specified");
         }
-        var species = new Species(specializedClass, recordLookup, defaultConstructor);
+        var species = new Species(specializedClass, recordLookup, defaultConstructor, components(type));
         injectSpecies(specializedClass, species);
         return species;
       }
@@ -110,18 +373,98 @@ final class RT {
     }
   }
 
+  static MethodHandle defaultOffHeapListConstructor(Lookup recordLookup) {
+    LOOKUP_LOCAL.set(recordLookup);
+    try {
+      return SPECIES_OFF_HEAP_LIST.get(recordLookup.lookupClass()).defaultConstructor();
+    } finally {
+      LOOKUP_LOCAL.set(recordLookup);
+    }
+  }
 
-  private static final MethodHandle INSTANCEOF, CHECKCAST;
+  static MethodHandle defaultChunkedListConstructor(Lookup recordLookup) {
+    LOOKUP_LOCAL.set(recordLookup);
+    try {
+      return SPECIES_CHUNKED_LIST.get(recordLookup.lookupClass()).defaultConstructor();
+    } finally {
+      LOOKUP_LOCAL.set(recordLookup);
+    }
+  }
+
+  // the canonical constructor (size, unmodifiable, columns...) of an off-heap list
+  // with all the columns stored in a ByteBuffer
+  static MethodHandle offHeapListCanonicalConstructor(Lookup recordLookup, int columnCount) {
+    Species species;
+    LOOKUP_LOCAL.set(recordLookup);
+    try {
+      species = SPECIES_OFF_HEAP_LIST.get(recordLookup.lookupClass());
+    } finally {
+      LOOKUP_LOCAL.set(recordLookup);
+    }
+    var parameterTypes = new ArrayList<Class<?>>();
+    parameterTypes.add(int.class);
+    parameterTypes.add(boolean.class);
+    parameterTypes.addAll(Collections.nCopies(columnCount, ByteBuffer.class));
+    return constructor(species.specializedClass(), methodType(void.class, parameterTypes), OffHeapStructOfArrayList.class);
+  }
+
+
+  // an enum is stored as its ordinal + 1, 0 means null
+  private static int ordinal(Object value) {
+    return value == null? 0: ((Enum<?>) value).ordinal() + 1;
+  }
+
+  private static MethodHandle enumConstant(Class<?> enumType) {
+    var constants = enumType.getEnumConstants();
+    var table = new Object[constants.length + 1];
+    System.arraycopy(constants, 0, table, 1, constants.length);
+    return MethodHandles.arrayElementGetter(Object[].class).bindTo(table);
+  }
+
+  // the dictionaries of the components annotated with @DictionaryEncoded of a record type, by path
+  private static final ClassValue<ConcurrentHashMap<String, Dictionary>> DICTIONARIES = new ClassValue<>() {
+    @Override
+    protected ConcurrentHashMap<String, Dictionary> computeValue(Class<?> recordType) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  private static final MethodHandle INSTANCEOF, CHECKCAST, ORDINAL, DECODE, ENCODE, LOOKUP_CODE;
   static {
     var lookup = MethodHandles.publicLookup();
     try {
       INSTANCEOF = lookup.findVirtual(Class.class, "isInstance", methodType(boolean.class, Object.class));
       CHECKCAST = lookup.findVirtual(Class.class, "cast", methodType(Object.class, Object.class));
+      ORDINAL = LOOKUP.findStatic(RT.class, "ordinal", methodType(int.class, Object.class));
+      DECODE = LOOKUP.findVirtual(Dictionary.class, "decode", methodType(Object.class, int.class));
+      ENCODE = LOOKUP.findVirtual(Dictionary.class, "encode", methodType(int.class, Object.class));
+      LOOKUP_CODE = LOOKUP.findVirtual(Dictionary.class, "lookup", methodType(int.class, Object.class));
     } catch (NoSuchMethodException | IllegalAccessException e) {
       throw new AssertionError(e);
     }
   }
 
+  // convert a component stored as a code, an enum or a component annotated with @DictionaryEncoded,
+  // "decode" converts a code to a value, "encode" converts a value to a code and "lookup" does
+  // the same without adding the value to the dictionary
+  private static MethodHandle codec(Class<?> recordType, String operation, String path) {
+    var component = recordComponent(recordType, path);
+    if (component.isAnnotationPresent(DictionaryEncoded.class)) {
+      var dictionary = DICTIONARIES.get(recordType).computeIfAbsent(path, __ -> new Dictionary());
+      return switch (operation) {
+        case "decode" -> DECODE.bindTo(dictionary);
+        case "encode" -> ENCODE.bindTo(dictionary);
+        case "lookup" -> LOOKUP_CODE.bindTo(dictionary);
+        default -> throw new LinkageError("invalid operation " + operation);
+      };
+    }
+    return switch (operation) {
+      case "decode" -> enumConstant(component.getType());
+      case "encode", "lookup" -> ORDINAL;
+      default -> throw new LinkageError("invalid operation " + operation);
+    };
+  }
+
   static CallSite bsm(Lookup lookup, String name, MethodType methodType) {
     var specializedClass = lookup.lookupClass();
     var species = species(specializedClass);
@@ -132,35 +475,62 @@ final class RT {
         var canonicalConstructor = constructor(speciesList.specializedClass(), methodType.changeReturnType(void.class), StructOfArrayList.class);
         yield new ConstantCallSite(canonicalConstructor.asType(methodType));
       }
-      case "new" -> {
-        MethodHandle recordConstructor;
-        try {
-          recordConstructor = species.recordLookup()
-              .findConstructor(recordType, methodType(void.class, Arrays.stream(recordType.getRecordComponents()).<Class<?>>map(RecordComponent::getType).toList()));
-        } catch (NoSuchMethodException | IllegalAccessException e) {
-          throw new AssertionError(e);
-        }
-        yield new ConstantCallSite(recordConstructor.asType(methodType));
-      }
+      case "new" -> new ConstantCallSite(recordConstructor(species.recordLookup(), recordType, methodType));
       case "instanceof" -> new ConstantCallSite(INSTANCEOF.bindTo(recordType));
       case "checkcast" -> new ConstantCallSite(CHECKCAST.bindTo(recordType));
-      default -> throw new LinkageError("invalid name " + name);
+      case "visit" -> new VisitorCallSite(specializedClass, methodType);
+      default -> {
+        if (name.startsWith("new:")) {  // nested record
+          var nestedRecordType = recordComponent(recordType, path(name.substring(4))).getType();
+          yield new ConstantCallSite(recordConstructor(species.recordLookup(), nestedRecordType, methodType));
+        }
+        var colon = name.indexOf(':');
+        if (colon != -1) {  // decode:<path>, encode:<path> or lookup:<path>
+          var codec = codec(recordType, name.substring(0, colon), path(name.substring(colon + 1)));
+          yield new ConstantCallSite(codec.asType(methodType));
+        }
+        throw new LinkageError("invalid name " + name);
+      }
     };
   }
 
+  // the '.' is not a valid character in the name of an invokedynamic, so ':' is used instead
+  private static String path(String indyName) {
+    return indyName.replace(':', '.');
+  }
+
+  private static MethodHandle recordConstructor(Lookup recordLookup, Class<?> recordType, MethodType methodType) {
+    MethodHandle recordConstructor;
+    try {
+      recordConstructor = recordLookup
+          .findConstructor(recordType, methodType(void.class, Arrays.stream(recordType.getRecordComponents()).<Class<?>>map(RecordComponent::getType).toList()));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+    return recordConstructor.asType(methodType);
+  }
+
   static CallSite bsm_record_access(Lookup lookup, String name, MethodType methodType) {
     var specializedClass = lookup.lookupClass();
     var species = species(specializedClass);
     var recordType = species.recordType();
-    var accessor = Arrays.stream(recordType.getRecordComponents())
-        .filter(c -> c.getName().equals(name))
-        .findFirst()
-        .map(RecordComponent::getAccessor)
-        .orElseThrow();
-    try {
-      return new ConstantCallSite(species.recordLookup().unreflect(accessor).asType(methodType));
-    } catch (IllegalAccessException e) {
-      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    // the accessors of the nested records are composed
+    MethodHandle target = null;
+    var type = recordType;
+    for (var componentName : path(name).split("\\.")) {
+      var component = Arrays.stream(type.getRecordComponents())
+          .filter(c -> c.getName().equals(componentName))
+          .findFirst()
+          .orElseThrow();
+      MethodHandle accessor;
+      try {
+        accessor = species.recordLookup().unreflect(component.getAccessor());
+      } catch (IllegalAccessException e) {
+        throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+      }
+      target = (target == null)? accessor: MethodHandles.filterReturnValue(target, accessor);
+      type = component.getType();
     }
+    return new ConstantCallSite(target.asType(methodType));
   }
 }
@@ -0,0 +1,153 @@
+package com.github.forax.soa;
+
+import com.github.forax.soa.StructOfArrayList.Comparison;
+
+// the loops used when the module jdk.incubator.vector is not available
+final class ScalarKernels extends Kernels {
+  @Override
+  int count(int[] array, int size, Comparison comparison, int value) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int count(long[] array, int size, Comparison comparison, long value) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int count(double[] array, int size, Comparison comparison, double value) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(int[] array, int size, Comparison comparison, int value, int[] indexes) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(long[] array, int size, Comparison comparison, long value, int[] indexes) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(double[] array, int size, Comparison comparison, double value, int[] indexes) {
+    var count = 0;
+    for (var i = 0; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int min(int[] array, int size) {
+    var min = array[0];
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  long min(long[] array, int size) {
+    var min = array[0];
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  double min(double[] array, int size) {
+    var min = array[0];
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  int max(int[] array, int size) {
+    var max = array[0];
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  long max(long[] array, int size) {
+    var max = array[0];
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  double max(double[] array, int size) {
+    var max = array[0];
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  long sum(int[] array, int size) {
+    var sum = 0L;
+    for (var i = 0; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  @Override
+  long sum(long[] array, int size) {
+    var sum = 0L;
+    for (var i = 0; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  @Override
+  double sum(double[] array, int size) {
+    var sum = 0.0;
+    for (var i = 0; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.forax.soa;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+// computes the permutation that sorts the elements of a struct of arrays,
+// permutation[i] is the index of the element that should be at index i once sorted,
+// both sorts are stable
+final class Sorts {
+  private Sorts() {}
+
+  // a key that is sorted as an unsigned long in the same order as the signed int
+  static long key(int value) {
+    return Integer.toUnsignedLong(value ^ Integer.MIN_VALUE);
+  }
+
+  // a key that is sorted as an unsigned long in the same order as the signed long
+  static long key(long value) {
+    return value ^ Long.MIN_VALUE;
+  }
+
+  // a key that is sorted as an unsigned long in the same order as Double.compare()
+  static long key(double value) {
+    var bits = Double.doubleToLongBits(value);
+    return bits < 0? ~bits: bits ^ Long.MIN_VALUE;
+  }
+
+  // LSD radix sort on the bytes of the keys, the keys are compared as unsigned longs,
+  // the passes on a byte that is the same for all keys are skipped
+  static int[] radixPermutation(long[] keys, int size) {
+    var permutation = new int[size];
+    for (var i = 0; i < size; i++) {
+      permutation[i] = i;
+    }
+    if (size == 0) {
+      return permutation;
+    }
+    var keys2 = new long[size];
+    var permutation2 = new int[size];
+    var counts = new int[256];
+    for (var shift = 0; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (var i = 0; i < size; i++) {
+        counts[(int) (keys[i] >>> shift) & 0xFF]++;
+      }
+      if (counts[(int) (keys[0] >>> shift) & 0xFF] == size) {
+        continue;
+      }
+      var offset = 0;
+      for (var b = 0; b < counts.length; b++) {
+        var count = counts[b];
+        counts[b] = offset;
+        offset += count;
+      }
+      for (var i = 0; i < size; i++) {
+        var key = keys[i];
+        var position = counts[(int) (key >>> shift) & 0xFF]++;
+        keys2[position] = key;
+        permutation2[position] = permutation[i];
+      }
+      var keysTmp = keys;
+      keys = keys2;
+      keys2 = keysTmp;
+      var permutationTmp = permutation;
+      permutation = permutation2;
+      permutation2 = permutationTmp;
+    }
+    return permutation;
+  }
+
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+
+  // merge sort of the indexes, comparator.applyAsInt(i, j) compares the elements at index i and j
+  static int[] mergePermutation(int size, IntBinaryOperator comparator) {
+    var permutation = new int[size];
+    for (var i = 0; i < size; i++) {
+      permutation[i] = i;
+    }
+    mergeSort(permutation, permutation.clone(), 0, size, comparator);
+    return permutation;
+  }
+
+  // sort array[start, end[ using buffer that contains the same values
+  private static void mergeSort(int[] array, int[] buffer, int start, int end, IntBinaryOperator comparator) {
+    if (end - start <= INSERTION_SORT_THRESHOLD) {
+      for (var i = start + 1; i < end; i++) {
+        var value = array[i];
+        var j = i;
+        for (; j > start && comparator.applyAsInt(array[j - 1], value) > 0; j--) {
+          array[j] = array[j - 1];
+        }
+        array[j] = value;
+      }
+      return;
+    }
+    var middle = (start + end) >>> 1;
+    // sort the halves of buffer then merge them into array
+    mergeSort(buffer, array, start, middle, comparator);
+    mergeSort(buffer, array, middle, end, comparator);
+    if (comparator.applyAsInt(buffer[middle - 1], buffer[middle]) <= 0) {
+      System.arraycopy(buffer, start, array, start, end - start);
+      return;
+    }
+    for (int i = start, left = start, right = middle; i < end; i++) {
+      if (right >= end || (left < middle && comparator.applyAsInt(buffer[left], buffer[right]) <= 0)) {
+        array[i] = buffer[left++];
+      } else {
+        array[i] = buffer[right++];
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.github.forax.soa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Asks the annotation processor {@link StructOfArrayProcessor} to generate, at compile time,
+ * the specialized classes of {@link StructOfArrayList} and {@link StructOfArrayMap}
+ * for the annotated record.
+ * <pre>
+ *   &#64;StructOfArray
+ *   record Point(int x, int y) {}
+ * </pre>
+ * <p>
+ * When a specialized class has been generated at compile time, it is used instead of generating
+ * the specialized class at runtime, so the first call to {@code StructOfArrayList.of()} or
+ * {@code StructOfArrayMap.of()} is faster. The library ASM is an optional dependency,
+ * it is not needed at runtime if all the records are annotated with this annotation.
+ * <p>
+ * The generated classes are in the package {@code com.github.forax.soa} so they have to be loaded
+ * by the same class loader as this library. The classes must be re-generated if the version
+ * of this library changes.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface StructOfArray {
+}
@@ -1,6 +1,7 @@
 package com.github.forax.soa;
 
 import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Objects;
 
 public final class StructOfArrayList$Template extends StructOfArrayList {
@@ -36,14 +37,214 @@ public final class StructOfArrayList$Template extends StructOfArrayList {
     Snippets.end();
   }
 
-  private void copyElement(int to, int from) {
+  @Override
+  final int intAt(int component, int index) {
+    Snippets.start();
+    if (component == 0) {
+      return array0[index];
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void intAt(int component, int index, int value) {
+    Snippets.start();
+    if (component == 0) {
+      array0[index] = value;
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final long longAt(int component, int index) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void longAt(int component, int index, long value) {
+    Snippets.start();
+    // no component of type long in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final double doubleAt(int component, int index) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void doubleAt(int component, int index, double value) {
+    Snippets.start();
+    // no component of type double in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final boolean booleanAt(int component, int index) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void booleanAt(int component, int index, boolean value) {
+    Snippets.start();
+    // no component of type boolean in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final byte byteAt(int component, int index) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void byteAt(int component, int index, byte value) {
+    Snippets.start();
+    // no component of type byte in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final short shortAt(int component, int index) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void shortAt(int component, int index, short value) {
+    Snippets.start();
+    // no component of type short in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final char charAt(int component, int index) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void charAt(int component, int index, char value) {
+    Snippets.start();
+    // no component of type char in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final float floatAt(int component, int index) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void floatAt(int component, int index, float value) {
+    Snippets.start();
+    // no component of type float in Person
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object objectAt(int component, int index) {
+    Snippets.start();
+    if (component == 1) {
+      return array1[index];
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final void objectAt(int component, int index, Object value) {
+    Snippets.start();
+    if (component == 1) {
+      array1[index] = (String) value;
+      return;
+    }
+    Snippets.end();
+    throw new AssertionError();
+  }
+
+  @Override
+  final Object columnArray(int component) {
+    Snippets.start();
+    if (component == 0) {
+      return array0;
+    }
+    Snippets.end();
+    return null;
+  }
+
+  @Override
+  final void copyElement(int to, int from) {
     Snippets.start();
     array0[to] = array0[from];
     array1[to] = array1[from];
     Snippets.end();
   }
 
-  private void zeroElement(int index) {
+  @Override
+  final void swapElements(int i, int j) {
+    Snippets.start();
+    var value0 = array0[i];
+    array0[i] = array0[j];
+    array0[j] = value0;
+    var value1 = array1[i];
+    array1[i] = array1[j];
+    array1[j] = value1;
+    Snippets.end();
+  }
+
+  @Override
+  final void visitElements(Class visitorType, Object visitor, int expectedModCount) throws Throwable {
+    int i;  // must be declared before the snippet
+    for(i = 0; i < size; i++) {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      Snippets.start();
+      // invokedynamic visit(Class, Object, int, String)V, calls the visitor with array0[i] and array1[i]
+      Snippets.end();
+    }
+  }
+
+  @Override
+  final StructOfArrayList newSnapshot() {
+    StructOfArrayList snapshot;  // must be declared before the snippet
+    Snippets.start();
+    snapshot = new StructOfArrayList$Template(size, true, array0, array1);
+    Snippets.end();
+    return snapshot;
+  }
+
+  @Override
+  final void zeroElement(int index) {
     Snippets.start();
     //array0[index] = 0;
     array1[index] = null;
@@ -57,6 +258,7 @@ public final class StructOfArrayList$Template extends StructOfArrayList {
     Objects.checkIndex(index, size);
     var old = valueAt(index);
     var last = size - 1;
+    beforeWrite(index);
     copyElement(index, last);
     zeroElement(last);
     size = last;
@@ -106,17 +308,36 @@ public final class StructOfArrayList$Template extends StructOfArrayList {
     return -1;
   }
 
-  private void copyAll(int newLength) {
+  @Override
+  final void copyAll(int newLength) {
     Snippets.start();
     array0 = Arrays.copyOf(array0, newLength);
     array1 = Arrays.copyOf(array1, newLength);
     Snippets.end();
   }
 
+  @Override
+  final int capacity() {
+    int capacity;  // must be declared before the snippet
+    Snippets.start();
+    capacity = array0.length;
+    Snippets.end();
+    return capacity;
+  }
+
+  @Override
+  final void appendElements(StructOfArrayList list) {
+    var other = (StructOfArrayList$Template) list;
+    var index = size;
+    var count = other.size;
+    Snippets.start();
+    System.arraycopy(other.array0, 0, array0, index, count);
+    System.arraycopy(other.array1, 0, array1, index, count);
+    Snippets.end();
+  }
+
   private void resize() {
-    var size = this.size;
-    var newLength = (size == 0)? 16: (int) (size * 1.5);
-    copyAll(newLength);
+    grow(size + 1);
   }
 
   @Override
@@ -126,6 +347,7 @@ public final class StructOfArrayList$Template extends StructOfArrayList {
     }
     var element = (Person) item;
     Objects.requireNonNull(element);
+    beforeWrite(size);
     Snippets.start();
     if (size == array0.length) {
       resize();
@@ -147,6 +369,7 @@ public final class StructOfArrayList$Template extends StructOfArrayList {
     array0 = new int[0];
     array1 = new String[0];
     Snippets.end();
+    sharedSize = 0;
     size = 0;
     modCount++;
   }
@@ -1,13 +1,26 @@
 package com.github.forax.soa;
 
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
 
 /**
  * A list of record item that stores each component of the record inside its own array.
@@ -27,10 +40,28 @@ import java.util.Objects;
  * This implementation support empty records, in that case, the list will only count the number
  * of items inserted without storing them.
  * <p>
+ * The components of a nested record are flattened, each one is stored in its own array.
+ * For example, with a record
+ * <pre>
+ *   record Segment(Point start, Point end) {}
+ * </pre>
+ * this list uses four int arrays, for {@code start.x}, {@code start.y}, {@code end.x} and {@code end.y},
+ * the nested records are re-created when a segment is read. Because of that, a nested record can not
+ * be null. Recursive records are not flattened.
+ * <p>
+ * The boolean components are stored in bitsets, 64 values per {@code long}. If the record is
+ * annotated with {@link PackedBooleans}, all the boolean components share the same bitset.
+ * The enum components are stored as ordinals in a {@code byte} array (or in a {@code short} array
+ * if the enum has more than 255 constants).
+ * The values of a component annotated with {@link DictionaryEncoded} are stored in a dictionary
+ * and the list only stores their codes.
+ * <p>
  * The implantations of {@link #remove(int)} and {@link #remove(Object)} are unconventional,
  * instead of shifting all the elements that are after the one removed, the implementations
  * remove the last element and place it at the location of the removed element which it
  * more efficient. So calling {@code remove} does not keep the insertion order.
+ * The bulk removals, {@link #removeIf(Predicate)}, {@link #removeAll(Collection)} and
+ * {@link #retainAll(Collection)} keep the order of the remaining elements.
  * <p>
  * To avoid the usual performance issue of {@link #add(int, Object)}, this method is not implemented,
  * even if the index is just after the last element, use {@link #add(Object)} instead.
@@ -41,6 +72,9 @@ import java.util.Objects;
  * Null as an element is not supported (it's not a record after all) so all methods that takes
  * an element as parameter throw a {@link NullPointerException} if {@code null} is passed.
  * <p>
+ * {@link #snapshot()} returns an immutable view of the list that can be read by several threads,
+ * the arrays are shared with the list until the list modifies them.
+ * <p>
  * If you know the approximative size of the list, consider using {@link #of(Lookup, Class, int)}
  * with the capacity as last parameter.
  *
@@ -52,6 +86,16 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
   int size;
   final boolean unmodifiable;
 
+  // true if the list is a snapshot, set before the snapshot is published
+  boolean immutable;
+
+  // the number of elements whose arrays are shared with a snapshot,
+  // the arrays must be copied before one of those elements is modified
+  int sharedSize;
+
+  // compute the new capacity of the arrays when they are resized
+  GrowthPolicy growthPolicy = DEFAULT_GROWTH_POLICY;
+
   StructOfArrayList(int size, boolean unmodifiable) {
     this.size = size;
     this.unmodifiable = unmodifiable;
@@ -69,6 +113,151 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
   abstract E valueAt(int index);
   abstract void valueAt(int index, E element);
 
+  abstract int intAt(int component, int index);
+  abstract void intAt(int component, int index, int value);
+  abstract long longAt(int component, int index);
+  abstract void longAt(int component, int index, long value);
+  abstract double doubleAt(int component, int index);
+  abstract void doubleAt(int component, int index, double value);
+  abstract boolean booleanAt(int component, int index);
+  abstract void booleanAt(int component, int index, boolean value);
+  abstract byte byteAt(int component, int index);
+  abstract void byteAt(int component, int index, byte value);
+  abstract short shortAt(int component, int index);
+  abstract void shortAt(int component, int index, short value);
+  abstract char charAt(int component, int index);
+  abstract void charAt(int component, int index, char value);
+  abstract float floatAt(int component, int index);
+  abstract void floatAt(int component, int index, float value);
+  abstract Object objectAt(int component, int index);
+  abstract void objectAt(int component, int index, Object value);
+
+  // the array storing the values of a component of primitive type, null if not stored in an array
+  abstract Object columnArray(int component);
+
+  // swap the values of all the components of the elements at index i and j
+  abstract void swapElements(int i, int j);
+
+  // replace the arrays storing the components by copies of length newLength
+  abstract void copyAll(int newLength);
+
+  // create an unmodifiable list sharing the arrays of this list
+  abstract StructOfArrayList<E> newSnapshot();
+
+  // called before modifying the element at index, a snapshot can not be modified
+  // and the arrays shared with a snapshot are copied (copy-on-write)
+  final void beforeWrite(int index) {
+    if (immutable) {
+      throw new UnsupportedOperationException();
+    }
+    if (index < sharedSize) {
+      copyAll(capacity());  // keep the capacity, so the next add does not copy the arrays again
+      sharedSize = 0;
+    }
+  }
+
+  // called before allocating new arrays, overridden by an off-heap list
+  // that can not allocate native memory once closed
+  void ensureOpen() {
+    // empty
+  }
+
+  // the number of elements that can be stored before the arrays need to be resized
+  abstract int capacity();
+
+  // append the elements of list, a list of the same class, the arrays must be big enough
+  abstract void appendElements(StructOfArrayList<E> list);
+
+  // resize the arrays once, so they can store at least minCapacity elements
+  final void grow(int minCapacity) {
+    ensureOpen();
+    var capacity = capacity();
+    if (minCapacity <= capacity) {
+      return;
+    }
+    var newCapacity = growthPolicy.newCapacity(capacity, minCapacity);
+    if (newCapacity < minCapacity) {
+      throw new IllegalStateException("the growth policy returns a capacity " + newCapacity + " < " + minCapacity);
+    }
+    copyAll(newCapacity);
+    sharedSize = 0;
+  }
+
+  /**
+   * Resizes the arrays storing the components, if necessary, so the list can store
+   * at least {@code minCapacity} elements without resizing them again.
+   * The new capacity is computed by the {@link #growthPolicy() growth policy}.
+   *
+   * @param minCapacity the minimum number of elements
+   * @throws IllegalArgumentException if minCapacity is negative
+   * @throws UnsupportedOperationException if the list is unmodifiable
+   * @throws IllegalStateException if the list is an {@link OffHeapStructOfArrayList} already closed
+   */
+  public final void ensureCapacity(int minCapacity) {
+    if (minCapacity < 0) {
+      throw new IllegalArgumentException("minCapacity < 0");
+    }
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    ensureOpen();
+    beforeWrite(size);
+    grow(minCapacity);
+  }
+
+  /**
+   * Resizes the arrays storing the components to the size of the list,
+   * so there is no unused slot anymore, by example after a bulk load.
+   *
+   * @throws UnsupportedOperationException if the list is unmodifiable
+   * @throws IllegalStateException if the list is an {@link OffHeapStructOfArrayList} already closed
+   */
+  public final void trimToSize() {
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    ensureOpen();
+    beforeWrite(size);
+    if (capacity() == size) {
+      return;
+    }
+    copyAll(size);
+    sharedSize = 0;
+  }
+
+  /**
+   * Returns the growth policy used to compute the capacity of the arrays when they are resized.
+   *
+   * @return the growth policy of the list.
+   */
+  public final GrowthPolicy growthPolicy() {
+    return growthPolicy;
+  }
+
+  /**
+   * Sets the growth policy used to compute the capacity of the arrays when they are resized.
+   *
+   * @param growthPolicy a growth policy
+   * @throws NullPointerException if the growth policy is null
+   *
+   * @see GrowthPolicy#geometric(double)
+   * @see GrowthPolicy#linear(int)
+   */
+  public final void setGrowthPolicy(GrowthPolicy growthPolicy) {
+    this.growthPolicy = Objects.requireNonNull(growthPolicy);
+  }
+
+  // copy the values of all the components of the element at index from to index to
+  abstract void copyElement(int to, int from);
+
+  // reset the values of all the components of the element at index to their default values
+  abstract void zeroElement(int index);
+
+  // call the visitor, an instance of the functional interface visitorType, with the values of the components
+  // of each element, the call is an invokedynamic linked to the abstract method of visitorType (see RT.bsm),
+  // throw a ConcurrentModificationException if modCount changes before the next element is read
+  abstract void visitElements(Class<?> visitorType, Object visitor, int expectedModCount) throws Throwable;
+
   @Override
   public final E get(int index) {
     Objects.checkIndex(index, size);
@@ -79,6 +268,7 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
   public final E set(int index, E element) {
     Objects.checkIndex(index, size);
     Objects.requireNonNull(element);
+    beforeWrite(index);
     var old = valueAt(index);
     valueAt(index, element);
     return old;
@@ -89,6 +279,51 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Appends all the elements of the collection at the end of this list.
+   * <p>
+   * The arrays storing the components are resized at most once.
+   * If the collection is a {@code StructOfArrayList} of the same record type,
+   * the elements are not materialized, the values of each component are copied
+   * from array to array using {@link System#arraycopy(Object, int, Object, int, int)}.
+   *
+   * @param collection a collection of elements
+   * @return true if the list has changed.
+   * @throws NullPointerException if the collection or one of its elements is null
+   * @throws UnsupportedOperationException if the list is unmodifiable
+   * @throws IllegalStateException if the list is an {@link OffHeapStructOfArrayList} already closed
+   */
+  @Override
+  public final boolean addAll(Collection<? extends E> collection) {
+    Objects.requireNonNull(collection);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    ensureOpen();
+    beforeWrite(size);
+    var count = collection.size();
+    if (count == 0) {
+      return false;
+    }
+    var newSize = size + count;
+    if (newSize < 0) {
+      throw new OutOfMemoryError("too many elements");
+    }
+    grow(newSize);
+    if (collection.getClass() == getClass()) {
+      @SuppressWarnings("unchecked")
+      var list = (StructOfArrayList<E>) collection;
+      appendElements(list);
+      size = newSize;
+      modCount++;
+      return true;
+    }
+    for (var element : collection) {
+      add(element);
+    }
+    return true;
+  }
+
   @Override
   public final boolean contains(Object o) {
     return indexOf(o) != -1;
@@ -199,6 +434,7 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
         if (last == -1) {
           throw new IllegalStateException();
         }
+        beforeWrite(last);
         valueAt(last, element);
         last = -1;
       }
@@ -210,6 +446,1770 @@ public abstract class StructOfArrayList<E> extends AbstractList<E> {
     };
   }
 
+  /**
+   * Sorts the elements of the list in the ascending order of the values of the component {@code name}.
+   * The sort is stable, the components of type {@code int}, {@code long} and {@code double}
+   * are sorted using a radix sort, the components of type {@link Comparable} using their natural order
+   * with {@code null} first.
+   * <p>
+   * The permutation that sorts the elements is computed from the values of the component then applied
+   * in place to each component, no record is created.
+   *
+   * @param name the name of a record component
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type
+   *   {@code int}, {@code long}, {@code double} or {@link Comparable}
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   */
+  public final void sortBy(String name) {
+    Objects.requireNonNull(name);
+    var type = RT.componentTypeOf(getClass(), name);
+    var component = component(name, type);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    var size = this.size;
+    int[] permutation;
+    if (type == int.class || type == long.class || type == double.class) {
+      var keys = new long[size];
+      if (type == int.class) {
+        for (var i = 0; i < size; i++) {
+          keys[i] = Sorts.key(intAt(component, i));
+        }
+      } else if (type == long.class) {
+        for (var i = 0; i < size; i++) {
+          keys[i] = Sorts.key(longAt(component, i));
+        }
+      } else {
+        for (var i = 0; i < size; i++) {
+          keys[i] = Sorts.key(doubleAt(component, i));
+        }
+      }
+      permutation = Sorts.radixPermutation(keys, size);
+    } else if (!type.isPrimitive() && Comparable.class.isAssignableFrom(type)) {
+      var values = new Object[size];
+      for (var i = 0; i < size; i++) {
+        values[i] = objectAt(component, i);
+      }
+      @SuppressWarnings("unchecked")
+      var comparator = Comparator.nullsFirst((Comparator<Object>) (Comparator<?>) Comparator.naturalOrder());
+      permutation = Sorts.mergePermutation(size, (i, j) -> comparator.compare(values[i], values[j]));
+    } else {
+      throw new IllegalArgumentException("component " + name + " is not of type int, long, double or Comparable");
+    }
+    permute(permutation);
+  }
+
+  /**
+   * Sorts the elements of the list using a comparator.
+   * The sort is stable.
+   * <p>
+   * Unlike {@link #sort(Comparator)}, the records are created once to be compared,
+   * then the permutation that sorts the elements is applied in place to each component,
+   * the records are not written back to the list.
+   *
+   * @param comparator a comparator of the elements
+   * @throws NullPointerException if the comparator is null
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   */
+  public final void sortBy(Comparator<? super E> comparator) {
+    Objects.requireNonNull(comparator);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    var size = this.size;
+    var elements = new Object[size];
+    for (var i = 0; i < size; i++) {
+      elements[i] = valueAt(i);
+    }
+    @SuppressWarnings("unchecked")
+    var permutation = Sorts.mergePermutation(size, (i, j) -> comparator.compare((E) elements[i], (E) elements[j]));
+    permute(permutation);
+  }
+
+  // move the element at index permutation[i] to index i by following the cycles of the permutation,
+  // a visited index is marked by complementing its value
+  private void permute(int[] permutation) {
+    beforeWrite(0);
+    for (var i = 0; i < permutation.length; i++) {
+      var index = i;
+      var next = permutation[index];
+      if (next < 0) {
+        continue;
+      }
+      while (next != i) {
+        swapElements(index, next);
+        permutation[index] = ~next;
+        index = next;
+        next = permutation[index];
+      }
+      permutation[index] = ~next;
+    }
+    modCount++;
+  }
+
+  /**
+   * Calls the visitor with the values of the components of each element of the list, in order.
+   * No record is created, the values are read directly from the arrays storing the components.
+   * <p>
+   * The visitor is an instance of a functional interface with one parameter per component,
+   * in the order of the components, the components of a nested record are flattened.
+   * The parameter of a primitive component must have the same type, the parameter of
+   * a non-primitive component must be a supertype of the type of the component.
+   * For example, with the record {@code Person(int age, String name)}
+   * <pre>
+   *   interface PersonVisitor { void visit(int age, String name); }
+   *   ...
+   *   list.forEachComponents(PersonVisitor.class, (age, name) -> ...);
+   * </pre>
+   * The functional interface must be accessible from the lookup used to create the list.
+   * <p>
+   * The loop calls the abstract method of the functional interface directly, so the visitor can be inlined,
+   * the first call with a new functional interface links the loop to it. The loop is shared by all the lists
+   * of the same record type, if more than 8 functional interfaces are used, the calls are slower.
+   *
+   * @param visitorType a functional interface
+   * @param visitor the visitor called for each element
+   * @param <V> the type of the functional interface
+   * @throws NullPointerException if the visitorType or the visitor is null
+   * @throws IllegalArgumentException if the visitorType is not a functional interface or if the parameters
+   *   of its abstract method are not compatible with the components
+   * @throws IllegalStateException if the functional interface is not accessible
+   * @throws ClassCastException if the visitor is not an instance of the visitorType
+   * @throws ConcurrentModificationException if the list is structurally modified by the visitor
+   */
+  public final <V> void forEachComponents(Class<V> visitorType, V visitor) {
+    Objects.requireNonNull(visitorType);
+    Objects.requireNonNull(visitor);
+    visitorType.cast(visitor);
+    RT.componentVisitor(getClass(), visitorType);  // check the visitor type
+    var currentCount = modCount;
+    try {
+      visitElements(visitorType, visitor, currentCount);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    }
+    if (currentCount != modCount) {
+      throw new ConcurrentModificationException();
+    }
+  }
+
+  /**
+   * Removes all the elements of the list that satisfy the predicate.
+   * Unlike {@link #remove(int)}, the order of the remaining elements is preserved.
+   * <p>
+   * The predicate is first called on all the elements then the remaining elements are moved
+   * in a single pass, so if the predicate throws an exception the list is not modified.
+   *
+   * @param filter a predicate which returns true for the elements to remove
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the filter is null
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   */
+  @Override
+  public final boolean removeIf(Predicate<? super E> filter) {
+    Objects.requireNonNull(filter);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    return removeIndexes(index -> filter.test(valueAt(index)));
+  }
+
+  /**
+   * Removes all the elements of the list that satisfy the predicate on the values of the component
+   * {@code name} of type {@code int}. No record is created.
+   * The order of the remaining elements is preserved.
+   *
+   * @param name the name of a record component
+   * @param filter a predicate which returns true for the values of the elements to remove
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the name or the filter is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code int}
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   *
+   * @see #removeIf(Predicate)
+   */
+  public final boolean removeIfInt(String name, IntPredicate filter) {
+    var component = component(name, int.class);
+    Objects.requireNonNull(filter);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    return removeIndexes(index -> filter.test(intAt(component, index)));
+  }
+
+  /**
+   * Removes all the elements of the list that satisfy the predicate on the values of the component
+   * {@code name} of type {@code long}. No record is created.
+   * The order of the remaining elements is preserved.
+   *
+   * @param name the name of a record component
+   * @param filter a predicate which returns true for the values of the elements to remove
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the name or the filter is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code long}
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   *
+   * @see #removeIf(Predicate)
+   */
+  public final boolean removeIfLong(String name, LongPredicate filter) {
+    var component = component(name, long.class);
+    Objects.requireNonNull(filter);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    return removeIndexes(index -> filter.test(longAt(component, index)));
+  }
+
+  /**
+   * Removes all the elements of the list that satisfy the predicate on the values of the component
+   * {@code name} of type {@code double}. No record is created.
+   * The order of the remaining elements is preserved.
+   *
+   * @param name the name of a record component
+   * @param filter a predicate which returns true for the values of the elements to remove
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the name or the filter is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code double}
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   *
+   * @see #removeIf(Predicate)
+   */
+  public final boolean removeIfDouble(String name, DoublePredicate filter) {
+    var component = component(name, double.class);
+    Objects.requireNonNull(filter);
+    if (unmodifiable) {
+      throw new UnsupportedOperationException();
+    }
+    return removeIndexes(index -> filter.test(doubleAt(component, index)));
+  }
+
+  /**
+   * Removes all the elements of the list that are contained in the collection.
+   * The order of the remaining elements is preserved.
+   *
+   * @param collection a collection of elements to remove
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the collection is null
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   */
+  @Override
+  public final boolean removeAll(Collection<?> collection) {
+    Objects.requireNonNull(collection);
+    return removeIf(collection::contains);
+  }
+
+  /**
+   * Removes all the elements of the list that are not contained in the collection.
+   * The order of the remaining elements is preserved.
+   *
+   * @param collection a collection of elements to keep
+   * @return true if at least one element was removed.
+   * @throws NullPointerException if the collection is null
+   * @throws UnsupportedOperationException if the list is a list of fixed size
+   */
+  @Override
+  public final boolean retainAll(Collection<?> collection) {
+    Objects.requireNonNull(collection);
+    return removeIf(element -> !collection.contains(element));
+  }
+
+  // first mark the indexes to remove in a bitset, then move each remaining element
+  // to its new index in one pass and reset the elements after the new size
+  private boolean removeIndexes(IntPredicate removed) {
+    var size = this.size;
+    var currentCount = modCount;
+    var bitset = new long[(size + 63) >>> 6];
+    var removedCount = 0;
+    for (var i = 0; i < size; i++) {
+      if (removed.test(i)) {
+        bitset[i >>> 6] |= 1L << i;
+        removedCount++;
+      }
+    }
+    if (currentCount != modCount) {
+      throw new ConcurrentModificationException();
+    }
+    if (removedCount == 0) {
+      return false;
+    }
+    var to = 0;
+    while ((bitset[to >>> 6] & 1L << to) == 0) {  // the elements before the first removed one do not move
+      to++;
+    }
+    beforeWrite(to);
+    for (var from = to; from < size; from++) {
+      if ((bitset[from >>> 6] & 1L << from) == 0) {
+        if (to != from) {
+          copyElement(to, from);
+        }
+        to++;
+      }
+    }
+    for (var i = to; i < size; i++) {
+      zeroElement(i);
+    }
+    this.size = to;
+    modCount++;
+    return true;
+  }
+
+  /**
+   * Returns an immutable snapshot of the list.
+   * <p>
+   * The snapshot shares the arrays storing the components with this list, the arrays are copied
+   * (copy-on-write) the first time this list modifies one of the elements of the snapshot,
+   * adding elements at the end of this list does not copy the arrays.
+   * If this list is a list of fixed size, by example the {@link StructOfArrayMap#values()} of a map,
+   * the arrays are copied eagerly. The snapshot of a snapshot is itself.
+   * <p>
+   * All the methods of the snapshot that modify it throw an {@link UnsupportedOperationException}.
+   * The snapshot is fully initialized before being returned, so it can be read by several
+   * threads without any lock.
+   *
+   * @return an immutable snapshot of the list.
+   * @throws UnsupportedOperationException if the list is an {@link OffHeapStructOfArrayList}
+   *   or a {@link ChunkedStructOfArrayList}
+   */
+  public final StructOfArrayList<E> snapshot() {
+    if (immutable) {
+      return this;
+    }
+    var snapshot = newSnapshot();
+    if (unmodifiable) {
+      // the arrays are owned by a map or are mapped files, this list can not track the modifications
+      snapshot.copyAll(size);
+    } else {
+      sharedSize = Math.max(sharedSize, size);
+    }
+    snapshot.immutable = true;
+    // like a final field, all the writes are visible to any thread that sees the snapshot
+    VarHandle.releaseFence();
+    return snapshot;
+  }
+
+  /**
+   * Returns a spliterator on the elements of the list that splits the range of indexes in halves,
+   * so the parallel streams are well balanced.
+   * The spliterator is late-binding and fail-fast, the range is known when the spliterator is first used.
+   *
+   * @return a spliterator on the elements of the list.
+   */
+  @Override
+  public final Spliterator<E> spliterator() {
+    return new IndexSpliterator(0, -1, 0);
+  }
+
+  private final class IndexSpliterator implements Spliterator<E> {
+    private int index;
+    private int fence;  // -1 until used
+    private int expectedModCount;
+
+    private IndexSpliterator(int index, int fence, int expectedModCount) {
+      this.index = index;
+      this.fence = fence;
+      this.expectedModCount = expectedModCount;
+    }
+
+    private int fence() {
+      var fence = this.fence;
+      if (fence == -1) {
+        expectedModCount = modCount;
+        fence = this.fence = size;
+      }
+      return fence;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      var fence = fence();
+      var start = index;
+      var middle = (start + fence) >>> 1;
+      if (start >= middle) {
+        return null;
+      }
+      index = middle;
+      return new IndexSpliterator(start, middle, expectedModCount);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+      Objects.requireNonNull(action);
+      var fence = fence();
+      var index = this.index;
+      if (index >= fence) {
+        return false;
+      }
+      this.index = index + 1;
+      action.accept(valueAt(index));
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+      Objects.requireNonNull(action);
+      var fence = fence();
+      var index = this.index;
+      this.index = fence;
+      for (; index < fence; index++) {
+        action.accept(valueAt(index));
+      }
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+    }
+
+    @Override
+    public long estimateSize() {
+      return fence() - index;
+    }
+
+    @Override
+    public int characteristics() {
+      return SIZED | SUBSIZED | ORDERED | NONNULL;
+    }
+  }
+
+  /**
+   * A policy that computes the capacity of the arrays storing the components when they are resized.
+   * <p>
+   * By default, the arrays have a capacity of 16 elements then grow by a factor of 1.5,
+   * so the number of copies is logarithmic but up to a third of the arrays may be unused.
+   * For huge lists, a {@link #linear(int) linear} growth wastes at most one increment
+   * at the price of more copies.
+   *
+   * @see StructOfArrayList#setGrowthPolicy(GrowthPolicy)
+   */
+  @FunctionalInterface
+  public interface GrowthPolicy {
+    /**
+     * Returns the new capacity of the arrays.
+     *
+     * @param capacity the current capacity
+     * @param minCapacity the minimum capacity, greater than the current capacity
+     * @return the new capacity, greater or equal to minCapacity.
+     */
+    int newCapacity(int capacity, int minCapacity);
+
+    /**
+     * A growth policy that multiplies the capacity by a factor, an empty array grows to 16 elements.
+     *
+     * @param factor the growth factor
+     * @return a growth policy.
+     * @throws IllegalArgumentException if the factor is not greater than 1
+     */
+    static GrowthPolicy geometric(double factor) {
+      if (!(factor > 1.0)) {
+        throw new IllegalArgumentException("factor <= 1");
+      }
+      return (capacity, minCapacity) -> {
+        var newCapacity = capacity == 0? 16: (long) (capacity * factor);
+        return (int) Math.max(minCapacity, Math.min(newCapacity, MAX_CAPACITY));
+      };
+    }
+
+    /**
+     * A growth policy that adds a constant number of elements to the capacity.
+     *
+     * @param increment the number of elements added to the capacity
+     * @return a growth policy.
+     * @throws IllegalArgumentException if the increment is not positive
+     */
+    static GrowthPolicy linear(int increment) {
+      if (increment <= 0) {
+        throw new IllegalArgumentException("increment <= 0");
+      }
+      return (capacity, minCapacity) -> (int) Math.max(minCapacity, Math.min((long) capacity + increment, MAX_CAPACITY));
+    }
+  }
+
+  // the maximum length of an array, some VMs reserve some header words in an array
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  private static final GrowthPolicy DEFAULT_GROWTH_POLICY = GrowthPolicy.geometric(1.5);
+
+  /**
+   * A comparison between the values of a column and a value,
+   * used by the methods {@code count} and {@code filterIndexes} of the columns.
+   * <p>
+   * Unlike a predicate, a comparison can be evaluated on several values at once
+   * using the SIMD instructions of the CPU.
+   *
+   * @see IntColumn#filterIndexes(Comparison, int)
+   * @see LongColumn#filterIndexes(Comparison, long)
+   * @see DoubleColumn#filterIndexes(Comparison, double)
+   */
+  public enum Comparison {
+    /** {@code columnValue == value} */
+    EQUAL,
+    /** {@code columnValue != value} */
+    NOT_EQUAL,
+    /** {@code columnValue < value} */
+    LESS_THAN,
+    /** {@code columnValue <= value} */
+    LESS_THAN_OR_EQUAL,
+    /** {@code columnValue > value} */
+    GREATER_THAN,
+    /** {@code columnValue >= value} */
+    GREATER_THAN_OR_EQUAL;
+
+    boolean test(int columnValue, int value) {
+      return switch (this) {
+        case EQUAL -> columnValue == value;
+        case NOT_EQUAL -> columnValue != value;
+        case LESS_THAN -> columnValue < value;
+        case LESS_THAN_OR_EQUAL -> columnValue <= value;
+        case GREATER_THAN -> columnValue > value;
+        case GREATER_THAN_OR_EQUAL -> columnValue >= value;
+      };
+    }
+
+    boolean test(long columnValue, long value) {
+      return switch (this) {
+        case EQUAL -> columnValue == value;
+        case NOT_EQUAL -> columnValue != value;
+        case LESS_THAN -> columnValue < value;
+        case LESS_THAN_OR_EQUAL -> columnValue <= value;
+        case GREATER_THAN -> columnValue > value;
+        case GREATER_THAN_OR_EQUAL -> columnValue >= value;
+      };
+    }
+
+    boolean test(double columnValue, double value) {
+      return switch (this) {
+        case EQUAL -> columnValue == value;
+        case NOT_EQUAL -> columnValue != value;
+        case LESS_THAN -> columnValue < value;
+        case LESS_THAN_OR_EQUAL -> columnValue <= value;
+        case GREATER_THAN -> columnValue > value;
+        case GREATER_THAN_OR_EQUAL -> columnValue >= value;
+      };
+    }
+  }
+
+  /**
+   * A view on the values of a component of type {@code int} of the records of a list.
+   * Reading or writing a value only touches the array storing the component,
+   * no record is created.
+   *
+   * @see #intColumn(String)
+   */
+  public interface IntColumn {
+    /**
+     * Returns the number of values of the column, which is the size of the list.
+     * @return the number of values of the column.
+     */
+    int size();
+
+    /**
+     * Returns the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @return the value of the component of the record at index {@code index}.
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    int getInt(int index);
+
+    /**
+     * Replaces the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @param value the new value of the component
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    void setInt(int index, int value);
+
+    /**
+     * Returns the number of values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return the number of values of the column that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int count(Comparison comparison, int value) {
+      Objects.requireNonNull(comparison);
+      var count = 0;
+      for (var i = 0; i < size(); i++) {
+        if (comparison.test(getInt(i), value)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Returns the indexes, in ascending order, of the values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return a new array containing the indexes of the values that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int[] filterIndexes(Comparison comparison, int value) {
+      Objects.requireNonNull(comparison);
+      var indexes = new int[size()];
+      var count = 0;
+      for (var i = 0; i < indexes.length; i++) {
+        if (comparison.test(getInt(i), value)) {
+          indexes[count++] = i;
+        }
+      }
+      return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Returns the minimum of the values of the column.
+     * @return the minimum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalInt min() {
+      if (size() == 0) {
+        return OptionalInt.empty();
+      }
+      var min = getInt(0);
+      for (var i = 1; i < size(); i++) {
+        min = Math.min(min, getInt(i));
+      }
+      return OptionalInt.of(min);
+    }
+
+    /**
+     * Returns the maximum of the values of the column.
+     * @return the maximum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalInt max() {
+      if (size() == 0) {
+        return OptionalInt.empty();
+      }
+      var max = getInt(0);
+      for (var i = 1; i < size(); i++) {
+        max = Math.max(max, getInt(i));
+      }
+      return OptionalInt.of(max);
+    }
+
+    /**
+     * Returns the sum of the values of the column, the values are added as longs so the sum does not overflow.
+     * @return the sum of the values of the column.
+     */
+    default long sum() {
+      var sum = 0L;
+      for (var i = 0; i < size(); i++) {
+        sum += getInt(i);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * A view on the values of a component of type {@code long} of the records of a list.
+   * Reading or writing a value only touches the array storing the component,
+   * no record is created.
+   *
+   * @see #longColumn(String)
+   */
+  public interface LongColumn {
+    /**
+     * Returns the number of values of the column, which is the size of the list.
+     * @return the number of values of the column.
+     */
+    int size();
+
+    /**
+     * Returns the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @return the value of the component of the record at index {@code index}.
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    long getLong(int index);
+
+    /**
+     * Replaces the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @param value the new value of the component
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    void setLong(int index, long value);
+
+    /**
+     * Returns the number of values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return the number of values of the column that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int count(Comparison comparison, long value) {
+      Objects.requireNonNull(comparison);
+      var count = 0;
+      for (var i = 0; i < size(); i++) {
+        if (comparison.test(getLong(i), value)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Returns the indexes, in ascending order, of the values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return a new array containing the indexes of the values that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int[] filterIndexes(Comparison comparison, long value) {
+      Objects.requireNonNull(comparison);
+      var indexes = new int[size()];
+      var count = 0;
+      for (var i = 0; i < indexes.length; i++) {
+        if (comparison.test(getLong(i), value)) {
+          indexes[count++] = i;
+        }
+      }
+      return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Returns the minimum of the values of the column.
+     * @return the minimum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalLong min() {
+      if (size() == 0) {
+        return OptionalLong.empty();
+      }
+      var min = getLong(0);
+      for (var i = 1; i < size(); i++) {
+        min = Math.min(min, getLong(i));
+      }
+      return OptionalLong.of(min);
+    }
+
+    /**
+     * Returns the maximum of the values of the column.
+     * @return the maximum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalLong max() {
+      if (size() == 0) {
+        return OptionalLong.empty();
+      }
+      var max = getLong(0);
+      for (var i = 1; i < size(); i++) {
+        max = Math.max(max, getLong(i));
+      }
+      return OptionalLong.of(max);
+    }
+
+    /**
+     * Returns the sum of the values of the column.
+     * @return the sum of the values of the column.
+     */
+    default long sum() {
+      var sum = 0L;
+      for (var i = 0; i < size(); i++) {
+        sum += getLong(i);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * A view on the values of a component of type {@code double} of the records of a list.
+   * Reading or writing a value only touches the array storing the component,
+   * no record is created.
+   *
+   * @see #doubleColumn(String)
+   */
+  public interface DoubleColumn {
+    /**
+     * Returns the number of values of the column, which is the size of the list.
+     * @return the number of values of the column.
+     */
+    int size();
+
+    /**
+     * Returns the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @return the value of the component of the record at index {@code index}.
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    double getDouble(int index);
+
+    /**
+     * Replaces the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @param value the new value of the component
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    void setDouble(int index, double value);
+
+    /**
+     * Returns the number of values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return the number of values of the column that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int count(Comparison comparison, double value) {
+      Objects.requireNonNull(comparison);
+      var count = 0;
+      for (var i = 0; i < size(); i++) {
+        if (comparison.test(getDouble(i), value)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * Returns the indexes, in ascending order, of the values of the column that satisfy {@code comparison value}.
+     * @param comparison a comparison
+     * @param value the value to compare with
+     * @return a new array containing the indexes of the values that satisfy the comparison.
+     * @throws NullPointerException if the comparison is null
+     */
+    default int[] filterIndexes(Comparison comparison, double value) {
+      Objects.requireNonNull(comparison);
+      var indexes = new int[size()];
+      var count = 0;
+      for (var i = 0; i < indexes.length; i++) {
+        if (comparison.test(getDouble(i), value)) {
+          indexes[count++] = i;
+        }
+      }
+      return Arrays.copyOf(indexes, count);
+    }
+
+    /**
+     * Returns the minimum of the values of the column, as defined by {@link Math#min(double, double)}.
+     * @return the minimum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalDouble min() {
+      if (size() == 0) {
+        return OptionalDouble.empty();
+      }
+      var min = getDouble(0);
+      for (var i = 1; i < size(); i++) {
+        min = Math.min(min, getDouble(i));
+      }
+      return OptionalDouble.of(min);
+    }
+
+    /**
+     * Returns the maximum of the values of the column, as defined by {@link Math#max(double, double)}.
+     * @return the maximum of the values of the column or an empty optional if the column is empty.
+     */
+    default OptionalDouble max() {
+      if (size() == 0) {
+        return OptionalDouble.empty();
+      }
+      var max = getDouble(0);
+      for (var i = 1; i < size(); i++) {
+        max = Math.max(max, getDouble(i));
+      }
+      return OptionalDouble.of(max);
+    }
+
+    /**
+     * Returns the sum of the values of the column.
+     * The values may be added in any order, so the result may differ from a sequential sum by rounding errors.
+     * @return the sum of the values of the column.
+     */
+    default double sum() {
+      var sum = 0.0;
+      for (var i = 0; i < size(); i++) {
+        sum += getDouble(i);
+      }
+      return sum;
+    }
+  }
+
+  /**
+   * A view on the values of a component of reference type of the records of a list.
+   * Reading or writing a value only touches the array storing the component,
+   * no record is created.
+   *
+   * @param <T> the type of the component
+   *
+   * @see #objectColumn(String, Class)
+   */
+  public interface ObjectColumn<T> {
+    /**
+     * Returns the number of values of the column, which is the size of the list.
+     * @return the number of values of the column.
+     */
+    int size();
+
+    /**
+     * Returns the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @return the value of the component of the record at index {@code index}.
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    T getObject(int index);
+
+    /**
+     * Replaces the value of the component of the record at index {@code index}.
+     * @param index the index of the record
+     * @param value the new value of the component, can be null
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    void setObject(int index, T value);
+  }
+
+  private int component(String name, Class<?> type) {
+    Objects.requireNonNull(name);
+    return RT.componentIndex(getClass(), name, type);
+  }
+
+  /**
+   * Returns the sum of the values of the component {@code name} of type {@code int}.
+   * The values are read from the array storing the component, no record is created.
+   * <p>
+   * The values are read using the SIMD instructions of the CPU if available.
+   * An {@link OffHeapStructOfArrayList} or a {@link ChunkedStructOfArrayList} does not store
+   * a column in a single array, in that case the values are read one by one, in a loop
+   * that does not box them but that is not vectorized.
+   *
+   * @param name the name of a record component
+   * @return the sum of the values of the component, computed using longs so it does not overflow.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code int}
+   *
+   * @see IntColumn#sum()
+   */
+  public final long sumInt(String name) {
+    var component = component(name, int.class);
+    if (columnArray(component) instanceof int[] array) {
+      return Kernels.KERNELS.sum(array, size);
+    }
+    var sum = 0L;
+    for (var i = 0; i < size; i++) {
+      sum += intAt(component, i);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the minimum of the values of the component {@code name} of type {@code int}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the minimum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code int}
+   *
+   * @see IntColumn#min()
+   */
+  public final OptionalInt minInt(String name) {
+    var component = component(name, int.class);
+    if (size == 0) {
+      return OptionalInt.empty();
+    }
+    if (columnArray(component) instanceof int[] array) {
+      return OptionalInt.of(Kernels.KERNELS.min(array, size));
+    }
+    var min = intAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, intAt(component, i));
+    }
+    return OptionalInt.of(min);
+  }
+
+  /**
+   * Returns the maximum of the values of the component {@code name} of type {@code int}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the maximum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code int}
+   *
+   * @see IntColumn#max()
+   */
+  public final OptionalInt maxInt(String name) {
+    var component = component(name, int.class);
+    if (size == 0) {
+      return OptionalInt.empty();
+    }
+    if (columnArray(component) instanceof int[] array) {
+      return OptionalInt.of(Kernels.KERNELS.max(array, size));
+    }
+    var max = intAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, intAt(component, i));
+    }
+    return OptionalInt.of(max);
+  }
+
+  /**
+   * Returns the sum of the values of the component {@code name} of type {@code long}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the sum of the values of the component.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code long}
+   *
+   * @see LongColumn#sum()
+   */
+  public final long sumLong(String name) {
+    var component = component(name, long.class);
+    if (columnArray(component) instanceof long[] array) {
+      return Kernels.KERNELS.sum(array, size);
+    }
+    var sum = 0L;
+    for (var i = 0; i < size; i++) {
+      sum += longAt(component, i);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the minimum of the values of the component {@code name} of type {@code long}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the minimum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code long}
+   *
+   * @see LongColumn#min()
+   */
+  public final OptionalLong minLong(String name) {
+    var component = component(name, long.class);
+    if (size == 0) {
+      return OptionalLong.empty();
+    }
+    if (columnArray(component) instanceof long[] array) {
+      return OptionalLong.of(Kernels.KERNELS.min(array, size));
+    }
+    var min = longAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, longAt(component, i));
+    }
+    return OptionalLong.of(min);
+  }
+
+  /**
+   * Returns the maximum of the values of the component {@code name} of type {@code long}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the maximum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code long}
+   *
+   * @see LongColumn#max()
+   */
+  public final OptionalLong maxLong(String name) {
+    var component = component(name, long.class);
+    if (size == 0) {
+      return OptionalLong.empty();
+    }
+    if (columnArray(component) instanceof long[] array) {
+      return OptionalLong.of(Kernels.KERNELS.max(array, size));
+    }
+    var max = longAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, longAt(component, i));
+    }
+    return OptionalLong.of(max);
+  }
+
+  /**
+   * Returns the sum of the values of the component {@code name} of type {@code double}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the sum of the values of the component.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code double}
+   *
+   * @see DoubleColumn#sum()
+   */
+  public final double sumDouble(String name) {
+    var component = component(name, double.class);
+    if (columnArray(component) instanceof double[] array) {
+      return Kernels.KERNELS.sum(array, size);
+    }
+    var sum = 0.0;
+    for (var i = 0; i < size; i++) {
+      sum += doubleAt(component, i);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the minimum of the values of the component {@code name} of type {@code double}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the minimum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code double}
+   *
+   * @see DoubleColumn#min()
+   */
+  public final OptionalDouble minDouble(String name) {
+    var component = component(name, double.class);
+    if (size == 0) {
+      return OptionalDouble.empty();
+    }
+    if (columnArray(component) instanceof double[] array) {
+      return OptionalDouble.of(Kernels.KERNELS.min(array, size));
+    }
+    var min = doubleAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      min = Math.min(min, doubleAt(component, i));
+    }
+    return OptionalDouble.of(min);
+  }
+
+  /**
+   * Returns the maximum of the values of the component {@code name} of type {@code double}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the maximum of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code double}
+   *
+   * @see DoubleColumn#max()
+   */
+  public final OptionalDouble maxDouble(String name) {
+    var component = component(name, double.class);
+    if (size == 0) {
+      return OptionalDouble.empty();
+    }
+    if (columnArray(component) instanceof double[] array) {
+      return OptionalDouble.of(Kernels.KERNELS.max(array, size));
+    }
+    var max = doubleAt(component, 0);
+    for (var i = 1; i < size; i++) {
+      max = Math.max(max, doubleAt(component, i));
+    }
+    return OptionalDouble.of(max);
+  }
+
+  /**
+   * Returns the arithmetic mean of the values of the component {@code name}
+   * of type {@code int}, {@code long} or {@code double}.
+   * The values are read from the array storing the component, no record is created,
+   * the loop is only vectorized if the column is stored in a single array (see {@link #sumInt(String)}).
+   *
+   * @param name the name of a record component
+   * @return the average of the values of the component or an empty optional if the list is empty.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name}
+   *   of type {@code int}, {@code long} or {@code double}
+   */
+  public final OptionalDouble average(String name) {
+    Objects.requireNonNull(name);
+    var type = RT.componentTypeOf(getClass(), name);
+    double sum;
+    if (type == int.class) {
+      sum = sumInt(name);
+    } else if (type == long.class) {
+      sum = sumLong(name);
+    } else if (type == double.class) {
+      sum = sumDouble(name);
+    } else {
+      throw new IllegalArgumentException("component " + name + " is not of type int, long or double");
+    }
+    var size = this.size;
+    return size == 0? OptionalDouble.empty(): OptionalDouble.of(sum / size);
+  }
+
+  /**
+   * Returns a view on the values of the component {@code name} of type {@code int}.
+   *
+   * @param name the name of a record component, the name of a component of a nested record
+   *             is prefixed by the name of the nested record, by example "start.x"
+   * @return a view on the values of the component.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code int}
+   */
+  public final IntColumn intColumn(String name) {
+    var component = component(name, int.class);
+    return new IntColumn() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public int getInt(int index) {
+        Objects.checkIndex(index, size);
+        return intAt(component, index);
+      }
+
+      @Override
+      public void setInt(int index, int value) {
+        Objects.checkIndex(index, size);
+        beforeWrite(index);
+        intAt(component, index, value);
+      }
+
+      @Override
+      public int count(Comparison comparison, int value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof int[] array) {
+          return Kernels.KERNELS.count(array, size, comparison, value);
+        }
+        return IntColumn.super.count(comparison, value);
+      }
+
+      @Override
+      public int[] filterIndexes(Comparison comparison, int value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof int[] array) {
+          var indexes = new int[size];
+          var count = Kernels.KERNELS.filterIndexes(array, size, comparison, value, indexes);
+          return Arrays.copyOf(indexes, count);
+        }
+        return IntColumn.super.filterIndexes(comparison, value);
+      }
+
+      @Override
+      public OptionalInt min() {
+        if (size != 0 && columnArray(component) instanceof int[] array) {
+          return OptionalInt.of(Kernels.KERNELS.min(array, size));
+        }
+        return IntColumn.super.min();
+      }
+
+      @Override
+      public OptionalInt max() {
+        if (size != 0 && columnArray(component) instanceof int[] array) {
+          return OptionalInt.of(Kernels.KERNELS.max(array, size));
+        }
+        return IntColumn.super.max();
+      }
+
+      @Override
+      public long sum() {
+        if (columnArray(component) instanceof int[] array) {
+          return Kernels.KERNELS.sum(array, size);
+        }
+        return IntColumn.super.sum();
+      }
+    };
+  }
+
+  /**
+   * Returns a view on the values of the component {@code name} of type {@code long}.
+   *
+   * @param name the name of a record component, the name of a component of a nested record
+   *             is prefixed by the name of the nested record, by example "start.x"
+   * @return a view on the values of the component.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code long}
+   */
+  public final LongColumn longColumn(String name) {
+    var component = component(name, long.class);
+    return new LongColumn() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public long getLong(int index) {
+        Objects.checkIndex(index, size);
+        return longAt(component, index);
+      }
+
+      @Override
+      public void setLong(int index, long value) {
+        Objects.checkIndex(index, size);
+        beforeWrite(index);
+        longAt(component, index, value);
+      }
+
+      @Override
+      public int count(Comparison comparison, long value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof long[] array) {
+          return Kernels.KERNELS.count(array, size, comparison, value);
+        }
+        return LongColumn.super.count(comparison, value);
+      }
+
+      @Override
+      public int[] filterIndexes(Comparison comparison, long value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof long[] array) {
+          var indexes = new int[size];
+          var count = Kernels.KERNELS.filterIndexes(array, size, comparison, value, indexes);
+          return Arrays.copyOf(indexes, count);
+        }
+        return LongColumn.super.filterIndexes(comparison, value);
+      }
+
+      @Override
+      public OptionalLong min() {
+        if (size != 0 && columnArray(component) instanceof long[] array) {
+          return OptionalLong.of(Kernels.KERNELS.min(array, size));
+        }
+        return LongColumn.super.min();
+      }
+
+      @Override
+      public OptionalLong max() {
+        if (size != 0 && columnArray(component) instanceof long[] array) {
+          return OptionalLong.of(Kernels.KERNELS.max(array, size));
+        }
+        return LongColumn.super.max();
+      }
+
+      @Override
+      public long sum() {
+        if (columnArray(component) instanceof long[] array) {
+          return Kernels.KERNELS.sum(array, size);
+        }
+        return LongColumn.super.sum();
+      }
+    };
+  }
+
+  /**
+   * Returns a view on the values of the component {@code name} of type {@code double}.
+   *
+   * @param name the name of a record component, the name of a component of a nested record
+   *             is prefixed by the name of the nested record, by example "start.x"
+   * @return a view on the values of the component.
+   * @throws NullPointerException if the name is null
+   * @throws IllegalArgumentException if there is no component named {@code name} of type {@code double}
+   */
+  public final DoubleColumn doubleColumn(String name) {
+    var component = component(name, double.class);
+    return new DoubleColumn() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public double getDouble(int index) {
+        Objects.checkIndex(index, size);
+        return doubleAt(component, index);
+      }
+
+      @Override
+      public void setDouble(int index, double value) {
+        Objects.checkIndex(index, size);
+        beforeWrite(index);
+        doubleAt(component, index, value);
+      }
+
+      @Override
+      public int count(Comparison comparison, double value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof double[] array) {
+          return Kernels.KERNELS.count(array, size, comparison, value);
+        }
+        return DoubleColumn.super.count(comparison, value);
+      }
+
+      @Override
+      public int[] filterIndexes(Comparison comparison, double value) {
+        Objects.requireNonNull(comparison);
+        if (columnArray(component) instanceof double[] array) {
+          var indexes = new int[size];
+          var count = Kernels.KERNELS.filterIndexes(array, size, comparison, value, indexes);
+          return Arrays.copyOf(indexes, count);
+        }
+        return DoubleColumn.super.filterIndexes(comparison, value);
+      }
+
+      @Override
+      public OptionalDouble min() {
+        if (size != 0 && columnArray(component) instanceof double[] array) {
+          return OptionalDouble.of(Kernels.KERNELS.min(array, size));
+        }
+        return DoubleColumn.super.min();
+      }
+
+      @Override
+      public OptionalDouble max() {
+        if (size != 0 && columnArray(component) instanceof double[] array) {
+          return OptionalDouble.of(Kernels.KERNELS.max(array, size));
+        }
+        return DoubleColumn.super.max();
+      }
+
+      @Override
+      public double sum() {
+        if (columnArray(component) instanceof double[] array) {
+          return Kernels.KERNELS.sum(array, size);
+        }
+        return DoubleColumn.super.sum();
+      }
+    };
+  }
+
+  /**
+   * Returns a view on the values of the component {@code name} of type {@code type}.
+   *
+   * @param name the name of a record component
+   * @param type the type of the record component
+   * @return a view on the values of the component.
+   * @throws NullPointerException if the name or the type is null
+   * @throws IllegalArgumentException if the type is a primitive type or
+   *   if there is no component named {@code name} of type {@code type}
+   * @param <T> the type of the component
+   */
+  public final <T> ObjectColumn<T> objectColumn(String name, Class<T> type) {
+    Objects.requireNonNull(type);
+    if (type.isPrimitive()) {
+      throw new IllegalArgumentException("type is a primitive type");
+    }
+    var component = component(name, type);
+    return new ObjectColumn<>() {
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public T getObject(int index) {
+        Objects.checkIndex(index, size);
+        return (T) objectAt(component, index);
+      }
+
+      @Override
+      public void setObject(int index, T value) {
+        Objects.checkIndex(index, size);
+        beforeWrite(index);
+        objectAt(component, index, type.cast(value));
+      }
+    };
+  }
+
+  /**
+   * Returns a new cursor positioned before the first element of the list.
+   *
+   * @return a new cursor positioned before the first element of the list.
+   *
+   * @see Cursor
+   */
+  public final Cursor cursor() {
+    return new Cursor(RT.componentTypes(getClass()));
+  }
+
+  /**
+   * A cursor on the elements of a list that reads and writes the values of the components
+   * of the current element without creating a record, so the same cursor can be used to scan
+   * or update all the elements without any allocation.
+   * <pre>
+   *   var cursor = list.cursor();
+   *   var age = cursor.component("age");
+   *   while (cursor.next()) {
+   *     cursor.setInt(age, cursor.getInt(age) + 1);
+   *   }
+   * </pre>
+   * A component is identified by its index in the record, the components of a nested record are flattened.
+   * There is a getter and a setter for each primitive type and one for the non-primitive types.
+   * <p>
+   * A cursor is fail-fast, {@link #next()} throws a {@link ConcurrentModificationException}
+   * if the list is structurally modified after the creation of the cursor.
+   *
+   * @see #cursor()
+   */
+  public final class Cursor {
+    private final Class<?>[] componentTypes;
+    private final int expectedModCount;
+    private int index = -1;
+
+    private Cursor(Class<?>[] componentTypes) {
+      this.componentTypes = componentTypes;
+      this.expectedModCount = modCount;
+    }
+
+    /**
+     * Returns the index of the component {@code name}.
+     * @param name the name of a record component, the name of a component of a nested record
+     *             is prefixed by the name of the nested record, by example "start.x"
+     * @return the index of the component.
+     * @throws NullPointerException if the name is null
+     * @throws IllegalArgumentException if there is no component named {@code name}
+     */
+    public int component(String name) {
+      Objects.requireNonNull(name);
+      return StructOfArrayList.this.component(name, RT.componentTypeOf(StructOfArrayList.this.getClass(), name));
+    }
+
+    /**
+     * Moves the cursor to the next element.
+     * @return true if the cursor is on an element, false if there is no more element.
+     * @throws ConcurrentModificationException if the list has been structurally modified
+     */
+    public boolean next() {
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (index + 1 >= size) {
+        index = size;
+        return false;
+      }
+      index++;
+      return true;
+    }
+
+    /**
+     * Returns the index of the current element.
+     * @return the index of the current element.
+     */
+    public int index() {
+      return index;
+    }
+
+    /**
+     * Moves the cursor to the element at index {@code index}.
+     * @param index the index of an element
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public void moveTo(int index) {
+      Objects.checkIndex(index, size);
+      this.index = index;
+    }
+
+    private int checkComponent(int component, Class<?> type) {
+      Objects.checkIndex(component, componentTypes.length);
+      var componentType = componentTypes[component];
+      if (type == Object.class? componentType.isPrimitive(): componentType != type) {
+        throw new IllegalArgumentException("component " + component + " is not of type " + type.getName());
+      }
+      return Objects.checkIndex(index, size);
+    }
+
+    /**
+     * Returns the value of the component of type {@code int} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code int}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public int getInt(int component) {
+      return intAt(component, checkComponent(component, int.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code int} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code int}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setInt(int component, int value) {
+      var index = checkComponent(component, int.class);
+      beforeWrite(index);
+      intAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code long} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code long}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public long getLong(int component) {
+      return longAt(component, checkComponent(component, long.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code long} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code long}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setLong(int component, long value) {
+      var index = checkComponent(component, long.class);
+      beforeWrite(index);
+      longAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code double} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code double}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public double getDouble(int component) {
+      return doubleAt(component, checkComponent(component, double.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code double} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code double}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setDouble(int component, double value) {
+      var index = checkComponent(component, double.class);
+      beforeWrite(index);
+      doubleAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code boolean} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code boolean}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public boolean getBoolean(int component) {
+      return booleanAt(component, checkComponent(component, boolean.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code boolean} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code boolean}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setBoolean(int component, boolean value) {
+      var index = checkComponent(component, boolean.class);
+      beforeWrite(index);
+      booleanAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code byte} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code byte}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public byte getByte(int component) {
+      return byteAt(component, checkComponent(component, byte.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code byte} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code byte}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setByte(int component, byte value) {
+      var index = checkComponent(component, byte.class);
+      beforeWrite(index);
+      byteAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code short} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code short}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public short getShort(int component) {
+      return shortAt(component, checkComponent(component, short.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code short} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code short}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setShort(int component, short value) {
+      var index = checkComponent(component, short.class);
+      beforeWrite(index);
+      shortAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code char} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code char}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public char getChar(int component) {
+      return charAt(component, checkComponent(component, char.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code char} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code char}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setChar(int component, char value) {
+      var index = checkComponent(component, char.class);
+      beforeWrite(index);
+      charAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of type {@code float} of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is not of type {@code float}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public float getFloat(int component) {
+      return floatAt(component, checkComponent(component, float.class));
+    }
+
+    /**
+     * Replaces the value of the component of type {@code float} of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is not of type {@code float}
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setFloat(int component, float value) {
+      var index = checkComponent(component, float.class);
+      beforeWrite(index);
+      floatAt(component, index, value);
+    }
+
+    /**
+     * Returns the value of the component of a non-primitive type of the current element.
+     * @param component the index of the component
+     * @return the value of the component of the current element.
+     * @throws IllegalArgumentException if the component is of a primitive type
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public Object getObject(int component) {
+      return objectAt(component, checkComponent(component, Object.class));
+    }
+
+    /**
+     * Replaces the value of the component of a non-primitive type of the current element.
+     * @param component the index of the component
+     * @param value the new value
+     * @throws IllegalArgumentException if the component is of a primitive type
+     * @throws ClassCastException if the value is not an instance of the type of the component
+     * @throws IndexOutOfBoundsException if the component index is out of bounds or there is no current element
+     */
+    public void setObject(int component, Object value) {
+      var index = checkComponent(component, Object.class);
+      beforeWrite(index);
+      objectAt(component, index, componentTypes[component].cast(value));
+    }
+  }
+
   /**
    * Creates a struct of arrays seen as a list.
    *
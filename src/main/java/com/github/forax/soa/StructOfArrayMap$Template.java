@@ -70,7 +70,9 @@ public final class StructOfArrayMap$Template extends StructOfArrayMap {
 
   @Override
   public void clear() {
-    indexes = new int[32];
+    var indexes = new int[32];
+    Arrays.fill(indexes, EMPTY);
+    this.indexes = indexes;
     keys = new int[16];
     Snippets.start();
     array0 = new int[16];
@@ -88,6 +90,23 @@ public final class StructOfArrayMap$Template extends StructOfArrayMap {
     return values;
   }
 
+  @Override
+  final Object[] columns() {
+    Object[] columns;  // must be declared before the snippet
+    Snippets.start();
+    columns = new Object[] { array0, array1 };
+    Snippets.end();
+    return columns;
+  }
+
+  @Override
+  final void columns(Object[] columns) {
+    Snippets.start();
+    array0 = (int[]) columns[0];
+    array1 = (String[]) columns[1];
+    Snippets.end();
+  }
+
   private void copyElement(int to, int from) {
     Snippets.start();
     array0[to] = array0[from];
@@ -103,21 +122,16 @@ public final class StructOfArrayMap$Template extends StructOfArrayMap {
   }
 
   @Override
-  public Object remove(Object key) {
-    Objects.requireNonNull(key);
-    if (!(key instanceof Integer integer)) {
-      return null;
-    }
-    var k = (int) integer;
-    var slot = k & (indexes.length - 1);
+  public Object removeInt(int key) {
+    var slot = hash(key) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
       if (index == EMPTY) {
         return null;
       }
-      if (index != TOMBSTONE && keys[index] == k) {
+      if (keys[index] == key) {
         var old = valueAt(index);
-        indexes[slot] = TOMBSTONE;
+        removeSlot(slot);
         var last = size - 1;
         if (index != last) {
           var lastKey = keys[last];
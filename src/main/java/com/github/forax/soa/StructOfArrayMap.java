@@ -1,11 +1,18 @@
 package com.github.forax.soa;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -35,6 +42,10 @@ import java.util.function.BiConsumer;
  * <p>
  * If you know the approximative size of the list, consider using {@link #of(Lookup, Class, int)}
  * with the capacity as last parameter.
+ * <p>
+ * A map can be saved with {@link #writeTo(WritableByteChannel)} and restored with
+ * {@link #readFrom(Lookup, Class, ReadableByteChannel)}, the hash table and the columns are written
+ * as blocks of values so restoring a map does not create the records nor rehash the keys.
  *
  * @param <E> the type of the item
  *
@@ -42,7 +53,6 @@ import java.util.function.BiConsumer;
  */
 public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   static final int EMPTY = -1;
-  static final int TOMBSTONE = -2;
 
   int size;
 
@@ -57,8 +67,19 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
     keys = new int[capacity];
   }
 
+  // the finalizer of murmur3 (fmix32), each bit of the key changes the low bits of the hash,
+  // so keys that are multiples of a power of two (even greater than 2^16) do not end up in the same slots
+  static int hash(int key) {
+    var h = key;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    return h ^ (h >>> 16);
+  }
+
   private static void insert(int[] newIndexes, int k, int newIndex) {
-    var slot = k & (newIndexes.length - 1);
+    var slot = hash(k) & (newIndexes.length - 1);
     for(;;) {
       var index = newIndexes[slot];
       if (index == EMPTY) {
@@ -69,11 +90,48 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
     }
   }
 
+  // find the index of the key without trusting the arrays, used by the optimistic reads
+  // of ConcurrentStructOfArrayMap, the arrays may have been read in the middle of an update
+  // so an index can be out of bounds and a hash table can be full, in that case EMPTY is returned
+  // and the result is discarded by the caller anyway because the stamp is not valid
+  static int probe(int[] indexes, int[] keys, int key) {
+    var mask = indexes.length - 1;
+    var slot = hash(key) & mask;
+    for(var i = 0; i < indexes.length; i++) {
+      var index = indexes[slot];
+      if (index < 0 || index >= keys.length) {
+        return EMPTY;
+      }
+      if (keys[index] == key) {
+        return index;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return EMPTY;
+  }
+
+  // number of slots visited to find the key, 0 if the key is not in the map,
+  // used by the tests and the benchmarks to check the distribution of the hash function
+  final int probeLength(int key) {
+    var mask = indexes.length - 1;
+    var slot = hash(key) & mask;
+    for(var length = 1;; length++) {
+      var index = indexes[slot];
+      if (index == EMPTY) {
+        return 0;
+      }
+      if (keys[index] == key) {
+        return length;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
   final int[] rehash() {
     var newIndexes = new int[indexes.length << 1];
     Arrays.fill(newIndexes, EMPTY);
     for (int index : indexes) {
-      if (index < 0) {  // EMPTY or TOMBSTONE
+      if (index == EMPTY) {
         continue;
       }
       insert(newIndexes, keys[index], index);
@@ -94,17 +152,24 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   @Override
   public final boolean containsKey(Object key) {
     Objects.requireNonNull(key);
-    if (!(key instanceof Integer value)) {
-      return false;
-    }
-    var k = (int) value;
-    var slot = k & (indexes.length - 1);
+    return key instanceof Integer value && containsKeyInt(value);
+  }
+
+  /**
+   * Returns true if the map contains the key {@code key}.
+   * This method is equivalent to {@link #containsKey(Object)} but does not box the key.
+   *
+   * @param key a key
+   * @return true if the map contains the key.
+   */
+  public final boolean containsKeyInt(int key) {
+    var slot = hash(key) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
       if (index == EMPTY) {
         return false;
       }
-      if (index != TOMBSTONE && keys[index] == k) {
+      if (keys[index] == key) {
         return true;
       }
       slot = (slot + 1) & (indexes.length - 1);
@@ -116,20 +181,42 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
     return getOrDefault(key, null);
   }
 
+  /**
+   * Returns the value associated to the key {@code key} or null.
+   * This method is equivalent to {@link #get(Object)} but does not box the key.
+   *
+   * @param key a key
+   * @return the value associated to the key or null.
+   */
+  public final E getInt(int key) {
+    return getOrDefaultInt(key, null);
+  }
+
   @Override
   public final E getOrDefault(Object key, E defaultValue) {
     Objects.requireNonNull(key);
     if (!(key instanceof Integer value)) {
       return defaultValue;
     }
-    var k = (int) value;
-    var slot = k & (indexes.length - 1);
+    return getOrDefaultInt(value, defaultValue);
+  }
+
+  /**
+   * Returns the value associated to the key {@code key} or the default value.
+   * This method is equivalent to {@link #getOrDefault(Object, Object)} but does not box the key.
+   *
+   * @param key a key
+   * @param defaultValue the value returned if there is no value associated to the key
+   * @return the value associated to the key or the default value.
+   */
+  public final E getOrDefaultInt(int key, E defaultValue) {
+    var slot = hash(key) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
       if (index == EMPTY) {
         return defaultValue;
       }
-      if (index != TOMBSTONE && keys[index] == k) {
+      if (keys[index] == key) {
         return valueAt(index);
       }
       slot = (slot + 1) & (indexes.length - 1);
@@ -141,27 +228,39 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   @Override
   public final E put(Integer key, E value) {
     Objects.requireNonNull(key);
+    return putInt(key, value);
+  }
+
+  /**
+   * Associates the value {@code value} to the key {@code key}.
+   * This method is equivalent to {@link #put(Integer, Object)} but does not box the key.
+   *
+   * @param key a key
+   * @param value a value
+   * @return the value previously associated to the key or null.
+   * @throws NullPointerException if the value is null
+   */
+  public final E putInt(int key, E value) {
     Objects.requireNonNull(value);
-    var k = (int) key;
     var indexes = this.indexes;
-    var slot = k & (indexes.length - 1);
+    var slot = hash(key) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
-      if (index < 0) {  // EMPTY or TOMBSTONE
+      if (index == EMPTY) {
         if (size == keys.length) {
           resize();
           indexes = this.indexes;
-          slot = k & (indexes.length - 1);
+          slot = hash(key) & (indexes.length - 1);
           continue;
         }
         var newIndex = size++;
         indexes[slot] = newIndex;
-        keys[newIndex] = k;
+        keys[newIndex] = key;
         valueAt(newIndex, value);
         modCount++;
         return null;
       }
-      if (keys[index] == k) {
+      if (keys[index] == key) {
         var old = valueAt(index);
         valueAt(index, value);
         return old;
@@ -171,11 +270,11 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   }
 
   void replaceLastKeyIndex(int k, int lastIndex, int newIndex) {
-    var slot = k & (indexes.length - 1);
+    var slot = hash(k) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
       assert index != EMPTY;
-      if (index != TOMBSTONE && index == lastIndex) {
+      if (index == lastIndex) {
         indexes[slot] = newIndex;
         return;
       }
@@ -183,18 +282,37 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
     }
   }
 
+  // backward shift deletion, the entries following the removed one in the same probe sequence
+  // are moved back, so there is no tombstone and a lookup never scans more than the probe sequence
+  final void removeSlot(int slot) {
+    var mask = indexes.length - 1;
+    var hole = slot;
+    for(var next = (hole + 1) & mask;; next = (next + 1) & mask) {
+      var index = indexes[next];
+      if (index == EMPTY) {
+        break;
+      }
+      var home = hash(keys[index]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {  // the hole is between home and next
+        indexes[hole] = index;
+        hole = next;
+      }
+    }
+    indexes[hole] = EMPTY;
+  }
+
   @Override
   public final E replace(Integer key, E value) {
     Objects.requireNonNull(key);
     Objects.requireNonNull(value);
     var k = (int) key;
-    var slot = k & (indexes.length - 1);
+    var slot = hash(k) & (indexes.length - 1);
     for(;;) {
       var index = indexes[slot];
       if (index == EMPTY) {
         return null;
       }
-      if (index != TOMBSTONE && keys[index] == k) {
+      if (keys[index] == k) {
         var old = valueAt(index);
         valueAt(index, value);
         return old;
@@ -206,6 +324,27 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   abstract E valueAt(int index);
   abstract void valueAt(int index, E element);
 
+  @Override
+  public final E remove(Object key) {
+    Objects.requireNonNull(key);
+    if (!(key instanceof Integer value)) {
+      return null;
+    }
+    return removeInt(value);
+  }
+
+  /**
+   * Removes the value associated to the key {@code key}.
+   * This method is equivalent to {@link #remove(Object)} but does not box the key.
+   * <p>
+   * The last value is moved to the location of the value removed,
+   * so calling {@code removeInt} does not keep the insertion order of {@link #values()}.
+   *
+   * @param key a key
+   * @return the value previously associated to the key or null.
+   */
+  public abstract E removeInt(int key);
+
   @Override
   public final Set<Entry<Integer, E>> entrySet() {
     return new AbstractSet<>() {
@@ -331,6 +470,10 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
   @Override
   public abstract StructOfArrayList<E> values();
 
+  // the arrays storing the components, one per field
+  abstract Object[] columns();
+  abstract void columns(Object[] columns);
+
   @Override
   public void forEach(BiConsumer<? super Integer, ? super E> action) {
     Objects.requireNonNull(action);
@@ -414,4 +557,156 @@ public abstract class StructOfArrayMap<E> extends AbstractMap<Integer, E> {
       throw (LinkageError) new LinkageError().initCause(t);
     }
   }
+
+  // the hash table is written as is, so the magic number must change if hash() changes
+  private static final int MAGIC = 0x534f4d31;  // SOM1
+
+  // a component stored as primitive values, ordinals or bits or a string can be written,
+  // a component stored as a code of a dictionary can not because the dictionary is not written
+  private static String notWritableMessage(Class<?> recordType, List<Components.RecordComponent> components) {
+    return components.stream()
+        .filter(component -> component.storage() == Components.Storage.DICTIONARY
+            || (component.storage() == Components.Storage.ARRAY && !component.type().isPrimitive()
+                && RT.componentType(recordType, component.name()) != String.class))
+        .map(component -> "component " + component.name() + " can not be written")
+        .findFirst()
+        .orElse(null);
+  }
+
+  /**
+   * Writes a snapshot of the map into a channel.
+   * The header (the name and the type of the components, the size and the capacity) is followed
+   * by the hash table, the keys and each column written as blocks of values in the byte order of the platform.
+   * The channel is not closed.
+   *
+   * @param channel a blocking channel
+   * @throws NullPointerException if the channel is null
+   * @throws UnsupportedOperationException if a component is neither a primitive value, an enum or a string,
+   *   or is annotated with {@link DictionaryEncoded}
+   * @throws IOException if an I/O error occurs
+   *
+   * @see #readFrom(Lookup, Class, ReadableByteChannel)
+   */
+  public final void writeTo(WritableByteChannel channel) throws IOException {
+    Objects.requireNonNull(channel);
+    var recordType = RT.recordType(getClass());
+    var components = RT.components(recordType);
+    var message = notWritableMessage(recordType, components);
+    if (message != null) {
+      throw new UnsupportedOperationException(message);
+    }
+    var order = ByteOrder.nativeOrder();
+    var writer = new ColumnIO.Writer(channel, order);
+    writer.writeByte((byte) (order == ByteOrder.BIG_ENDIAN? 1: 0));
+    writer.writeInt(MAGIC);
+    writer.writeInt(components.size());
+    for (var component : components) {
+      writer.writeString(component.name());
+      writer.writeString(RT.componentType(recordType, component.name()).getName());
+      writer.writeString(component.storage().name());
+    }
+    writer.writeInt(size);
+    writer.writeInt(keys.length);
+    writer.writeColumn(indexes);
+    writer.writeColumn(keys);
+    for (var column : columns()) {
+      writer.writeColumn(column);
+    }
+    writer.flush();
+  }
+
+  // each element in [0, size) must be referenced by exactly one slot, the other slots must be EMPTY
+  private static boolean isValidHashTable(int[] indexes, int size) {
+    var referenced = new BitSet(size);
+    for (var index : indexes) {
+      if (index == EMPTY) {
+        continue;
+      }
+      if (index < 0 || index >= size || referenced.get(index)) {
+        return false;
+      }
+      referenced.set(index);
+    }
+    return referenced.cardinality() == size;
+  }
+
+  /**
+   * Reads a map from a snapshot written by {@link #writeTo(WritableByteChannel)}.
+   * The hash table, the keys and the columns are read as blocks of values, the keys are not rehashed.
+   * The channel is not closed.
+   * <p>
+   * The record must have the same components as the record used to write the map,
+   * and the constants of the enums must be declared in the same order.
+   *
+   * @param lookup a lookup that can access to the record
+   * @param recordType a record class
+   * @param channel a blocking channel
+   * @return a newly created map with the keys and the values of the snapshot
+   * @throws NullPointerException if one of the parameter is null
+   * @throws IllegalArgumentException if the recordType is not a record or a component is neither a primitive value,
+   *   an enum or a string, or is annotated with {@link DictionaryEncoded}
+   * @throws IllegalStateException if the lookup can not access to the record class
+   * @throws IOException if an I/O error occurs, if the snapshot was not written by a map of the same record
+   *   or if the hash table or a column of the snapshot is corrupted
+   * @param <T> the type of the map value
+   *
+   * @see #writeTo(WritableByteChannel)
+   */
+  public static <T extends Record> StructOfArrayMap<T> readFrom(Lookup lookup, Class<T> recordType, ReadableByteChannel channel) throws IOException {
+    Objects.requireNonNull(lookup);
+    Objects.requireNonNull(recordType);
+    Objects.requireNonNull(channel);
+    var map = of(lookup, recordType, 0);
+    var components = RT.components(recordType);
+    var message = notWritableMessage(recordType, components);
+    if (message != null) {
+      throw new IllegalArgumentException(message);
+    }
+
+    var reader = new ColumnIO.Reader(channel);
+    reader.order(reader.readByte() == 1? ByteOrder.BIG_ENDIAN: ByteOrder.LITTLE_ENDIAN);
+    if (reader.readInt() != MAGIC) {
+      throw new IOException("invalid snapshot header");
+    }
+    if (reader.readInt() != components.size()) {
+      throw new IOException("snapshot written with a different record than " + recordType.getName());
+    }
+    for (var component : components) {
+      if (!component.name().equals(reader.readString())
+          || !RT.componentType(recordType, component.name()).getName().equals(reader.readString())
+          || !component.storage().name().equals(reader.readString())) {
+        throw new IOException("snapshot written with a different record than " + recordType.getName());
+      }
+    }
+    var size = reader.readInt();
+    var capacity = reader.readInt();
+    if (size < 0 || capacity < size) {
+      throw new IOException("invalid size " + size + " or capacity " + capacity);
+    }
+    if (!(reader.readColumn() instanceof int[] indexes)
+        || indexes.length != capacity << 1 || Integer.bitCount(indexes.length) != 1
+        || !isValidHashTable(indexes, size)
+        || !(reader.readColumn() instanceof int[] keys) || keys.length != capacity) {
+      throw new IOException("invalid hash table");
+    }
+    var columns = map.columns();
+    var field = 0;
+    for (var i = 0; i < components.size(); i++) {
+      if (!Components.hasField(components, i)) {
+        continue;
+      }
+      var column = reader.readColumn();
+      var length = Components.isBitSet(components.get(i))? Bits.length(capacity, Components.bitStride(components, i)): capacity;
+      if (column.getClass() != columns[field].getClass() || Array.getLength(column) != length) {
+        throw new IOException("invalid column " + field);
+      }
+      columns[field++] = column;
+    }
+
+    map.indexes = indexes;
+    map.keys = keys;
+    map.columns(columns);
+    map.size = size;
+    return map;
+  }
 }
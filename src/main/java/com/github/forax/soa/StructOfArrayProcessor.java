@@ -0,0 +1,130 @@
+package com.github.forax.soa;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An annotation processor that generates the specialized classes of {@link StructOfArrayList}
+ * and {@link StructOfArrayMap} for the records annotated with {@link StructOfArray}.
+ * <p>
+ * This processor is registered as a service so it is discovered by javac if this library
+ * is on the annotation processor path.
+ */
+@SupportedAnnotationTypes("com.github.forax.soa.StructOfArray")
+public final class StructOfArrayProcessor extends AbstractProcessor {
+  private static final List<Class<?>> TEMPLATES = List.of(StructOfArrayList$Template.class, StructOfArrayMap$Template.class, OffHeapStructOfArrayList$Template.class, ChunkedStructOfArrayList$Template.class);
+
+  /**
+   * Creates the annotation processor, called by javac.
+   */
+  public StructOfArrayProcessor() {}
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  private static Class<?> erase(TypeMirror type) {
+    return switch (type.getKind()) {
+      case BOOLEAN -> boolean.class;
+      case BYTE -> byte.class;
+      case SHORT -> short.class;
+      case CHAR -> char.class;
+      case INT -> int.class;
+      case LONG -> long.class;
+      case FLOAT -> float.class;
+      case DOUBLE -> double.class;
+      default -> Object.class;
+    };
+  }
+
+  private static boolean isEnum(TypeMirror type) {
+    return type instanceof DeclaredType declaredType && declaredType.asElement().getKind() == ElementKind.ENUM;
+  }
+
+  private static int enumConstantCount(TypeMirror type) {
+    var element = ((DeclaredType) type).asElement();
+    return (int) element.getEnclosedElements().stream()
+        .filter(e -> e.getKind() == ElementKind.ENUM_CONSTANT)
+        .count();
+  }
+
+  // same algorithm as RT.storage() but on the javac elements
+  private Components.Storage storage(RecordComponentElement component, boolean packedBooleans) {
+    var type = component.asType();
+    var erasedType = erase(type);
+    if (component.getAnnotation(DictionaryEncoded.class) != null) {
+      if (!erasedType.isPrimitive()) {
+        return Components.Storage.DICTIONARY;
+      }
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@DictionaryEncoded can not annotate a primitive component", component);
+    }
+    if (isEnum(type)) {
+      return Components.Storage.ofEnum(enumConstantCount(type));
+    }
+    return Components.Storage.of(erasedType, packedBooleans);
+  }
+
+  // same algorithm as RT.components() but on the javac elements
+  private void flatten(TypeElement recordElement, String prefix, boolean packedBooleans, Set<TypeElement> enclosings, List<Components.RecordComponent> components) {
+    enclosings.add(recordElement);
+    for (var component : recordElement.getRecordComponents()) {
+      var name = prefix + component.getSimpleName();
+      var type = component.asType();
+      // a recursive record or an empty record are not flattened
+      if (type instanceof DeclaredType declaredType
+          && declaredType.asElement() instanceof TypeElement element
+          && element.getKind() == ElementKind.RECORD
+          && !element.getRecordComponents().isEmpty()
+          && !enclosings.contains(element)) {
+        flatten(element, name + ".", packedBooleans, enclosings, components);
+        continue;
+      }
+      var erasedType = erase(type);
+      components.add(new Components.RecordComponent(name, erasedType, storage(component, packedBooleans)));
+    }
+    enclosings.remove(recordElement);
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    var messager = processingEnv.getMessager();
+    for (var element : roundEnv.getElementsAnnotatedWith(StructOfArray.class)) {
+      if (element.getKind() != ElementKind.RECORD) {
+        messager.printMessage(Diagnostic.Kind.ERROR, "@StructOfArray can only annotate a record", element);
+        continue;
+      }
+      var recordElement = (TypeElement) element;
+      var recordName = processingEnv.getElementUtils().getBinaryName(recordElement).toString();
+      var components = new ArrayList<Components.RecordComponent>();
+      var packedBooleans = recordElement.getAnnotation(PackedBooleans.class) != null;
+      flatten(recordElement, "", packedBooleans, new HashSet<>(), components);
+      for (var template : TEMPLATES) {
+        var generator = TemplateGenerator.specialized(template, recordName, components);
+        var bytecode = generator.generate();
+        try {
+          var file = processingEnv.getFiler().createClassFile(generator.specializedClassName().replace('/', '.'), recordElement);
+          try (var output = file.openOutputStream()) {
+            output.write(bytecode);
+          }
+        } catch (IOException e) {
+          messager.printMessage(Diagnostic.Kind.ERROR, "can not generate " + generator.specializedClassName() + ": " + e.getMessage(), element);
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -18,11 +18,9 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
-import static java.util.stream.Collectors.joining;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ASM9;
 import static org.objectweb.asm.Opcodes.CHECKCAST;
@@ -49,92 +47,251 @@ final class TemplateGenerator {
     }
   }
 
-  private static Class<?> erase(Class<?> type) {
-    return type.isPrimitive()? type: Object.class;
-  }
-
   public static TemplateGenerator specialized(Class<?> template, Class<?> recordType) {
     Objects.requireNonNull(template, "template is null");
     Objects.requireNonNull(recordType, "record type is null");
     if (!recordType.isRecord()) {
       throw new IllegalArgumentException(recordType.getName() + " not a record");
     }
+    return specialized(template, recordType.getName(), RT.components(recordType));
+  }
+
+  public static TemplateGenerator specialized(Class<?> template, String recordName, List<Components.RecordComponent> components) {
+    Objects.requireNonNull(template, "template is null");
+    Objects.requireNonNull(recordName, "record name is null");
+    Objects.requireNonNull(components, "components is null");
     var templateBytecode = templateBytecode(template);
-    var recordMangledName = recordType.getName().replace('.', '_');
-    var specializedClassName = template.getName().replace('.', '/') + '$' + recordMangledName;
-    var components =
-        Arrays.stream(recordType.getRecordComponents())
-            .map(c -> new Templates.RecordComponent(c.getName(), erase(c.getType())))
-            .toList();
+    var specializedClassName = RT.specializedClassName(template, recordName).replace('.', '/');
+    if (template == OffHeapStructOfArrayList$Template.class) {
+      components = Components.offHeap(components);
+    } else if (template == ChunkedStructOfArrayList$Template.class) {
+      components = Components.chunked(components);
+    }
     return new TemplateGenerator(templateBytecode, specializedClassName, components);
   }
 
   private final byte[] templateBytecode;
   private final String specializedClassName;
-  private final List<Templates.RecordComponent> components;
+  private final List<Components.RecordComponent> components;
 
-  private TemplateGenerator(byte[] templateBytecode, String specializedClassName, List<Templates.RecordComponent> components) {
+  private TemplateGenerator(byte[] templateBytecode, String specializedClassName, List<Components.RecordComponent> components) {
     this.templateBytecode = templateBytecode;
     this.specializedClassName = specializedClassName;
     this.components = components;
   }
 
+  public String specializedClassName() {
+    return specializedClassName;
+  }
+
   private void insertSnippet(MethodVisitor mv, String className, String methodName, String methodDescriptor, int snippetNumber) {
     var mangled = className + "." + methodName + methodDescriptor + snippetNumber;
     switch (mangled) {
       case "com/github/forax/soa/StructOfArrayList$Template.<init>0" -> {
-        Templates.templateListInitCanonical(mv, specializedClassName, components);
+        Templates.templateListInitCanonical(mv, specializedClassName, "com/github/forax/soa/StructOfArrayList", components);
+      }
+      case "com/github/forax/soa/OffHeapStructOfArrayList$Template.<init>0" -> {
+        Templates.templateListInitCanonical(mv, specializedClassName, "com/github/forax/soa/OffHeapStructOfArrayList", components);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.<init>1" -> {
         Templates.templateListInitDefault(mv, specializedClassName, components);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.valueAt(I)Ljava/lang/Object;0",
-           "com/github/forax/soa/StructOfArrayMap$Template.valueAt(I)Ljava/lang/Object;0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.valueAt(I)Ljava/lang/Object;0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.valueAt(I)Ljava/lang/Object;0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.valueAt(I)Ljava/lang/Object;0" -> {
         Templates.templateGetValue(mv, specializedClassName, components);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.valueAt(ILjava/lang/Object;)V0",
-           "com/github/forax/soa/StructOfArrayMap$Template.valueAt(ILjava/lang/Object;)V0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.valueAt(ILjava/lang/Object;)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.valueAt(ILjava/lang/Object;)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.valueAt(ILjava/lang/Object;)V0" -> {
         Templates.templateSetValue(mv, specializedClassName, components);
       }
+      case "com/github/forax/soa/StructOfArrayList$Template.intAt(II)I0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.intAt(II)I0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.intAt(II)I0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, int.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.intAt(III)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.intAt(III)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.intAt(III)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, int.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.longAt(II)J0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.longAt(II)J0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.longAt(II)J0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, long.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.longAt(IIJ)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.longAt(IIJ)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.longAt(IIJ)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, long.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.doubleAt(II)D0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.doubleAt(II)D0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.doubleAt(II)D0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, double.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.doubleAt(IID)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.doubleAt(IID)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.doubleAt(IID)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, double.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.booleanAt(II)Z0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.booleanAt(II)Z0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.booleanAt(II)Z0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, boolean.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.booleanAt(IIZ)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.booleanAt(IIZ)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.booleanAt(IIZ)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, boolean.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.byteAt(II)B0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.byteAt(II)B0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.byteAt(II)B0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, byte.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.byteAt(IIB)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.byteAt(IIB)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.byteAt(IIB)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, byte.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.shortAt(II)S0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.shortAt(II)S0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.shortAt(II)S0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, short.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.shortAt(IIS)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.shortAt(IIS)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.shortAt(IIS)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, short.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.charAt(II)C0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.charAt(II)C0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.charAt(II)C0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, char.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.charAt(IIC)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.charAt(IIC)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.charAt(IIC)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, char.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.floatAt(II)F0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.floatAt(II)F0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.floatAt(II)F0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, float.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.floatAt(IIF)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.floatAt(IIF)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.floatAt(IIF)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, float.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.objectAt(II)Ljava/lang/Object;0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.objectAt(II)Ljava/lang/Object;0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.objectAt(II)Ljava/lang/Object;0" -> {
+        Templates.templateListColumnGet(mv, specializedClassName, components, Object.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.objectAt(IILjava/lang/Object;)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.objectAt(IILjava/lang/Object;)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.objectAt(IILjava/lang/Object;)V0" -> {
+        Templates.templateListColumnSet(mv, specializedClassName, components, Object.class);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.columnArray(I)Ljava/lang/Object;0" -> {
+        Templates.templateListColumnArray(mv, specializedClassName, components);
+      }
       case "com/github/forax/soa/StructOfArrayList$Template.copyElement(II)V0",
-           "com/github/forax/soa/StructOfArrayMap$Template.copyElement(II)V0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.copyElement(II)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.copyElement(II)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.copyElement(II)V0" -> {
         Templates.templateListCopyElement(mv, specializedClassName, components);
       }
+      case "com/github/forax/soa/StructOfArrayList$Template.swapElements(II)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.swapElements(II)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.swapElements(II)V0" -> {
+        Templates.templateListSwapElements(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.visitElements(Ljava/lang/Class;Ljava/lang/Object;I)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.visitElements(Ljava/lang/Class;Ljava/lang/Object;I)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.visitElements(Ljava/lang/Class;Ljava/lang/Object;I)V0" -> {
+        Templates.templateListVisitElements(mv, specializedClassName, components);
+      }
       case "com/github/forax/soa/StructOfArrayList$Template.zeroElement(I)V0",
-           "com/github/forax/soa/StructOfArrayMap$Template.zeroElement(I)V0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.zeroElement(I)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.zeroElement(I)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.zeroElement(I)V0" -> {
         Templates.templateListZeroElement(mv, specializedClassName, components);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.indexOf(Ljava/lang/Object;)I0",
            "com/github/forax/soa/StructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I0",
-           "com/github/forax/soa/StructOfArrayMap$Template.containsValue(Ljava/lang/Object;)Z0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.containsValue(Ljava/lang/Object;)Z0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.indexOf(Ljava/lang/Object;)I0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.indexOf(Ljava/lang/Object;)I0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I0" -> {
         Templates.templateIndexOfOrContainsMaterialize(mv, components);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.indexOf(Ljava/lang/Object;)I1",
-           "com/github/forax/soa/StructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I1" -> {
+           "com/github/forax/soa/StructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I1",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.indexOf(Ljava/lang/Object;)I1",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.indexOf(Ljava/lang/Object;)I1",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I1",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.lastIndexOf(Ljava/lang/Object;)I1" -> {
         Templates.templateIndexOfOrContainsEquals(mv, specializedClassName, components, true);
       }
       case "com/github/forax/soa/StructOfArrayMap$Template.containsValue(Ljava/lang/Object;)Z1" -> {
         Templates.templateIndexOfOrContainsEquals(mv, specializedClassName, components, false);
       }
       case "com/github/forax/soa/StructOfArrayList$Template.copyAll(I)V0",
-           "com/github/forax/soa/StructOfArrayMap$Template.copyAll(I)V0" -> {
+           "com/github/forax/soa/StructOfArrayMap$Template.copyAll(I)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.copyAll(I)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.copyAll(I)V0" -> {
         Templates.templateCopyAll(mv, specializedClassName, components);
       }
-      case "com/github/forax/soa/StructOfArrayList$Template.add(Ljava/lang/Object;)Z0" -> {
+      case "com/github/forax/soa/StructOfArrayList$Template.add(Ljava/lang/Object;)Z0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.add(Ljava/lang/Object;)Z0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.add(Ljava/lang/Object;)Z0" -> {
         Templates.templateListAddResize(mv, specializedClassName, components);
       }
-      case "com/github/forax/soa/StructOfArrayList$Template.clear()V0" -> {
+      case "com/github/forax/soa/StructOfArrayList$Template.capacity()I0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.capacity()I0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.capacity()I0" -> {
+        Templates.templateListCapacity(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.appendElements(Lcom/github/forax/soa/StructOfArrayList;)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.appendElements(Lcom/github/forax/soa/StructOfArrayList;)V0" -> {
+        Templates.templateListAppendElements(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/StructOfArrayList$Template.clear()V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.clear()V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.resetAll()V0" -> {
         Templates.templateListClear(mv, specializedClassName, components);
       }
-      case "com/github/forax/soa/StructOfArrayMap$Template.<init>(I)V0" -> {
+      case "com/github/forax/soa/OffHeapStructOfArrayList$Template.freeAll()V0" -> {
+        Templates.templateOffHeapFreeAll(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/OffHeapStructOfArrayList$Template.columns(I)[Ljava/nio/ByteBuffer;0" -> {
+        Templates.templateOffHeapColumns(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/StructOfArrayMap$Template.<init>(I)V0",
+           "com/github/forax/soa/OffHeapStructOfArrayList$Template.<init>(I)V0",
+           "com/github/forax/soa/ChunkedStructOfArrayList$Template.<init>(I)V0" -> {
         Templates.templateMapInit(mv, specializedClassName, components);
       }
       case "com/github/forax/soa/StructOfArrayMap$Template.clear()V0" -> {
         Templates.templateMapClear(mv, specializedClassName, components);
       }
-      case "com/github/forax/soa/StructOfArrayMap$Template.values()Lcom/github/forax/soa/StructOfArrayList;0" -> {
+      case "com/github/forax/soa/StructOfArrayMap$Template.values()Lcom/github/forax/soa/StructOfArrayList;0",
+           "com/github/forax/soa/StructOfArrayList$Template.newSnapshot()Lcom/github/forax/soa/StructOfArrayList;0" -> {
         Templates.templateMapValues(mv, specializedClassName, components);
       }
+      case "com/github/forax/soa/StructOfArrayMap$Template.columns()[Ljava/lang/Object;0" -> {
+        Templates.templateMapGetColumns(mv, specializedClassName, components);
+      }
+      case "com/github/forax/soa/StructOfArrayMap$Template.columns([Ljava/lang/Object;)V0" -> {
+        Templates.templateMapSetColumns(mv, specializedClassName, components);
+      }
       default -> throw new AssertionError("no snippet " + mangled);
     }
   }
@@ -168,12 +325,22 @@ final class TemplateGenerator {
 
         // add fields
         for (var i = 0; i < components.size(); i++) {
-          var component = components.get(i);
-          var componentType = component.type();
-          super.visitField(ACC_PRIVATE, "array" + i, "[" + componentType.descriptorString(), null, null);
+          if (!Components.hasField(components, i)) {
+            continue;
+          }
+          super.visitField(ACC_PRIVATE, "array" + i, Templates.fieldDescriptor(components.get(i)), null, null);
         }
       }
 
+      private void replaceOffHeapListCanonicalConstructor(int access, String methodName) {
+        var initMethodDescriptor = "(IZ" + Templates.fieldsDescriptor(components) + ")V";
+        var mv = super.visitMethod(access, methodName, initMethodDescriptor, null, null);
+        mv.visitCode();
+        insertSnippet(mv, className, methodName, "", 0);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+      }
+
       private void replaceListConstructors(int access, String methodName, String methodDescriptor) {
         int snippetNumber;
         String initMethodDescriptor;
@@ -187,7 +354,7 @@ final class TemplateGenerator {
         } else {
           // canonical constructor
           snippetNumber = 0;
-          initMethodDescriptor = "(IZ" + components.stream().map(c -> "[" + c.type().descriptorString()).collect(joining())+ ")V";
+          initMethodDescriptor = "(IZ" + Templates.fieldsDescriptor(components) + ")V";
         }
         var mv = super.visitMethod(access, methodName, initMethodDescriptor, null, null);
         mv.visitCode();
@@ -208,6 +375,12 @@ final class TemplateGenerator {
           replaceListConstructors(access, methodName, methodDescriptor);
           return null;
         }
+        // replace the canonical constructor of OffHeapStructOfArrayList$Template
+        if (methodName.equals("<init>") && !methodDescriptor.equals("(I)V")
+            && className.equals("com/github/forax/soa/OffHeapStructOfArrayList$Template")) {
+          replaceOffHeapListCanonicalConstructor(access, methodName);
+          return null;
+        }
 
         // replace snippets
         var mv = super.visitMethod(access, methodName, methodDescriptor, signature, exceptions);
@@ -7,15 +7,27 @@ import org.objectweb.asm.Type;
 
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static com.github.forax.soa.Components.*;
 import static java.util.stream.Collectors.joining;
 import static org.objectweb.asm.Opcodes.*;
 
 final class Templates {
   private Templates() {}
 
-  record RecordComponent(String name, Class<?> type) { }
+  // the '.' is not a valid character in the name of an invokedynamic
+  private static String indyName(String componentName) {
+    return componentName.replace('.', ':');
+  }
+
+  // the paths of the nested records containing a component, by example "a.b.c" -> "a", "a.b"
+  private static Stream<String> nestedRecordPaths(String componentName) {
+    return IntStream.range(0, componentName.length())
+        .filter(i -> componentName.charAt(i) == '.')
+        .mapToObj(i -> componentName.substring(0, i));
+  }
 
   private static String arrayDescriptor(Class<?> componentType) {
     return '[' + componentType.descriptorString();
@@ -41,7 +53,209 @@ final class Templates {
   }
 
 
-  static void templateListInitCanonical(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+
+  // the type of a stored value once loaded on the stack
+  private static Class<?> storedValueType(RecordComponent component) {
+    return switch (component.storage()) {
+      case ARRAY -> component.type();
+      case BITSET, SHARED_BITSET -> boolean.class;
+      case BYTE_ORDINAL, SHORT_ORDINAL, DICTIONARY -> int.class;
+    };
+  }
+
+  static String fieldDescriptor(RecordComponent component) {
+    if (component.offHeap()) {
+      return "Ljava/nio/ByteBuffer;";
+    }
+    if (component.chunked()) {
+      return "[" + arrayDescriptor(storageType(component));
+    }
+    return arrayDescriptor(storageType(component));
+  }
+
+  // log2 of the size of an off-heap value
+  private static int offHeapShift(RecordComponent component) {
+    return switch (storageType(component).descriptorString()) {
+      case "B" -> 0;
+      case "S", "C" -> 1;
+      case "I", "F" -> 2;
+      case "J", "D" -> 3;
+      default -> throw new AssertionError("invalid off-heap component " + component);
+    };
+  }
+
+  // name of the method of ByteBuffer that reads/writes an off-heap value, by example getInt/putInt
+  private static String offHeapAccessorName(String prefix, RecordComponent component) {
+    var storageType = storageType(component);
+    if (storageType == byte.class) {
+      return prefix;
+    }
+    var name = storageType.getName();
+    return prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  // the descriptor of all the fields, in the order of the components
+  static String fieldsDescriptor(List<RecordComponent> components) {
+    return IntStream.range(0, components.size())
+        .filter(i -> hasField(components, i))
+        .mapToObj(i -> fieldDescriptor(components.get(i)))
+        .collect(joining());
+  }
+
+  private static void loadField(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, int i) {
+    var fieldIndex = fieldIndex(components, i);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + fieldIndex, fieldDescriptor(components.get(fieldIndex)));
+  }
+
+  // the array of chunks of the component is on the stack, replace it by the chunk containing
+  // the element at the index stored in indexSlot and push the index of the element in the chunk,
+  // otherwise push the index
+  private static void loadIndex(MethodVisitor mv, RecordComponent component, int indexSlot) {
+    if (component.chunked()) {
+      mv.visitVarInsn(ILOAD, indexSlot);
+      mv.visitLdcInsn(Chunks.SHIFT);
+      mv.visitInsn(ISHR);
+      mv.visitInsn(AALOAD);
+      mv.visitVarInsn(ILOAD, indexSlot);
+      mv.visitLdcInsn(Chunks.MASK);
+      mv.visitInsn(IAND);
+      return;
+    }
+    mv.visitVarInsn(ILOAD, indexSlot);
+  }
+
+  // the capacity is on the stack
+  private static void newField(MethodVisitor mv, List<RecordComponent> components, int i) {
+    var component = components.get(i);
+    if (component.chunked()) {
+      mv.visitLdcInsn(Type.getType(fieldDescriptor(component)));
+      mv.visitInsn(SWAP);
+      mv.visitMethodInsn(INVOKESTATIC, CHUNKS, "newChunks", "(Ljava/lang/Class;I)[Ljava/lang/Object;", false);
+      mv.visitTypeInsn(CHECKCAST, fieldDescriptor(component));
+      return;
+    }
+    if (isBitSet(component)) {
+      mv.visitLdcInsn(bitStride(components, i));
+      mv.visitMethodInsn(INVOKESTATIC, BITS, component.offHeap()? "newOffHeapBits": "newBits",
+          "(II)" + fieldDescriptor(component), false);
+      return;
+    }
+    if (component.offHeap()) {
+      mv.visitLdcInsn(offHeapShift(component));
+      mv.visitMethodInsn(INVOKESTATIC, OFF_HEAP, "allocate", "(II)Ljava/nio/ByteBuffer;", false);
+      return;
+    }
+    var storageType = storageType(component);
+    if (storageType.isPrimitive()) {
+      mv.visitIntInsn(NEWARRAY, newArrayKind(storageType));
+    } else {
+      mv.visitTypeInsn(ANEWARRAY, internalName(storageType));
+    }
+  }
+
+  // load the stored value of the component at index i of the element at the index stored in indexSlot,
+  // the value is not decoded so an enum is loaded as an int
+  private static void loadStoredValue(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, int i, int indexSlot) {
+    var component = components.get(i);
+    loadField(mv, specializedClassName, components, i);
+    loadIndex(mv, component, indexSlot);
+    if (isBitSet(component)) {
+      mv.visitLdcInsn(bitStride(components, i));
+      mv.visitLdcInsn(bitOffset(components, i));
+      mv.visitMethodInsn(INVOKESTATIC, BITS, "get", "(" + fieldDescriptor(component) + "III)Z", false);
+      return;
+    }
+    if (component.offHeap()) {
+      mv.visitLdcInsn(offHeapShift(component));
+      mv.visitInsn(ISHL);
+      mv.visitMethodInsn(INVOKEVIRTUAL, "java/nio/ByteBuffer", offHeapAccessorName("get", component),
+          "(I)" + storageType(component).descriptorString(), false);
+    } else {
+      mv.visitInsn(Type.getType(storageType(component)).getOpcode(IALOAD));
+    }
+    switch (component.storage()) {
+      case BYTE_ORDINAL -> {
+        mv.visitLdcInsn(0xFF);
+        mv.visitInsn(IAND);
+      }
+      case SHORT_ORDINAL -> {
+        mv.visitLdcInsn(0xFFFF);
+        mv.visitInsn(IAND);
+      }
+      default -> {}
+    }
+  }
+
+  // true if the component is stored as a code, an ordinal or a code in a dictionary
+  private static boolean isEncoded(RecordComponent component) {
+    return switch (component.storage()) {
+      case BYTE_ORDINAL, SHORT_ORDINAL, DICTIONARY -> true;
+      default -> false;
+    };
+  }
+
+  // convert a stored value to the value of the component, a code to an enum or to a value of the dictionary
+  private static void decode(MethodVisitor mv, List<RecordComponent> components, int i) {
+    var component = components.get(i);
+    if (isEncoded(component)) {
+      mv.visitInvokeDynamicInsn("decode:" + indyName(component.name()), "(I)Ljava/lang/Object;", BSM);
+    }
+  }
+
+  // convert the value of the component to a stored value, a value not in the dictionary is added
+  private static void encode(MethodVisitor mv, List<RecordComponent> components, int i) {
+    var component = components.get(i);
+    if (isEncoded(component)) {
+      mv.visitInvokeDynamicInsn("encode:" + indyName(component.name()), "(Ljava/lang/Object;)I", BSM);
+    }
+  }
+
+  // convert the value of the component to a stored value, a value not in the dictionary is converted to -1
+  private static void lookup(MethodVisitor mv, List<RecordComponent> components, int i) {
+    var component = components.get(i);
+    if (isEncoded(component)) {
+      mv.visitInvokeDynamicInsn("lookup:" + indyName(component.name()), "(Ljava/lang/Object;)I", BSM);
+    }
+  }
+
+  // load the value of the component at index i of the element at the index stored in indexSlot
+  private static void loadElement(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, int i, int indexSlot) {
+    loadStoredValue(mv, specializedClassName, components, i, indexSlot);
+    decode(mv, components, i);
+  }
+
+  // store the value of the component at index i of the element at the index stored in indexSlot,
+  // the stored value is pushed on the stack between beginStoreElement() and endStoreElement()
+  private static void beginStoreElement(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, int i, int indexSlot) {
+    var component = components.get(i);
+    loadField(mv, specializedClassName, components, i);
+    loadIndex(mv, component, indexSlot);
+    if (isBitSet(component)) {
+      mv.visitLdcInsn(bitStride(components, i));
+      mv.visitLdcInsn(bitOffset(components, i));
+    } else if (component.offHeap()) {
+      mv.visitLdcInsn(offHeapShift(component));
+      mv.visitInsn(ISHL);
+    }
+  }
+
+  private static void endStoreElement(MethodVisitor mv, List<RecordComponent> components, int i) {
+    var component = components.get(i);
+    if (isBitSet(component)) {
+      mv.visitMethodInsn(INVOKESTATIC, BITS, "set", "(" + fieldDescriptor(component) + "IIIZ)V", false);
+      return;
+    }
+    if (component.offHeap()) {
+      mv.visitMethodInsn(INVOKEVIRTUAL, "java/nio/ByteBuffer", offHeapAccessorName("put", component),
+          "(I" + storageType(component).descriptorString() + ")Ljava/nio/ByteBuffer;", false);
+      mv.visitInsn(POP);
+      return;
+    }
+    mv.visitInsn(Type.getType(storageType(component)).getOpcode(IASTORE));
+  }
+
+  static void templateListInitCanonical(MethodVisitor mv, String specializedClassName, String superClassName, List<RecordComponent> components) {
     // 0: aload_0
     // 1: iload_1
     // 2: iload_2
@@ -62,14 +276,16 @@ final class Templates {
     mv.visitVarInsn(ALOAD, 0);
     mv.visitVarInsn(ILOAD, 1);
     mv.visitVarInsn(ILOAD, 2);
-    mv.visitMethodInsn(INVOKESPECIAL, "com/github/forax/soa/StructOfArrayList", "<init>", "(IZ)V", false);
+    mv.visitMethodInsn(INVOKESPECIAL, superClassName, "<init>", "(IZ)V", false);
 
+    var parameter = parameterStart;
     for (var i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
+      if (!hasField(components, i)) {
+        continue;
+      }
       mv.visitVarInsn(ALOAD, 0);
-      mv.visitVarInsn(ALOAD, parameterStart + i);
-      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      mv.visitVarInsn(ALOAD, parameter++);
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor(components.get(i)));
     }
     mv.visitInsn(RETURN);
   }
@@ -92,17 +308,15 @@ final class Templates {
     mv.visitInsn(ICONST_0);
     mv.visitVarInsn(ILOAD, 2);
 
-    for(var component: components) {
-      var componentType = component.type();
-      mv.visitVarInsn(ILOAD, 1);
-      if (componentType.isPrimitive()) {
-        mv.visitIntInsn(NEWARRAY, newArrayKind(componentType));
-      } else {
-        mv.visitTypeInsn(ANEWARRAY, internalName(componentType));
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
       }
+      mv.visitVarInsn(ILOAD, 1);
+      newField(mv, components, i);
     }
     mv.visitMethodInsn(INVOKESPECIAL, specializedClassName, "<init>",
-        "(IZ" + components.stream().map(c -> arrayDescriptor(c.type())).collect(Collectors.joining()) + ")V",
+        "(IZ" + fieldsDescriptor(components) + ")V",
         false);
     mv.visitInsn(RETURN);
   }
@@ -124,19 +338,32 @@ final class Templates {
     // 19: invokespecial #30                 // Method com/github/forax/soa/Person."<init>":(ILjava/lang/String;)V
     // 22: astore_2
 
-    for (var i = 0; i < components.size(); i++) {
+    newRecord(mv, specializedClassName, components, 0, "");
+    mv.visitVarInsn(ASTORE, 2);
+  }
+
+  // load the components of the record at path (the root record if the path is empty),
+  // create the nested records recursively and call the constructor,
+  // returns the index of the first component that does not belong to the record
+  private static int newRecord(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, int start, String path) {
+    var prefix = path.isEmpty()? "": path + ".";
+    var descriptor = new StringBuilder("(");
+    var i = start;
+    while (i < components.size() && components.get(i).name().startsWith(prefix)) {
       var component = components.get(i);
-      var componentType = component.type();
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
-      mv.visitVarInsn(ILOAD, 1);
-      mv.visitInsn(Type.getType(componentType).getOpcode(IALOAD));
+      var dot = component.name().indexOf('.', prefix.length());
+      if (dot != -1) {  // nested record
+        i = newRecord(mv, specializedClassName, components, i, component.name().substring(0, dot));
+        descriptor.append("Ljava/lang/Object;");
+        continue;
+      }
+      loadElement(mv, specializedClassName, components, i, 1);
+      descriptor.append(component.type().descriptorString());
+      i++;
     }
-
-    mv.visitInvokeDynamicInsn("new",
-        "(" + components.stream().map(c -> c.type().descriptorString()).collect(joining()) + ")Ljava/lang/Object;",
-        BSM);
-    mv.visitVarInsn(ASTORE, 2);
+    descriptor.append(")Ljava/lang/Object;");
+    mv.visitInvokeDynamicInsn(path.isEmpty()? "new": "new:" + indyName(path), descriptor.toString(), BSM);
+    return i;
   }
 
   static void templateSetValue(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
@@ -154,15 +381,103 @@ final class Templates {
     // 24: invokevirtual #40                 // Method com/github/forax/soa/Person.name:()Ljava/lang/String;
     // 27: aastore
 
+    // a nested record can not be null, check before modifying any array
+    components.stream()
+        .flatMap(c -> nestedRecordPaths(c.name()))
+        .distinct()
+        .forEach(path -> {
+          mv.visitVarInsn(ALOAD, 3);
+          mv.visitInvokeDynamicInsn(indyName(path), "(Ljava/lang/Object;)Ljava/lang/Object;", BSM_RECORD_ACCESS);
+          mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects", "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+          mv.visitInsn(POP);
+        });
+
     for (int i = 0; i < components.size(); i++) {
+      var component = components.get(i);
+      beginStoreElement(mv, specializedClassName, components, i, 1);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitInvokeDynamicInsn(indyName(component.name()), "(Ljava/lang/Object;)" + component.type().descriptorString(), BSM_RECORD_ACCESS);
+      encode(mv, components, i);
+      endStoreElement(mv, components, i);
+    }
+  }
+
+  static void templateListColumnGet(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, Class<?> columnType) {
+    //  0: iload_1
+    //  1: ifne          11
+
+    //  4: aload_0
+    //  5: getfield      #7                  // Field array0:[I
+    //  8: iload_2
+    //  9: iaload
+    // 10: ireturn
+
+    for (var i = 0; i < components.size(); i++) {
       var component = components.get(i);
       var componentType = component.type();
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      if (componentType != columnType) {
+        continue;
+      }
+      var nextLabel = new Label();
       mv.visitVarInsn(ILOAD, 1);
-      mv.visitVarInsn(ALOAD, 3);
-      mv.visitInvokeDynamicInsn(component.name(), "(Ljava/lang/Object;)" + componentType.descriptorString(), BSM_RECORD_ACCESS);
-      mv.visitInsn(Type.getType(componentType).getOpcode(IASTORE));
+      mv.visitLdcInsn(i);
+      mv.visitJumpInsn(IF_ICMPNE, nextLabel);
+      loadElement(mv, specializedClassName, components, i, 2);
+      mv.visitInsn(Type.getType(componentType).getOpcode(IRETURN));
+      mv.visitLabel(nextLabel);
+    }
+  }
+
+  static void templateListColumnArray(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  0: iload_1
+    //  1: ifne          9
+
+    //  4: aload_0
+    //  5: getfield      #7                  // Field array0:[I
+    //  8: areturn
+
+    for (var i = 0; i < components.size(); i++) {
+      var component = components.get(i);
+      if (component.storage() != Storage.ARRAY || !component.type().isPrimitive() || component.offHeap() || component.chunked()) {
+        continue;
+      }
+      var nextLabel = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      mv.visitLdcInsn(i);
+      mv.visitJumpInsn(IF_ICMPNE, nextLabel);
+      loadField(mv, specializedClassName, components, i);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(nextLabel);
+    }
+  }
+
+  static void templateListColumnSet(MethodVisitor mv, String specializedClassName, List<RecordComponent> components, Class<?> columnType) {
+    //  0: iload_1
+    //  1: ifne          12
+
+    //  4: aload_0
+    //  5: getfield      #7                  // Field array0:[I
+    //  8: iload_2
+    //  9: iload_3
+    // 10: iastore
+    // 11: return
+
+    for (var i = 0; i < components.size(); i++) {
+      var component = components.get(i);
+      var componentType = component.type();
+      if (componentType != columnType) {
+        continue;
+      }
+      var nextLabel = new Label();
+      mv.visitVarInsn(ILOAD, 1);
+      mv.visitLdcInsn(i);
+      mv.visitJumpInsn(IF_ICMPNE, nextLabel);
+      beginStoreElement(mv, specializedClassName, components, i, 2);
+      mv.visitVarInsn(Type.getType(componentType).getOpcode(ILOAD), 3);
+      encode(mv, components, i);
+      endStoreElement(mv, components, i);
+      mv.visitInsn(RETURN);
+      mv.visitLabel(nextLabel);
     }
   }
 
@@ -186,19 +501,78 @@ final class Templates {
     // 26: aastore
 
     for (var i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
-      mv.visitVarInsn(ILOAD, 1);
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
-      mv.visitVarInsn(ILOAD, 2);
-      mv.visitInsn(Type.getType(componentType).getOpcode(IALOAD));
-      mv.visitInsn(Type.getType(componentType).getOpcode(IASTORE));
+      beginStoreElement(mv, specializedClassName, components, i, 1);
+      loadStoredValue(mv, specializedClassName, components, i, 2);
+      endStoreElement(mv, components, i);
     }
   }
 
+  static void templateListSwapElements(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  3: aload_0
+    //  4: getfield      #7                  // Field array0:[I
+    //  7: iload_1
+    //  8: iaload
+    //  9: istore_3
+
+    // 10: aload_0
+    // 11: getfield      #7                  // Field array0:[I
+    // 14: iload_1
+    // 15: aload_0
+    // 16: getfield      #7                  // Field array0:[I
+    // 19: iload_2
+    // 20: iaload
+    // 21: iastore
+
+    // 22: aload_0
+    // 23: getfield      #7                  // Field array0:[I
+    // 26: iload_2
+    // 27: iload_3
+    // 28: iastore
+
+    // the slot 3 is reused for each component
+    for (var i = 0; i < components.size(); i++) {
+      var valueType = Type.getType(storedValueType(components.get(i)));
+      loadStoredValue(mv, specializedClassName, components, i, 1);
+      mv.visitVarInsn(valueType.getOpcode(ISTORE), 3);
+
+      beginStoreElement(mv, specializedClassName, components, i, 1);
+      loadStoredValue(mv, specializedClassName, components, i, 2);
+      endStoreElement(mv, components, i);
+
+      beginStoreElement(mv, specializedClassName, components, i, 2);
+      mv.visitVarInsn(valueType.getOpcode(ILOAD), 3);
+      endStoreElement(mv, components, i);
+    }
+  }
+
+  static void templateListVisitElements(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  7: aload_1
+    //  8: aload_2
+
+    //  9: aload_0
+    // 10: getfield      #7                  // Field array0:[I
+    // 13: iload         4
+    // 15: iaload
+
+    // 16: aload_0
+    // 17: getfield      #13                 // Field array1:[Ljava/lang/String;
+    // 20: iload         4
+    // 22: aaload
+
+    // 23: invokedynamic #45,  0             // InvokeDynamic #0:visit:(Ljava/lang/Class;Ljava/lang/Object;ILjava/lang/String;)V
+
+    // the non-primitive components are passed as Object, the call site does the casts
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    for (var i = 0; i < components.size(); i++) {
+      loadElement(mv, specializedClassName, components, i, 4);
+    }
+    var descriptor = components.stream()
+        .map(c -> c.type().descriptorString())
+        .collect(joining("", "(Ljava/lang/Class;Ljava/lang/Object;", ")V"));
+    mv.visitInvokeDynamicInsn("visit", descriptor, BSM);
+  }
+
   static void templateListZeroElement(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
     //  3: aload_0
     //  4: getfield      #13                 // Field array1:[Ljava/lang/String;
@@ -208,15 +582,12 @@ final class Templates {
 
     for (var i = 0; i < components.size(); i++) {
       var component = components.get(i);
-      var componentType = component.type();
-      if (componentType.isPrimitive()) {
+      if (storageType(component).isPrimitive()) {
         continue;
       }
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
-      mv.visitVarInsn(ILOAD, 1);
+      beginStoreElement(mv, specializedClassName, components, i, 1);
       mv.visitInsn(ACONST_NULL);
-      mv.visitInsn(AASTORE);
+      endStoreElement(mv, components, i);
     }
   }
 
@@ -231,12 +602,15 @@ final class Templates {
 
     var slot = 4;
 
-    for (var component : components) {
-      var componentType = component.type();
+    // the values are stored encoded, so they can be compared with the stored values
+    for (var i = 0; i < components.size(); i++) {
+      var component = components.get(i);
+      var valueType = storedValueType(component);
       mv.visitVarInsn(ALOAD, 2);
-      mv.visitInvokeDynamicInsn(component.name(), "(Ljava/lang/Object;)" + componentType.descriptorString(), BSM_RECORD_ACCESS);
-      mv.visitVarInsn(Type.getType(componentType).getOpcode(ISTORE), slot);
-      slot += (componentType == long.class || componentType == double.class) ? 2 : 1;
+      mv.visitInvokeDynamicInsn(indyName(component.name()), "(Ljava/lang/Object;)" + component.type().descriptorString(), BSM_RECORD_ACCESS);
+      lookup(mv, components, i);
+      mv.visitVarInsn(Type.getType(valueType).getOpcode(ISTORE), slot);
+      slot += (valueType == long.class || valueType == double.class) ? 2 : 1;
     }
   }
 
@@ -265,14 +639,11 @@ final class Templates {
 
     for (var i = 0; i < components.size(); i++) {
       var component = components.get(i);
-      var componentType = component.type();
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
-      mv.visitVarInsn(ILOAD, 3);
-      mv.visitInsn(Type.getType(componentType).getOpcode(IALOAD));
-      mv.visitVarInsn(Type.getType(componentType).getOpcode(ILOAD), slot);
-      slot += (componentType == long.class || componentType == double.class)? 2: 1;
-      switch (componentType.descriptorString()) {
+      var valueType = storedValueType(component);
+      loadStoredValue(mv, specializedClassName, components, i, 3);
+      mv.visitVarInsn(Type.getType(valueType).getOpcode(ILOAD), slot);
+      slot += (valueType == long.class || valueType == double.class)? 2: 1;
+      switch (valueType.descriptorString()) {
         case "Z", "B", "C", "S", "I" -> mv.visitJumpInsn(IF_ICMPNE, endLabel);
         case "J" -> {
           mv.visitInsn(LCMP);
@@ -320,20 +691,41 @@ final class Templates {
     // 27: putfield      #13                 // Field array1:[Ljava/lang/String;
 
     for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
       var component = components.get(i);
-      var componentType = component.type();
+      var storageType = storageType(component);
       mv.visitVarInsn(ALOAD, 0);
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      loadField(mv, specializedClassName, components, i);
       mv.visitVarInsn(ILOAD, 1);
-      var erasedArrayType = componentType.isPrimitive()? componentType.arrayType(): Object[].class;
+      if (isBitSet(component)) {
+        mv.visitLdcInsn(bitStride(components, i));
+        var fieldDescriptor = fieldDescriptor(component);
+        mv.visitMethodInsn(INVOKESTATIC, BITS, "copyOf", "(" + fieldDescriptor + "II)" + fieldDescriptor, false);
+        mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor);
+        continue;
+      }
+      if (component.offHeap()) {
+        mv.visitLdcInsn(offHeapShift(component));
+        mv.visitMethodInsn(INVOKESTATIC, OFF_HEAP, "copyOf", "(Ljava/nio/ByteBuffer;II)Ljava/nio/ByteBuffer;", false);
+        mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, "Ljava/nio/ByteBuffer;");
+        continue;
+      }
+      if (component.chunked()) {
+        mv.visitMethodInsn(INVOKESTATIC, CHUNKS, "copyOf", "([Ljava/lang/Object;I)[Ljava/lang/Object;", false);
+        mv.visitTypeInsn(CHECKCAST, fieldDescriptor(component));
+        mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor(component));
+        continue;
+      }
+      var erasedArrayType = storageType.isPrimitive()? storageType.arrayType(): Object[].class;
       mv.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", "copyOf",
           "(" + erasedArrayType.descriptorString() + "I)" + erasedArrayType.descriptorString(),
           false);
-      if (requireGenericUpcast(componentType)) {
-        mv.visitTypeInsn(CHECKCAST, arrayDescriptor(componentType));
+      if (requireGenericUpcast(storageType)) {
+        mv.visitTypeInsn(CHECKCAST, arrayDescriptor(storageType));
       }
-      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(storageType));
     }
   }
 
@@ -350,21 +742,96 @@ final class Templates {
     if (components.isEmpty()) {
       return;  // no component, no resize needed
     }
-    var firstComponentType = components.get(0).type();
-
     var endLabel = new Label();
 
     mv.visitVarInsn(ALOAD, 0);
     mv.visitFieldInsn(GETFIELD, specializedClassName, "size", "I");
-    mv.visitVarInsn(ALOAD, 0);
-    mv.visitFieldInsn(GETFIELD, specializedClassName, "array0", arrayDescriptor(firstComponentType));
-    mv.visitInsn(ARRAYLENGTH);
+    loadCapacity(mv, specializedClassName, components);
     mv.visitJumpInsn(IF_ICMPNE, endLabel);
     mv.visitVarInsn(ALOAD, 0);
     mv.visitMethodInsn(INVOKEVIRTUAL, specializedClassName, "resize", "()V", false);
     mv.visitLabel(endLabel);
   }
 
+  // load the number of elements that can be stored in the arrays, there is at least one component
+  private static void loadCapacity(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    // a bitset may have more room than an array, so use an array if there is one
+    var capacityComponent = IntStream.range(0, components.size())
+        .filter(i -> !isBitSet(components.get(i)))
+        .findFirst()
+        .orElse(0);
+    loadField(mv, specializedClassName, components, capacityComponent);
+    var component = components.get(capacityComponent);
+    if (isBitSet(component)) {
+      mv.visitLdcInsn(bitStride(components, capacityComponent));
+      mv.visitMethodInsn(INVOKESTATIC, BITS, "capacity", "(" + fieldDescriptor(component) + "I)I", false);
+    } else if (component.offHeap()) {
+      mv.visitLdcInsn(offHeapShift(component));
+      mv.visitMethodInsn(INVOKESTATIC, OFF_HEAP, "capacity", "(Ljava/nio/ByteBuffer;I)I", false);
+    } else if (component.chunked()) {
+      mv.visitMethodInsn(INVOKESTATIC, CHUNKS, "capacity", "([Ljava/lang/Object;)I", false);
+    } else {
+      mv.visitInsn(ARRAYLENGTH);
+    }
+  }
+
+  static void templateListCapacity(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    // 0: aload_0
+    // 1: getfield      #7                  // Field array0:[I
+    // 4: arraylength
+    // 5: istore_1
+
+    if (components.isEmpty()) {
+      mv.visitLdcInsn(Integer.MAX_VALUE);  // no component, an infinite capacity
+    } else {
+      loadCapacity(mv, specializedClassName, components);
+    }
+    mv.visitVarInsn(ISTORE, 1);
+  }
+
+  static void templateListAppendElements(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    // 17: aload_2
+    // 18: getfield      #7                  // Field array0:[I
+    // 21: iconst_0
+    // 22: aload_0
+    // 23: getfield      #7                  // Field array0:[I
+    // 26: iload_3
+    // 27: iload         4
+    // 29: invokestatic  #95                 // Method java/lang/System.arraycopy:(Ljava/lang/Object;ILjava/lang/Object;II)V
+
+    // the list in slot 2 has the same species, the elements are appended at the index in slot 3,
+    // the number of elements is in slot 4, all the components sharing a bitset are copied at once
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
+      var component = components.get(i);
+      var fieldDescriptor = fieldDescriptor(component);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, fieldDescriptor);
+      if (isBitSet(component)) {
+        loadField(mv, specializedClassName, components, i);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitLdcInsn(bitStride(components, i));
+        mv.visitMethodInsn(INVOKESTATIC, BITS, "copy", "(" + fieldDescriptor + fieldDescriptor + "III)V", false);
+        continue;
+      }
+      if (component.chunked()) {
+        loadField(mv, specializedClassName, components, i);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ILOAD, 4);
+        mv.visitMethodInsn(INVOKESTATIC, CHUNKS, "copy", "([Ljava/lang/Object;[Ljava/lang/Object;II)V", false);
+        continue;
+      }
+      mv.visitInsn(ICONST_0);
+      loadField(mv, specializedClassName, components, i);
+      mv.visitVarInsn(ILOAD, 3);
+      mv.visitVarInsn(ILOAD, 4);
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V", false);
+    }
+  }
+
   static void templateListClear(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
     // 18: aload_0
     // 19: iconst_0
@@ -377,17 +844,78 @@ final class Templates {
     // 30: putfield      #13                 // Field array1:[Ljava/lang/String;
 
     for (var i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
+      if (!hasField(components, i)) {
+        continue;
+      }
       mv.visitVarInsn(ALOAD, 0);
       mv.visitInsn(ICONST_0);
-      if (componentType.isPrimitive()) {
-        mv.visitIntInsn(NEWARRAY, newArrayKind(componentType));
+      newField(mv, components, i);
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor(components.get(i)));
+    }
+  }
+
+  static void templateOffHeapFreeAll(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  0: aload_0
+    //  1: getfield      #7                  // Field array0:Ljava/nio/ByteBuffer;
+    //  4: invokestatic  #53                 // Method com/github/forax/soa/OffHeap.free:(Ljava/nio/ByteBuffer;)V
+
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i) || !components.get(i).offHeap()) {
+        continue;
+      }
+      loadField(mv, specializedClassName, components, i);
+      mv.visitMethodInsn(INVOKESTATIC, OFF_HEAP, "free", "(Ljava/nio/ByteBuffer;)V", false);
+    }
+  }
+
+  static void templateOffHeapColumns(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  0: iconst_2
+    //  1: anewarray     #25                 // class java/nio/ByteBuffer
+    //  4: dup
+    //  5: iconst_0
+    //  6: aload_0
+    //  7: getfield      #7                  // Field array0:Ljava/nio/ByteBuffer;
+    // 10: iconst_0
+    // 11: iload_1
+    // 12: iconst_2
+    // 13: ishl
+    // 14: invokevirtual #60                 // Method java/nio/ByteBuffer.slice:(II)Ljava/nio/ByteBuffer;
+    // 17: aastore
+    // 18: dup
+    // 19: iconst_1
+    // 20: aconst_null
+    // 21: aastore
+    // 22: astore_2
+
+    var fieldCount = (int) IntStream.range(0, components.size()).filter(i -> hasField(components, i)).count();
+    mv.visitLdcInsn(fieldCount);
+    mv.visitTypeInsn(ANEWARRAY, "java/nio/ByteBuffer");
+    var field = 0;
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
+      var component = components.get(i);
+      if (!component.offHeap()) {  // stay null
+        field++;
+        continue;
+      }
+      mv.visitInsn(DUP);
+      mv.visitLdcInsn(field++);
+      loadField(mv, specializedClassName, components, i);
+      mv.visitInsn(ICONST_0);
+      mv.visitVarInsn(ILOAD, 1);
+      if (isBitSet(component)) {
+        mv.visitLdcInsn(bitStride(components, i));
+        mv.visitMethodInsn(INVOKESTATIC, BITS, "byteSize", "(II)I", false);
       } else {
-        mv.visitTypeInsn(ANEWARRAY, internalName(componentType));
+        mv.visitLdcInsn(offHeapShift(component));
+        mv.visitInsn(ISHL);
       }
-      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      mv.visitMethodInsn(INVOKEVIRTUAL, "java/nio/ByteBuffer", "slice", "(II)Ljava/nio/ByteBuffer;", false);
+      mv.visitInsn(AASTORE);
     }
+    mv.visitVarInsn(ASTORE, 2);
   }
 
   static void templateMapInit(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
@@ -401,17 +929,14 @@ final class Templates {
     // 17: anewarray     #19                 // class java/lang/String
     // 20: putfield      #21                 // Field array1:[Ljava/lang/String;
 
-    for (int i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
       mv.visitVarInsn(ALOAD, 0);
       mv.visitVarInsn(ILOAD, 1);
-      if (componentType.isPrimitive()) {
-        mv.visitIntInsn(NEWARRAY, newArrayKind(componentType));
-      } else {
-        mv.visitTypeInsn(ANEWARRAY, internalName(componentType));
-      }
-      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      newField(mv, components, i);
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor(components.get(i)));
     }
   }
 
@@ -427,19 +952,20 @@ final class Templates {
     // 33: putfield      #21                 // Field array1:[Ljava/lang/String;
 
     for (var i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
+      if (!hasField(components, i)) {
+        continue;
+      }
       mv.visitVarInsn(ALOAD, 0);
       mv.visitIntInsn(BIPUSH, 16);
-      if (componentType.isPrimitive()) {
-        mv.visitIntInsn(NEWARRAY, newArrayKind(componentType));
-      } else {
-        mv.visitTypeInsn(ANEWARRAY, internalName(componentType));
-      }
-      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      newField(mv, components, i);
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor(components.get(i)));
     }
   }
 
+  private static final String BITS = "com/github/forax/soa/Bits";
+  private static final String OFF_HEAP = "com/github/forax/soa/OffHeap";
+  private static final String CHUNKS = "com/github/forax/soa/Chunks";
+
   static final Handle BSM = new Handle(H_INVOKESTATIC, "com/github/forax/soa/RT", "bsm",
       "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
       false);
@@ -469,15 +995,76 @@ final class Templates {
     mv.visitInsn(ICONST_1);
 
     for (var i = 0; i < components.size(); i++) {
-      var component = components.get(i);
-      var componentType = component.type();
-      mv.visitVarInsn(ALOAD, 0);
-      mv.visitFieldInsn(GETFIELD, specializedClassName, "array" + i, arrayDescriptor(componentType));
+      if (!hasField(components, i)) {
+        continue;
+      }
+      loadField(mv, specializedClassName, components, i);
     }
 
     mv.visitInvokeDynamicInsn("newCanonicalList",
-        "(IZ" + components.stream().map(c -> arrayDescriptor(c.type())).collect(joining()) + ")Lcom/github/forax/soa/StructOfArrayList;",
+        "(IZ" + fieldsDescriptor(components) + ")Lcom/github/forax/soa/StructOfArrayList;",
         BSM);
     mv.visitVarInsn(ASTORE, 1);
   }
+
+  static void templateMapGetColumns(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  0: iconst_2
+    //  1: anewarray     #2                  // class java/lang/Object
+    //  4: dup
+    //  5: iconst_0
+    //  6: aload_0
+    //  7: getfield      #13                 // Field array0:[I
+    // 10: aastore
+    // 11: dup
+    // 12: iconst_1
+    // 13: aload_0
+    // 14: getfield      #21                 // Field array1:[Ljava/lang/String;
+    // 17: aastore
+    // 18: astore_1
+
+    var fieldCount = (int) IntStream.range(0, components.size()).filter(i -> hasField(components, i)).count();
+    mv.visitLdcInsn(fieldCount);
+    mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+    var field = 0;
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
+      mv.visitInsn(DUP);
+      mv.visitLdcInsn(field++);
+      loadField(mv, specializedClassName, components, i);
+      mv.visitInsn(AASTORE);
+    }
+    mv.visitVarInsn(ASTORE, 1);
+  }
+
+  static void templateMapSetColumns(MethodVisitor mv, String specializedClassName, List<RecordComponent> components) {
+    //  0: aload_0
+    //  1: aload_1
+    //  2: iconst_0
+    //  3: aaload
+    //  4: checkcast     #92                 // class "[I"
+    //  7: putfield      #13                 // Field array0:[I
+
+    //  10: aload_0
+    //  11: aload_1
+    //  12: iconst_1
+    //  13: aaload
+    //  14: checkcast     #94                 // class "[Ljava/lang/String;"
+    //  17: putfield      #21                 // Field array1:[Ljava/lang/String;
+
+    var field = 0;
+    for (var i = 0; i < components.size(); i++) {
+      if (!hasField(components, i)) {
+        continue;
+      }
+      var fieldDescriptor = fieldDescriptor(components.get(i));
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitLdcInsn(field++);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(CHECKCAST, fieldDescriptor);
+      mv.visitFieldInsn(PUTFIELD, specializedClassName, "array" + i, fieldDescriptor);
+    }
+  }
 }
@@ -0,0 +1,297 @@
+package com.github.forax.soa;
+
+import com.github.forax.soa.StructOfArrayList.Comparison;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// the loops using the Vector API, the values are processed by vectors of the preferred species
+// and the remaining values (less than a vector) by the scalar loops,
+// this class is only loaded if the module jdk.incubator.vector is available
+final class VectorKernels extends Kernels {
+  private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  private static VectorOperators.Comparison operator(Comparison comparison) {
+    return switch (comparison) {
+      case EQUAL -> VectorOperators.EQ;
+      case NOT_EQUAL -> VectorOperators.NE;
+      case LESS_THAN -> VectorOperators.LT;
+      case LESS_THAN_OR_EQUAL -> VectorOperators.LE;
+      case GREATER_THAN -> VectorOperators.GT;
+      case GREATER_THAN_OR_EQUAL -> VectorOperators.GE;
+    };
+  }
+
+  // store the indexes of the lanes set in the mask starting at indexes[count], return the new count
+  private static int storeIndexes(VectorMask<?> mask, int start, int[] indexes, int count) {
+    if (!mask.anyTrue()) {
+      return count;
+    }
+    var length = mask.length();
+    for (var lane = mask.firstTrue(); lane < length; lane++) {
+      if (mask.laneIsSet(lane)) {
+        indexes[count++] = start + lane;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int count(int[] array, int size, Comparison comparison, int value) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = INT_SPECIES.loopBound(size); i < bound; i += INT_SPECIES.length()) {
+      count += IntVector.fromArray(INT_SPECIES, array, i).compare(operator, value).trueCount();
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int count(long[] array, int size, Comparison comparison, long value) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = LONG_SPECIES.loopBound(size); i < bound; i += LONG_SPECIES.length()) {
+      count += LongVector.fromArray(LONG_SPECIES, array, i).compare(operator, value).trueCount();
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int count(double[] array, int size, Comparison comparison, double value) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = DOUBLE_SPECIES.loopBound(size); i < bound; i += DOUBLE_SPECIES.length()) {
+      count += DoubleVector.fromArray(DOUBLE_SPECIES, array, i).compare(operator, value).trueCount();
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(int[] array, int size, Comparison comparison, int value, int[] indexes) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = INT_SPECIES.loopBound(size); i < bound; i += INT_SPECIES.length()) {
+      count = storeIndexes(IntVector.fromArray(INT_SPECIES, array, i).compare(operator, value), i, indexes, count);
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(long[] array, int size, Comparison comparison, long value, int[] indexes) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = LONG_SPECIES.loopBound(size); i < bound; i += LONG_SPECIES.length()) {
+      count = storeIndexes(LongVector.fromArray(LONG_SPECIES, array, i).compare(operator, value), i, indexes, count);
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int filterIndexes(double[] array, int size, Comparison comparison, double value, int[] indexes) {
+    var operator = operator(comparison);
+    var count = 0;
+    var i = 0;
+    for (var bound = DOUBLE_SPECIES.loopBound(size); i < bound; i += DOUBLE_SPECIES.length()) {
+      count = storeIndexes(DoubleVector.fromArray(DOUBLE_SPECIES, array, i).compare(operator, value), i, indexes, count);
+    }
+    for (; i < size; i++) {
+      if (comparison.test(array[i], value)) {
+        indexes[count++] = i;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  int min(int[] array, int size) {
+    var min = array[0];
+    var i = 0;
+    var bound = INT_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var minVector = IntVector.broadcast(INT_SPECIES, Integer.MAX_VALUE);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        minVector = minVector.min(IntVector.fromArray(INT_SPECIES, array, i));
+      }
+      min = minVector.reduceLanes(VectorOperators.MIN);
+    }
+    for (; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  long min(long[] array, int size) {
+    var min = array[0];
+    var i = 0;
+    var bound = LONG_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var minVector = LongVector.broadcast(LONG_SPECIES, Long.MAX_VALUE);
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        minVector = minVector.min(LongVector.fromArray(LONG_SPECIES, array, i));
+      }
+      min = minVector.reduceLanes(VectorOperators.MIN);
+    }
+    for (; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  double min(double[] array, int size) {
+    var min = array[0];
+    var i = 0;
+    var bound = DOUBLE_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var minVector = DoubleVector.broadcast(DOUBLE_SPECIES, Double.POSITIVE_INFINITY);
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        minVector = minVector.min(DoubleVector.fromArray(DOUBLE_SPECIES, array, i));
+      }
+      min = minVector.reduceLanes(VectorOperators.MIN);
+    }
+    for (; i < size; i++) {
+      min = Math.min(min, array[i]);
+    }
+    return min;
+  }
+
+  @Override
+  int max(int[] array, int size) {
+    var max = array[0];
+    var i = 0;
+    var bound = INT_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var maxVector = IntVector.broadcast(INT_SPECIES, Integer.MIN_VALUE);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        maxVector = maxVector.max(IntVector.fromArray(INT_SPECIES, array, i));
+      }
+      max = maxVector.reduceLanes(VectorOperators.MAX);
+    }
+    for (; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  long max(long[] array, int size) {
+    var max = array[0];
+    var i = 0;
+    var bound = LONG_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var maxVector = LongVector.broadcast(LONG_SPECIES, Long.MIN_VALUE);
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        maxVector = maxVector.max(LongVector.fromArray(LONG_SPECIES, array, i));
+      }
+      max = maxVector.reduceLanes(VectorOperators.MAX);
+    }
+    for (; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  double max(double[] array, int size) {
+    var max = array[0];
+    var i = 0;
+    var bound = DOUBLE_SPECIES.loopBound(size);
+    if (bound != 0) {
+      var maxVector = DoubleVector.broadcast(DOUBLE_SPECIES, Double.NEGATIVE_INFINITY);
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        maxVector = maxVector.max(DoubleVector.fromArray(DOUBLE_SPECIES, array, i));
+      }
+      max = maxVector.reduceLanes(VectorOperators.MAX);
+    }
+    for (; i < size; i++) {
+      max = Math.max(max, array[i]);
+    }
+    return max;
+  }
+
+  @Override
+  long sum(int[] array, int size) {
+    // the ints are widened to longs before being added to avoid overflows,
+    // a vector of ints is converted to two vectors of longs
+    var sumVector = LongVector.zero(LONG_SPECIES);
+    var i = 0;
+    if (INT_SPECIES.length() == LONG_SPECIES.length() << 1) {
+      for (var bound = INT_SPECIES.loopBound(size); i < bound; i += INT_SPECIES.length()) {
+        var vector = IntVector.fromArray(INT_SPECIES, array, i);
+        sumVector = sumVector
+            .add(vector.convertShape(VectorOperators.I2L, LONG_SPECIES, 0))
+            .add(vector.convertShape(VectorOperators.I2L, LONG_SPECIES, 1));
+      }
+    }
+    var sum = sumVector.reduceLanes(VectorOperators.ADD);
+    for (; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  @Override
+  long sum(long[] array, int size) {
+    var sumVector = LongVector.zero(LONG_SPECIES);
+    var i = 0;
+    for (var bound = LONG_SPECIES.loopBound(size); i < bound; i += LONG_SPECIES.length()) {
+      sumVector = sumVector.add(LongVector.fromArray(LONG_SPECIES, array, i));
+    }
+    var sum = sumVector.reduceLanes(VectorOperators.ADD);
+    for (; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  @Override
+  double sum(double[] array, int size) {
+    // the values are added lane by lane so the rounding may differ from a sequential sum
+    var sumVector = DoubleVector.zero(DOUBLE_SPECIES);
+    var i = 0;
+    for (var bound = DOUBLE_SPECIES.loopBound(size); i < bound; i += DOUBLE_SPECIES.length()) {
+      sumVector = sumVector.add(DoubleVector.fromArray(DOUBLE_SPECIES, array, i));
+    }
+    var sum = sumVector.reduceLanes(VectorOperators.ADD);
+    for (; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,220 @@
+package com.github.forax.soa;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedStructOfArrayListTest {
+  @Test
+  public void of() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> ChunkedStructOfArrayList.of(lookup(), null)),
+        () -> assertThrows(NullPointerException.class, () -> ChunkedStructOfArrayList.of(null, Person.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> ChunkedStructOfArrayList.of(lookup(), Person.class, -1))
+    );
+  }
+
+  @Test
+  public void addGetAndSet() throws NoSuchFieldException {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(36, "Ana"));
+    soaList.add(new Person(18, "Bob"));
+    soaList.set(1, new Person(19, "Bob"));
+    assertAll(
+        () -> assertEquals(int[][].class, soaList.getClass().getDeclaredField("array0").getType()),
+        () -> assertEquals(Object[][].class, soaList.getClass().getDeclaredField("array1").getType()),
+        () -> assertEquals(2, soaList.size()),
+        () -> assertEquals(List.of(new Person(36, "Ana"), new Person(19, "Bob")), soaList),
+        () -> assertEquals(1, soaList.indexOf(new Person(19, "Bob"))),
+        () -> assertEquals(-1, soaList.indexOf(new Person(18, "Bob"))),
+        () -> assertEquals(0, soaList.lastIndexOf(new Person(36, "Ana")))
+    );
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+  public record Sample(long time, double value, int id, boolean valid, Color color, @DictionaryEncoded String tag) {}
+
+  private static Sample sample(int i) {
+    return new Sample(i * 1_000L, i / 2.0, i, i % 2 == 0, Color.values()[Math.floorMod(i, 3)], "" + i % 10);
+  }
+
+  @Test
+  public void addAndRemoveALot() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 200_000).forEach(i -> soaList.add(sample(i)));
+    soaList.remove(0);
+    assertAll(
+        () -> assertEquals(199_999, soaList.size()),
+        () -> assertEquals(4 << 16, soaList.capacity()),
+        () -> assertEquals(sample(199_999), soaList.get(0)),
+        () -> assertEquals(sample(65_536), soaList.get(65_536)),
+        () -> assertEquals(sample(131_071), soaList.get(131_071)),
+        () -> assertEquals(100_000, soaList.indexOf(sample(100_000))),
+        () -> assertEquals(42_000L, soaList.longColumn("time").getLong(42)),
+        () -> assertEquals(99_999, soaList.intColumn("id").count(StructOfArrayList.Comparison.LESS_THAN, 100_000)),
+        () -> assertEquals(199_999, soaList.intColumn("id").max().orElseThrow()),
+        () -> assertEquals(19_999_900_000L, soaList.intColumn("id").sum()),
+        () -> assertEquals(Color.GREEN, soaList.objectColumn("color", Color.class).getObject(70_000)),
+        () -> assertEquals(21.0, soaList.doubleColumn("value").getDouble(42))
+    );
+  }
+
+  @Test
+  public void growChunkByChunk() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Person.class);
+    var capacities = new ArrayList<Integer>();
+    for (var i = 0; i < 3 * 65_536; i++) {
+      soaList.add(new Person(i, null));
+      var capacity = soaList.capacity();
+      if (capacities.isEmpty() || capacities.get(capacities.size() - 1) != capacity) {
+        capacities.add(capacity);
+      }
+    }
+    assertAll(
+        () -> assertEquals(16, capacities.get(0)),
+        () -> assertTrue(capacities.contains(65_536)),
+        () -> assertEquals(List.of(65_536, 2 * 65_536, 3 * 65_536), capacities.subList(capacities.size() - 3, capacities.size())),
+        () -> assertEquals(new Person(65_535, null), soaList.get(65_535)),
+        () -> assertEquals(new Person(65_536, null), soaList.get(65_536))
+    );
+  }
+
+  @Test
+  public void ensureCapacityAndTrimToSize() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    soaList.ensureCapacity(100_000);
+    var capacity = soaList.capacity();
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(sample(i)));
+    assertEquals(capacity, soaList.capacity());
+    soaList.trimToSize();
+    soaList.add(sample(100_000));
+    assertAll(
+        () -> assertEquals(2 << 16, capacity),
+        () -> assertEquals(100_001, soaList.size()),
+        () -> assertEquals(sample(65_537), soaList.get(65_537)),
+        () -> assertEquals(sample(100_000), soaList.get(100_000))
+    );
+  }
+
+  @Test
+  public void addAll() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    var other = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(sample(i)));
+    IntStream.range(0, 150_000).forEach(i -> other.add(sample(-i)));
+    var expected = new ArrayList<Sample>(soaList);
+    expected.addAll(other);
+    expected.addAll(expected);
+    soaList.addAll(other);
+    soaList.addAll(soaList);
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void removeIfSortByAndVisit() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(new Person(100_000 - i, "" + i)));
+    soaList.removeIfInt("age", age -> age % 2 == 0);
+    var expected = soaList.stream().sorted(Comparator.comparingInt(Person::age)).toList();
+    soaList.sortBy("age");
+    var sum = new long[1];
+    soaList.forEachComponents(StructOfArrayListTest.PersonVisitor.class, (age, name) -> sum[0] += age);
+    assertAll(
+        () -> assertEquals(50_000, soaList.size()),
+        () -> assertEquals(expected, soaList),
+        () -> assertEquals(2_500_000_000L, sum[0])
+    );
+  }
+
+  @Test
+  public void cursor() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(sample(i)));
+    var cursor = soaList.cursor();
+    var valid = cursor.component("valid");
+    var id = cursor.component("id");
+    cursor.moveTo(70_000);
+    cursor.setBoolean(valid, false);
+    cursor.setInt(id, -1);
+    assertAll(
+        () -> assertFalse(cursor.getBoolean(valid)),
+        () -> assertTrue(soaList.get(69_998).valid()),
+        () -> assertEquals(-1, soaList.get(70_000).id()),
+        () -> assertFalse(soaList.get(70_000).valid())
+    );
+  }
+
+  @Test
+  public void aggregations() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(sample(i)));
+    assertAll(
+        () -> assertEquals(4_999_950_000L, soaList.sumInt("id")),
+        () -> assertEquals(0, soaList.minInt("id").orElseThrow()),
+        () -> assertEquals(99_999, soaList.maxInt("id").orElseThrow()),
+        () -> assertEquals(99_999_000L, soaList.maxLong("time").orElseThrow()),
+        () -> assertEquals(0.0, soaList.minDouble("value").orElseThrow()),
+        () -> assertEquals(49_999.5, soaList.average("id").orElseThrow()),
+        () -> assertTrue(ChunkedStructOfArrayList.of(lookup(), Sample.class).maxDouble("value").isEmpty())
+    );
+  }
+
+  @Test
+  public void aggregationsDoNotAllocate() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(sample(i)));
+    var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var threadId = Thread.currentThread().getId();
+    var sum = 0L;
+    for (var i = 0; i < 1_000; i++) {  // warmup
+      sum += soaList.sumInt("id") + soaList.sumLong("time");
+    }
+    var allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (var i = 0; i < 10_000; i++) {
+      sum += soaList.sumInt("id") + soaList.sumLong("time");
+    }
+    allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+    assertEquals(11_000 * (499_500L + 499_500_000L), sum);
+    assertTrue(allocated < 10_000, "allocated " + allocated + " bytes");
+  }
+
+  @Test
+  public void clear() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Person.class, 100_000);
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(new Person(i, "" + i)));
+    soaList.clear();
+    soaList.add(new Person(1, "Ana"));
+    assertAll(
+        () -> assertEquals(List.of(new Person(1, "Ana")), soaList),
+        () -> assertEquals(16, soaList.capacity())
+    );
+  }
+
+  @Test
+  public void snapshotNotSupported() {
+    var soaList = ChunkedStructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    assertThrows(UnsupportedOperationException.class, soaList::snapshot);
+  }
+
+  @Test
+  public void chunks() {
+    var chunks = Chunks.newChunks(int[][].class, 65_536 + 10);
+    assertAll(
+        () -> assertEquals(int[][].class, chunks.getClass()),
+        () -> assertEquals(65_546, Chunks.capacity(chunks)),
+        () -> assertEquals(0, Chunks.capacity(Chunks.newChunks(int[][].class, 0))),
+        () -> assertEquals(10, ((int[]) chunks[1]).length),
+        () -> assertSame(chunks[0], Chunks.copyOf(chunks, 200_000)[0]),
+        () -> assertEquals(200_000, Chunks.capacity(Chunks.copyOf(chunks, 200_000))),
+        () -> assertEquals(5, Chunks.capacity(Chunks.copyOf(chunks, 5)))
+    );
+  }
+}
@@ -0,0 +1,176 @@
+package com.github.forax.soa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentStructOfArrayMapTest {
+  @Test
+  public void of() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> ConcurrentStructOfArrayMap.of(null, Person.class)),
+        () -> assertThrows(NullPointerException.class, () -> ConcurrentStructOfArrayMap.of(lookup(), null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> ConcurrentStructOfArrayMap.of(lookup(), Person.class, -1))
+    );
+  }
+
+  @Test
+  public void putGetRemove() {
+    var map = ConcurrentStructOfArrayMap.of(lookup(), Person.class);
+    assertAll(
+        () -> assertTrue(map.isEmpty()),
+        () -> assertNull(map.putInt(1, new Person(1, "Ana"))),
+        () -> assertEquals(new Person(1, "Ana"), map.putInt(1, new Person(2, "Ana"))),
+        () -> assertEquals(new Person(2, "Ana"), map.putIfAbsentInt(1, new Person(3, "Ana"))),
+        () -> assertNull(map.putIfAbsentInt(2, new Person(4, "Bob"))),
+        () -> assertEquals(2, map.size()),
+        () -> assertTrue(map.containsKeyInt(2)),
+        () -> assertFalse(map.containsKeyInt(3)),
+        () -> assertEquals(new Person(2, "Ana"), map.getInt(1)),
+        () -> assertEquals(new Person(0, "?"), map.getOrDefaultInt(3, new Person(0, "?"))),
+        () -> assertEquals(new Person(4, "Bob"), map.removeInt(2)),
+        () -> assertNull(map.removeInt(2)),
+        () -> assertEquals(Map.of(1, new Person(2, "Ana")), map.toMap()),
+        () -> assertEquals("{1=Person[age=2, name=Ana]}", map.toString())
+    );
+    map.clear();
+    assertAll(
+        () -> assertTrue(map.isEmpty()),
+        () -> assertNull(map.getInt(1))
+    );
+  }
+
+  @Test
+  public void manyKeys() {
+    var map = ConcurrentStructOfArrayMap.of(lookup(), Person.class);
+    IntStream.range(0, 10_000).forEach(i -> map.putInt(i, new Person(i, "" + i)));
+    var sum = new long[1];
+    map.forEach((key, value) -> sum[0] += key + value.age());
+    assertAll(
+        () -> assertEquals(10_000, map.size()),
+        () -> assertEquals(2 * 49_995_000L, sum[0]),
+        () -> assertTrue(IntStream.range(0, 10_000).allMatch(i -> map.getInt(i).equals(new Person(i, "" + i))))
+    );
+  }
+
+  @Test
+  public void preconditions() {
+    var map = ConcurrentStructOfArrayMap.of(lookup(), Person.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> map.putInt(1, null)),
+        () -> assertThrows(NullPointerException.class, () -> map.putIfAbsentInt(1, null)),
+        () -> assertThrows(NullPointerException.class, () -> map.forEach(null))
+    );
+  }
+
+  @Test
+  public void concurrentReadsAndUpdates() throws InterruptedException {
+    var map = ConcurrentStructOfArrayMap.of(lookup(), Person.class);
+    var keyCount = 1_000;
+    var done = new AtomicBoolean();
+    var errors = new ArrayList<Throwable>();
+    var readers = new ArrayList<Thread>();
+    for (var r = 0; r < 4; r++) {
+      readers.add(new Thread(() -> {
+        try {
+          while (!done.get()) {
+            for (var key = 0; key < keyCount; key++) {
+              var value = map.getInt(key);
+              // a value is never seen half written
+              if (value != null && (Math.abs(value.age()) != key || !value.name().equals("" + value.age()))) {
+                throw new AssertionError("inconsistent value " + value + " for key " + key);
+              }
+            }
+          }
+        } catch (Throwable t) {
+          synchronized (errors) {
+            errors.add(t);
+          }
+        }
+      }));
+    }
+    readers.forEach(Thread::start);
+    try {
+      for (var round = 0; round < 20; round++) {
+        for (var key = 0; key < keyCount; key++) {
+          var age = round % 2 == 0? key: -key;
+          map.putInt(key, new Person(age, "" + age));
+        }
+        for (var key = 0; key < keyCount; key += 3) {
+          map.removeInt(key);
+        }
+      }
+    } finally {
+      done.set(true);
+      for (var reader : readers) {
+        reader.join();
+      }
+    }
+    assertEquals(List.of(), errors);
+  }
+
+  record Interval(int start, int end) {
+    Interval {
+      if (end - start != 10) {
+        throw new AssertionError("torn interval " + start + " " + end);
+      }
+    }
+  }
+
+  @Test
+  public void recordNeverCreatedFromATornElement() throws InterruptedException {
+    var map = ConcurrentStructOfArrayMap.of(lookup(), Interval.class);
+    var done = new AtomicBoolean();
+    var errors = new ArrayList<Throwable>();
+    var readers = new ArrayList<Thread>();
+    for (var r = 0; r < 4; r++) {
+      readers.add(new Thread(() -> {
+        try {
+          while (!done.get()) {
+            for (var key = 0; key < 100; key++) {
+              map.getInt(key);
+            }
+          }
+        } catch (Throwable t) {
+          synchronized (errors) {
+            errors.add(t);
+          }
+        }
+      }));
+    }
+    readers.forEach(Thread::start);
+    try {
+      for (var round = 0; round < 2_000; round++) {
+        for (var key = 0; key < 100; key++) {
+          map.putInt(key, new Interval(round, round + 10));
+        }
+      }
+    } finally {
+      done.set(true);
+      for (var reader : readers) {
+        reader.join();
+      }
+    }
+    assertEquals(List.of(), errors);
+  }
+
+  @Test
+  public void probeDoesNotTrustTheArrays() {
+    var full = new int[] { 0, 1, 0, 1 };
+    var outOfBounds = new int[] { 7, 7, 7, 7 };
+    var keys = new int[] { 1, 2 };
+    assertAll(
+        () -> assertEquals(StructOfArrayMap.EMPTY, StructOfArrayMap.probe(full, keys, 3)),
+        () -> assertEquals(StructOfArrayMap.EMPTY, StructOfArrayMap.probe(outOfBounds, keys, 1)),
+        () -> assertEquals(StructOfArrayMap.EMPTY, StructOfArrayMap.probe(new int[0], new int[0], 1)),
+        () -> assertEquals(1, StructOfArrayMap.probe(full, keys, 2))
+    );
+  }
+}
@@ -0,0 +1,324 @@
+package com.github.forax.soa;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapStructOfArrayListTest {
+  @Test
+  public void of() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> OffHeapStructOfArrayList.of(lookup(), null)),
+        () -> assertThrows(NullPointerException.class, () -> OffHeapStructOfArrayList.of(null, Person.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> OffHeapStructOfArrayList.of(lookup(), Person.class, -1))
+    );
+  }
+
+  @Test
+  public void addGetAndSet() throws NoSuchFieldException {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class)) {
+      soaList.add(new Person(36, "Ana"));
+      soaList.add(new Person(18, "Bob"));
+      soaList.set(1, new Person(19, "Bob"));
+      assertAll(
+          () -> assertEquals(ByteBuffer.class, soaList.getClass().getDeclaredField("array0").getType()),
+          () -> assertEquals(Object[].class, soaList.getClass().getDeclaredField("array1").getType()),
+          () -> assertEquals(2, soaList.size()),
+          () -> assertEquals(List.of(new Person(36, "Ana"), new Person(19, "Bob")), soaList),
+          () -> assertEquals(1, soaList.indexOf(new Person(19, "Bob"))),
+          () -> assertEquals(-1, soaList.indexOf(new Person(18, "Bob"))),
+          () -> assertEquals(0, soaList.lastIndexOf(new Person(36, "Ana")))
+      );
+    }
+  }
+
+  public record Sample(long time, double value, int id, boolean valid, short channel) {}
+
+  @Test
+  public void addAll() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class);
+        var other = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      soaList.add(new Sample(1L, 1.0, 1, true, (short) 1));
+      IntStream.range(0, 1_000).forEach(i -> other.add(new Sample(i, i, i, i % 2 == 0, (short) i)));
+      var samples = List.of(new Sample(2L, 2.0, 2, false, (short) 2));
+      soaList.addAll(other);
+      soaList.addAll(samples);
+      assertAll(
+          () -> assertEquals(1_002, soaList.size()),
+          () -> assertEquals(new Sample(1L, 1.0, 1, true, (short) 1), soaList.get(0)),
+          () -> assertEquals(other, soaList.subList(1, 1_001)),
+          () -> assertEquals(samples.get(0), soaList.get(1_001))
+      );
+    }
+  }
+
+  @Test
+  public void ensureCapacityAndTrimToSize() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      soaList.ensureCapacity(100);
+      IntStream.range(0, 10).forEach(i -> soaList.add(new Sample(i, i, i, i % 2 == 0, (short) i)));
+      assertTrue(soaList.capacity() >= 100);
+      soaList.trimToSize();
+      soaList.add(new Sample(10L, 10.0, 10, true, (short) 10));
+      assertAll(
+          () -> assertEquals(11, soaList.size()),
+          () -> assertEquals(new Sample(3L, 3.0, 3, false, (short) 3), soaList.get(3)),
+          () -> assertEquals(new Sample(10L, 10.0, 10, true, (short) 10), soaList.get(10))
+      );
+    }
+  }
+
+  @Test
+  public void addAndRemoveALot() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      IntStream.range(0, 100_000).forEach(i -> soaList.add(new Sample(i * 1_000L, i / 2.0, i, i % 2 == 0, (short) i)));
+      soaList.remove(0);
+      assertAll(
+          () -> assertEquals(99_999, soaList.size()),
+          () -> assertEquals(new Sample(99_999_000L, 99_999 / 2.0, 99_999, false, (short) 99_999), soaList.get(0)),
+          () -> assertEquals(new Sample(50_000_000L, 25_000.0, 50_000, true, (short) 50_000), soaList.get(50_000)),
+          () -> assertEquals(1_234, soaList.indexOf(new Sample(1_234_000L, 617.0, 1_234, true, (short) 1_234))),
+          () -> assertEquals(42_000L, soaList.longColumn("time").getLong(42)),
+          () -> assertEquals(49_999, soaList.intColumn("id").count(StructOfArrayList.Comparison.LESS_THAN, 50_000)),
+          () -> assertEquals(99_999, soaList.intColumn("id").max().orElseThrow()),
+          () -> assertEquals(4_999_950_000L, soaList.intColumn("id").sum()),
+          () -> assertEquals(21.0, soaList.doubleColumn("value").getDouble(42))
+      );
+    }
+  }
+
+  @Test
+  public void columns() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class, 16)) {
+      soaList.add(new Person(36, "Ana"));
+      soaList.add(new Person(18, "Bob"));
+      var ages = soaList.intColumn("age");
+      ages.setInt(1, 20);
+      assertAll(
+          () -> assertEquals(36, ages.getInt(0)),
+          () -> assertEquals(new Person(20, "Bob"), soaList.get(1)),
+          () -> assertEquals("Ana", soaList.objectColumn("name", String.class).getObject(0))
+      );
+    }
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+  public record Pixel(int x, Color color, @DictionaryEncoded String tag) {}
+
+  @Test
+  public void encodedComponents() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Pixel.class)) {
+      soaList.add(new Pixel(1, Color.BLUE, "foo"));
+      soaList.add(new Pixel(2, null, null));
+      assertAll(
+          () -> assertEquals(List.of(new Pixel(1, Color.BLUE, "foo"), new Pixel(2, null, null)), soaList),
+          () -> assertEquals(1, soaList.indexOf(new Pixel(2, null, null)))
+      );
+    }
+  }
+
+  @Test
+  public void clear() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class)) {
+      soaList.add(new Person(36, "Ana"));
+      soaList.clear();
+      soaList.add(new Person(18, "Bob"));
+      assertEquals(List.of(new Person(18, "Bob")), soaList);
+    }
+  }
+
+  @Test
+  public void close() {
+    var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(36, "Ana"));
+    var ages = soaList.intColumn("age");
+    soaList.close();
+    soaList.close();
+    assertAll(
+        () -> assertTrue(soaList.isEmpty()),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> soaList.get(0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> ages.getInt(0)),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.add(new Person(18, "Bob")))
+    );
+  }
+
+  @Test
+  public void addAllAfterClose() {
+    var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class);
+    var other = OffHeapStructOfArrayList.of(lookup(), Person.class);
+    other.add(new Person(36, "Ana"));
+    soaList.close();
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> soaList.addAll(other)),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.addAll(List.of(new Person(18, "Bob")))),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.addAll(List.of())),
+        () -> assertTrue(soaList.isEmpty())
+    );
+    other.close();
+  }
+
+  @Test
+  public void ensureCapacityAndTrimToSizeAfterClose() {
+    var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class);
+    soaList.close();
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> soaList.ensureCapacity(1_000)),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.ensureCapacity(0)),
+        () -> assertThrows(IllegalStateException.class, soaList::trimToSize),
+        () -> assertEquals(0, soaList.capacity())
+    );
+  }
+
+  public record Measure(long time, double value, boolean valid, boolean checked, Color color) {}
+
+  @Test
+  public void writeToAndMapReadOnly(@TempDir Path directory) throws IOException {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Measure.class)) {
+      IntStream.range(0, 1_000).forEach(i -> soaList.add(new Measure(i, i / 2.0, i % 2 == 0, i % 3 == 0, Color.values()[i % 3])));
+      soaList.writeTo(directory);
+    }
+    try(var mappedList = OffHeapStructOfArrayList.map(lookup(), Measure.class, directory, MapMode.READ_ONLY)) {
+      assertAll(
+          () -> assertEquals(1_000, mappedList.size()),
+          () -> assertEquals(new Measure(0, 0.0, true, true, Color.RED), mappedList.get(0)),
+          () -> assertEquals(new Measure(997, 498.5, false, false, Color.GREEN), mappedList.get(997)),
+          () -> assertEquals(42L, mappedList.longColumn("time").getLong(42)),
+          () -> assertEquals(10, mappedList.indexOf(new Measure(10, 5.0, true, false, Color.GREEN))),
+          () -> assertThrows(UnsupportedOperationException.class, () -> mappedList.add(new Measure(0, 0.0, true, true, Color.RED))),
+          () -> assertThrows(UnsupportedOperationException.class, () -> mappedList.remove(0)),
+          () -> assertThrows(UnsupportedOperationException.class, () -> mappedList.clear()),
+          () -> assertThrows(UnsupportedOperationException.class, () -> mappedList.set(0, new Measure(1, 1.0, true, true, Color.RED))),
+          () -> assertThrows(UnsupportedOperationException.class, () -> mappedList.longColumn("time").setLong(0, 1L))
+      );
+    }
+  }
+
+  @Test
+  public void mapReadWrite(@TempDir Path directory) throws IOException {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Measure.class)) {
+      soaList.add(new Measure(1, 1.0, true, false, Color.RED));
+      soaList.add(new Measure(2, 2.0, false, true, null));
+      soaList.writeTo(directory);
+    }
+    try(var mappedList = OffHeapStructOfArrayList.map(lookup(), Measure.class, directory, MapMode.READ_WRITE)) {
+      mappedList.set(1, new Measure(3, 3.0, true, true, Color.BLUE));
+    }
+    try(var mappedList = OffHeapStructOfArrayList.map(lookup(), Measure.class, directory, MapMode.READ_ONLY)) {
+      assertEquals(List.of(new Measure(1, 1.0, true, false, Color.RED), new Measure(3, 3.0, true, true, Color.BLUE)), mappedList);
+    }
+  }
+
+  @Test
+  public void writeToAndMapEmpty(@TempDir Path directory) throws IOException {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Measure.class)) {
+      soaList.writeTo(directory);
+    }
+    try(var mappedList = OffHeapStructOfArrayList.map(lookup(), Measure.class, directory, MapMode.READ_ONLY)) {
+      assertTrue(mappedList.isEmpty());
+    }
+  }
+
+  public record Point(int x, int y) {}
+  public record Location(int x, long y) {}
+
+  @Test
+  public void mapInvalid(@TempDir Path directory) throws IOException {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Point.class)) {
+      soaList.add(new Point(1, 2));
+      soaList.writeTo(directory);
+    }
+    assertAll(
+        () -> assertThrows(IOException.class, () -> OffHeapStructOfArrayList.map(lookup(), Location.class, directory, MapMode.READ_ONLY)),
+        () -> assertThrows(IllegalArgumentException.class, () -> OffHeapStructOfArrayList.map(lookup(), Person.class, directory, MapMode.READ_ONLY)),
+        () -> assertThrows(IOException.class, () -> OffHeapStructOfArrayList.map(lookup(), Point.class, directory.resolve("missing"), MapMode.READ_ONLY)),
+        () -> assertThrows(NullPointerException.class, () -> OffHeapStructOfArrayList.map(lookup(), Point.class, null, MapMode.READ_ONLY)),
+        () -> assertThrows(NullPointerException.class, () -> OffHeapStructOfArrayList.map(lookup(), Point.class, directory, null))
+    );
+    Files.write(directory.resolve("y.column"), new byte[3]);
+    assertThrows(IOException.class, () -> OffHeapStructOfArrayList.map(lookup(), Point.class, directory, MapMode.READ_ONLY));
+  }
+
+  @Test
+  public void writeToNotPersistable(@TempDir Path directory) {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Person.class)) {
+      assertThrows(UnsupportedOperationException.class, () -> soaList.writeTo(directory));
+    }
+  }
+
+  @Test
+  public void sortBy() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      IntStream.range(0, 1_000).forEach(i -> soaList.add(new Sample(-i, i, i * 7 % 1_000, i % 3 == 0, (short) i)));
+      soaList.sortBy("id");
+      assertAll(
+          () -> assertEquals(new Sample(0, 0.0, 0, true, (short) 0), soaList.get(0)),
+          () -> assertEquals(new Sample(-143, 143.0, 1, false, (short) 143), soaList.get(1)),
+          () -> assertEquals(new Sample(-857, 857.0, 999, false, (short) 857), soaList.get(999))
+      );
+    }
+  }
+
+  @Test
+  public void removeIf() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      IntStream.range(0, 1_000).forEach(i -> soaList.add(new Sample(i, i, i, i % 2 == 0, (short) i)));
+      assertTrue(soaList.removeIfInt("id", id -> id % 4 != 0));
+      assertEquals(
+          IntStream.range(0, 1_000).filter(i -> i % 4 == 0).mapToObj(i -> new Sample(i, i, i, true, (short) i)).toList(),
+          soaList);
+    }
+  }
+
+  public interface SampleVisitor { void visit(long time, double value, int id, boolean valid, short channel); }
+
+  @Test
+  public void forEachComponents() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      IntStream.range(0, 100).forEach(i -> soaList.add(new Sample(i, i, i, i % 2 == 0, (short) i)));
+      var counts = new long[2];
+      soaList.forEachComponents(SampleVisitor.class, (time, value, id, valid, channel) -> {
+        counts[0] += time + id + channel;
+        counts[1] += valid? 1: 0;
+      });
+      assertArrayEquals(new long[] { 3 * 4_950, 50 }, counts);
+    }
+  }
+
+  @Test
+  public void cursor() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      IntStream.range(0, 100).forEach(i -> soaList.add(new Sample(i, i, i, true, (short) i)));
+      var cursor = soaList.cursor();
+      var time = cursor.component("time");
+      var value = cursor.component("value");
+      var valid = cursor.component("valid");
+      var channel = cursor.component("channel");
+      while (cursor.next()) {
+        cursor.setLong(time, cursor.getLong(time) + 1);
+        cursor.setDouble(value, cursor.getDouble(value) / 2);
+        cursor.setBoolean(valid, cursor.getShort(channel) % 2 == 0);
+        cursor.setShort(channel, (short) (cursor.getShort(channel) * 2));
+      }
+      assertEquals(
+          IntStream.range(0, 100).mapToObj(i -> new Sample(i + 1, i / 2.0, i, i % 2 == 0, (short) (i * 2))).toList(),
+          soaList);
+    }
+  }
+
+  @Test
+  public void snapshotNotSupported() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Sample.class)) {
+      assertThrows(UnsupportedOperationException.class, soaList::snapshot);
+    }
+  }
+}
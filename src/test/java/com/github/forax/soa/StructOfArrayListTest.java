@@ -2,9 +2,16 @@ package com.github.forax.soa;
 
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static java.lang.invoke.MethodHandles.lookup;
@@ -489,6 +496,59 @@ public class StructOfArrayListTest {
     assertThrows(ConcurrentModificationException.class, iterator::next);
   }
 
+  @Test
+  public void spliterator() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Person(i, "" + i)));
+    var spliterator = soaList.spliterator();
+    var prefix = spliterator.trySplit();
+    assertAll(
+        () -> assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.NONNULL)),
+        () -> assertEquals(500, prefix.estimateSize()),
+        () -> assertEquals(500, spliterator.estimateSize()),
+        () -> assertTrue(prefix.tryAdvance(p -> assertEquals(new Person(0, "0"), p))),
+        () -> assertTrue(spliterator.tryAdvance(p -> assertEquals(new Person(500, "500"), p)))
+    );
+    var count = new int[1];
+    spliterator.forEachRemaining(p -> count[0]++);
+    assertAll(
+        () -> assertEquals(499, count[0]),
+        () -> assertEquals(0, spliterator.estimateSize()),
+        () -> assertFalse(spliterator.tryAdvance(p -> fail()))
+    );
+  }
+
+  @Test
+  public void spliteratorEmpty() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    var spliterator = soaList.spliterator();
+    assertAll(
+        () -> assertNull(spliterator.trySplit()),
+        () -> assertEquals(0, spliterator.estimateSize()),
+        () -> assertFalse(spliterator.tryAdvance(p -> fail()))
+    );
+  }
+
+  @Test
+  public void spliteratorLateBindingAndFailFast() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    var spliterator = soaList.spliterator();
+    soaList.add(new Person(36, "Ana"));
+    assertEquals(1, spliterator.estimateSize());
+    soaList.add(new Person(77, "Elo"));
+    assertThrows(ConcurrentModificationException.class, () -> spliterator.forEachRemaining(p -> {}));
+  }
+
+  @Test
+  public void parallelStream() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100_000).forEach(i -> soaList.add(new Person(i, "" + i)));
+    assertAll(
+        () -> assertEquals(4_999_950_000L, soaList.parallelStream().mapToLong(Person::age).sum()),
+        () -> assertEquals(soaList, soaList.parallelStream().collect(Collectors.toList()))
+    );
+  }
+
   @Test
   public void iteratorRemoveIndexFailFast() {
     var soaList = StructOfArrayList.of(lookup(), Person.class);
@@ -640,4 +700,1120 @@ public class StructOfArrayListTest {
         new Person(78, "Elo")
     ), soaList);
   }
+
+  @Test
+  public void intColumn() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(36, "Ana"));
+    soaList.add(new Person(18, "Bob"));
+    var ages = soaList.intColumn("age");
+    ages.setInt(1, 19);
+    assertAll(
+        () -> assertEquals(2, ages.size()),
+        () -> assertEquals(36, ages.getInt(0)),
+        () -> assertEquals(19, ages.getInt(1)),
+        () -> assertEquals(new Person(19, "Bob"), soaList.get(1)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> ages.getInt(2)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> ages.setInt(-1, 3))
+    );
+  }
+
+  @Test
+  public void objectColumn() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(36, "Ana"));
+    soaList.add(new Person(18, "Bob"));
+    var names = soaList.objectColumn("name", String.class);
+    names.setObject(0, "Elo");
+    assertAll(
+        () -> assertEquals(2, names.size()),
+        () -> assertEquals("Elo", names.getObject(0)),
+        () -> assertEquals("Bob", names.getObject(1)),
+        () -> assertEquals(new Person(36, "Elo"), soaList.get(0)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> names.getObject(2))
+    );
+  }
+
+  public record Measure(long time, double value) {}
+
+  @Test
+  public void longAndDoubleColumn() {
+    var soaList = StructOfArrayList.of(lookup(), Measure.class);
+    soaList.add(new Measure(1_000L, 1.5));
+    soaList.add(new Measure(2_000L, 2.5));
+    var times = soaList.longColumn("time");
+    var values = soaList.doubleColumn("value");
+    times.setLong(0, 3_000L);
+    values.setDouble(1, 4.5);
+    assertAll(
+        () -> assertEquals(3_000L, times.getLong(0)),
+        () -> assertEquals(2_000L, times.getLong(1)),
+        () -> assertEquals(1.5, values.getDouble(0)),
+        () -> assertEquals(4.5, values.getDouble(1)),
+        () -> assertEquals(List.of(new Measure(3_000L, 1.5), new Measure(2_000L, 4.5)), soaList)
+    );
+  }
+
+  public record Sample(int id, long time, double value) {}
+
+  @Test
+  public void columnOperations() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 1_003).forEach(i -> soaList.add(new Sample(i - 500, i * 1_000L, i / 4.0)));
+    var ids = soaList.intColumn("id");
+    var times = soaList.longColumn("time");
+    var values = soaList.doubleColumn("value");
+    assertAll(
+        () -> assertEquals(500, ids.count(StructOfArrayList.Comparison.LESS_THAN, 0)),
+        () -> assertEquals(1, ids.count(StructOfArrayList.Comparison.EQUAL, 502)),
+        () -> assertEquals(1_002, ids.count(StructOfArrayList.Comparison.NOT_EQUAL, 502)),
+        () -> assertArrayEquals(new int[] { 1_000, 1_001, 1_002 }, ids.filterIndexes(StructOfArrayList.Comparison.GREATER_THAN_OR_EQUAL, 500)),
+        () -> assertArrayEquals(new int[0], ids.filterIndexes(StructOfArrayList.Comparison.GREATER_THAN, 502)),
+        () -> assertEquals(-500, ids.min().orElseThrow()),
+        () -> assertEquals(502, ids.max().orElseThrow()),
+        () -> assertEquals(1_003L, ids.sum()),
+        () -> assertEquals(11, times.count(StructOfArrayList.Comparison.LESS_THAN_OR_EQUAL, 10_000L)),
+        () -> assertArrayEquals(new int[] { 0, 1, 2 }, times.filterIndexes(StructOfArrayList.Comparison.LESS_THAN, 3_000L)),
+        () -> assertEquals(0L, times.min().orElseThrow()),
+        () -> assertEquals(1_002_000L, times.max().orElseThrow()),
+        () -> assertEquals(502_503_000L, times.sum()),
+        () -> assertEquals(2, values.count(StructOfArrayList.Comparison.GREATER_THAN, 250.0)),
+        () -> assertArrayEquals(new int[] { 1_002 }, values.filterIndexes(StructOfArrayList.Comparison.EQUAL, 250.5)),
+        () -> assertEquals(0.0, values.min().orElseThrow()),
+        () -> assertEquals(250.5, values.max().orElseThrow()),
+        () -> assertEquals(125_625.75, values.sum()),
+        () -> assertThrows(NullPointerException.class, () -> ids.count(null, 0))
+    );
+  }
+
+  @Test
+  public void columnOperationsLargeInts() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Sample(Integer.MAX_VALUE, 0L, 0.0)));
+    assertEquals(100L * Integer.MAX_VALUE, soaList.intColumn("id").sum());
+  }
+
+  @Test
+  public void columnOperationsEmpty() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    assertAll(
+        () -> assertTrue(soaList.intColumn("id").min().isEmpty()),
+        () -> assertTrue(soaList.longColumn("time").max().isEmpty()),
+        () -> assertTrue(soaList.doubleColumn("value").min().isEmpty()),
+        () -> assertEquals(0L, soaList.intColumn("id").sum()),
+        () -> assertEquals(0, soaList.doubleColumn("value").count(StructOfArrayList.Comparison.EQUAL, 0.0)),
+        () -> assertArrayEquals(new int[0], soaList.longColumn("time").filterIndexes(StructOfArrayList.Comparison.EQUAL, 0L))
+    );
+  }
+
+  @Test
+  public void aggregations() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Sample(i, i * 2L, i / 2.0)));
+    assertAll(
+        () -> assertEquals(499_500L, soaList.sumInt("id")),
+        () -> assertEquals(999_000L, soaList.sumLong("time")),
+        () -> assertEquals(249_750.0, soaList.sumDouble("value")),
+        () -> assertEquals(0, soaList.minInt("id").orElseThrow()),
+        () -> assertEquals(999, soaList.maxInt("id").orElseThrow()),
+        () -> assertEquals(0L, soaList.minLong("time").orElseThrow()),
+        () -> assertEquals(1_998L, soaList.maxLong("time").orElseThrow()),
+        () -> assertEquals(0.0, soaList.minDouble("value").orElseThrow()),
+        () -> assertEquals(499.5, soaList.maxDouble("value").orElseThrow()),
+        () -> assertEquals(499.5, soaList.average("id").orElseThrow()),
+        () -> assertEquals(999.0, soaList.average("time").orElseThrow()),
+        () -> assertEquals(249.75, soaList.average("value").orElseThrow())
+    );
+  }
+
+  @Test
+  public void aggregationsEmptyAndPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    assertAll(
+        () -> assertEquals(0L, soaList.sumInt("age")),
+        () -> assertTrue(soaList.minInt("age").isEmpty()),
+        () -> assertTrue(soaList.maxInt("age").isEmpty()),
+        () -> assertTrue(soaList.average("age").isEmpty()),
+        () -> assertThrows(NullPointerException.class, () -> soaList.sumInt(null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.average(null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.sumLong("age")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.average("name")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.average("foo"))
+    );
+  }
+
+  @Test
+  public void sortByIntComponent() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    var random = new Random(0);
+    var people = random.ints(10_000, -1_000_000, 1_000_000).mapToObj(i -> new Person(i, "" + i)).toList();
+    soaList.addAll(people);
+    soaList.sortBy("age");
+    var expected = people.stream().sorted(Comparator.comparingInt(Person::age)).toList();
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void sortByLongAndDoubleComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    var random = new Random(0);
+    var samples = IntStream.range(0, 1_000)
+        .mapToObj(i -> new Sample(i, random.nextLong(), random.nextInt(100) == 0? Double.NaN: random.nextGaussian()))
+        .toList();
+    soaList.addAll(samples);
+    soaList.sortBy("time");
+    assertEquals(samples.stream().sorted(Comparator.comparingLong(Sample::time)).toList(), soaList);
+    var expected = soaList.stream().sorted(Comparator.comparingDouble(Sample::value)).toList();
+    soaList.sortBy("value");
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void sortByIsStable() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Flags(i % 3, i % 2 == 0, i % 5 == 0, i % 7 == 0)));
+    var expected = soaList.stream().sorted(Comparator.comparingInt(Flags::id)).toList();
+    soaList.sortBy("id");
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void sortByObjectComponent() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Elo"));
+    soaList.add(new Person(2, null));
+    soaList.add(new Person(3, "Ana"));
+    soaList.add(new Person(4, "Bob"));
+    soaList.sortBy("name");
+    assertEquals(List.of(new Person(2, null), new Person(3, "Ana"), new Person(4, "Bob"), new Person(1, "Elo")), soaList);
+  }
+
+  @Test
+  public void sortByEnumAndNestedComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Pixel.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Pixel(i, Color.values()[(i * 7) % 3], new Point(100 - i, i))));
+    var expected = soaList.stream().sorted(Comparator.comparing(Pixel::color)).toList();
+    soaList.sortBy("color");
+    assertEquals(expected, soaList);
+    soaList.sortBy("point.x");
+    assertEquals(soaList.stream().sorted(Comparator.comparingInt(p -> p.point().x())).toList(), soaList);
+  }
+
+  @Test
+  public void sortByComparator() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    var random = new Random(0);
+    var people = random.ints(1_000, 0, 100).mapToObj(i -> new Person(i, "" + (i % 10))).toList();
+    soaList.addAll(people);
+    var comparator = Comparator.comparing(Person::name).thenComparing(Person::age, Comparator.reverseOrder());
+    soaList.sortBy(comparator);
+    assertEquals(people.stream().sorted(comparator).toList(), soaList);
+  }
+
+  @Test
+  public void sortByPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    soaList.add(new Flags(1, true, false, true));
+    var iterator = soaList.iterator();
+    soaList.sortBy("id");
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(1, new Person(1, "Ana"));
+    assertAll(
+        () -> assertThrows(ConcurrentModificationException.class, iterator::next),
+        () -> assertThrows(NullPointerException.class, () -> soaList.sortBy((String) null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.sortBy((Comparator<Flags>) null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.sortBy("visible")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.sortBy("foo")),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().sortBy("age"))
+    );
+  }
+
+  @Test
+  public void removeIfKeepsOrder() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Person(i, "" + i)));
+    assertTrue(soaList.removeIf(p -> p.age() % 3 == 0));
+    var expected = IntStream.range(0, 1_000).filter(i -> i % 3 != 0).mapToObj(i -> new Person(i, "" + i)).toList();
+    assertAll(
+        () -> assertEquals(expected, soaList),
+        () -> assertFalse(soaList.removeIf(p -> p.age() < 0)),
+        () -> assertEquals(expected.size(), soaList.size())
+    );
+    soaList.add(new Person(1_000, "1000"));
+    assertEquals(new Person(1_000, "1000"), soaList.get(soaList.size() - 1));
+  }
+
+  @Test
+  public void removeIfOnColumns() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Sample(i, i * 10L, i / 2.0)));
+    assertAll(
+        () -> assertTrue(soaList.removeIfInt("id", id -> id < 18)),
+        () -> assertTrue(soaList.removeIfLong("time", time -> time >= 900)),
+        () -> assertTrue(soaList.removeIfDouble("value", value -> value % 1.0 != 0.0)),
+        () -> assertFalse(soaList.removeIfInt("id", id -> id > 1_000)),
+        () -> assertEquals(
+            IntStream.range(18, 90).filter(i -> i % 2 == 0).mapToObj(i -> new Sample(i, i * 10L, i / 2.0)).toList(),
+            soaList)
+    );
+  }
+
+  @Test
+  public void removeIfBooleans() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 200).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, i % 3 == 0, i % 5 == 0)));
+    soaList.removeIf(Flags::visible);
+    assertAll(
+        () -> assertEquals(100, soaList.size()),
+        () -> assertEquals(
+            IntStream.range(0, 200).filter(i -> i % 2 != 0).mapToObj(i -> new Flags(i, false, i % 3 == 0, i % 5 == 0)).toList(),
+            soaList)
+    );
+  }
+
+  @Test
+  public void removeAllAndRetainAll() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(new Person(i, "" + i)));
+    assertTrue(soaList.removeAll(List.of(new Person(3, "3"), new Person(7, "7"), new Person(42, "42"))));
+    assertTrue(soaList.retainAll(List.of(new Person(1, "1"), new Person(4, "4"), new Person(9, "9"), new Person(7, "7"))));
+    assertFalse(soaList.retainAll(List.of(new Person(1, "1"), new Person(4, "4"), new Person(9, "9"))));
+    assertEquals(List.of(new Person(1, "1"), new Person(4, "4"), new Person(9, "9")), soaList);
+  }
+
+  @Test
+  public void removeIfPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    soaList.add(new Person(2, "Bob"));
+    var iterator = soaList.iterator();
+    soaList.removeIf(p -> p.age() == 1);
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(1, new Person(1, "Ana"));
+    assertAll(
+        () -> assertThrows(ConcurrentModificationException.class, iterator::next),
+        () -> assertThrows(NullPointerException.class, () -> soaList.removeIf(null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.removeIfInt("age", null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.removeIfInt(null, i -> true)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.removeIfLong("age", i -> true)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.removeIfDouble("foo", i -> true)),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.removeIf(p -> { throw new IllegalStateException(); })),
+        () -> assertEquals(List.of(new Person(2, "Bob")), soaList),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().removeIf(p -> true)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().removeIfInt("age", age -> true))
+    );
+  }
+
+  public interface PersonVisitor { void visit(int age, String name); }
+
+  @Test
+  public void forEachComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(21, "Ana"));
+    soaList.add(new Person(42, "Bob"));
+    var builder = new StringBuilder();
+    soaList.forEachComponents(PersonVisitor.class, (age, name) -> builder.append(name).append(':').append(age).append(' '));
+    assertEquals("Ana:21 Bob:42 ", builder.toString());
+  }
+
+  public interface SampleVisitor { void visit(int id, long time, double value); }
+
+  @Test
+  public void forEachComponentsPrimitives() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Sample(i, i * 10L, i / 2.0)));
+    var sums = new double[3];
+    soaList.forEachComponents(SampleVisitor.class, (id, time, value) -> {
+      sums[0] += id;
+      sums[1] += time;
+      sums[2] += value;
+    });
+    assertArrayEquals(new double[] { 499_500, 4_995_000, 249_750 }, sums);
+  }
+
+  public interface PixelVisitor { void visit(int x, Object color, int pointX, int pointY); }
+  public interface FlagsVisitor { void visit(int id, boolean visible, boolean enabled, boolean selected); }
+
+  @Test
+  public void forEachComponentsFlattenedAndPacked() {
+    var pixels = StructOfArrayList.of(lookup(), Pixel.class);
+    pixels.add(new Pixel(1, Color.GREEN, new Point(2, 3)));
+    pixels.add(new Pixel(4, null, new Point(5, 6)));
+    var builder = new StringBuilder();
+    pixels.forEachComponents(PixelVisitor.class, (x, color, pointX, pointY) -> builder.append(x).append(color).append(pointX).append(pointY));
+    var flags = StructOfArrayList.of(lookup(), Flags.class);
+    flags.add(new Flags(1, true, false, true));
+    flags.add(new Flags(2, false, true, false));
+    flags.forEachComponents(FlagsVisitor.class, (id, visible, enabled, selected) -> builder.append(id).append(visible).append(enabled).append(selected));
+    assertEquals("1GREEN234null561truefalsetrue2falsetruefalse", builder.toString());
+  }
+
+  public interface PersonVisitor0 { void visit(int age, String name); }
+  public interface PersonVisitor1 { void visit(int age, String name); }
+  public interface PersonVisitor2 { void visit(int age, String name); }
+  public interface PersonVisitor3 { void visit(int age, Object name); }
+  public interface PersonVisitor4 { void visit(int age, Object name); }
+  public interface PersonVisitor5 { void visit(int age, Object name); }
+  public interface PersonVisitor6 { void visit(int age, CharSequence name); }
+  public interface PersonVisitor7 { void visit(int age, CharSequence name); }
+  public interface PersonVisitor8 { void visit(int age, CharSequence name); }
+  public interface PersonVisitor9 { void visit(int age, Comparable<?> name); }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void forEachComponentsManyVisitorTypes() {
+    // more visitor types than the call site of the loop caches
+    var visitorTypes = List.of(PersonVisitor0.class, PersonVisitor1.class, PersonVisitor2.class, PersonVisitor3.class,
+        PersonVisitor4.class, PersonVisitor5.class, PersonVisitor6.class, PersonVisitor7.class, PersonVisitor8.class,
+        PersonVisitor9.class);
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(new Person(i, "" + i)));
+    var sum = new int[1];
+    for (var round = 0; round < 2; round++) {
+      for (var visitorType : visitorTypes) {
+        var visitor = Proxy.newProxyInstance(visitorType.getClassLoader(), new Class<?>[] { visitorType }, (proxy, method, args) -> {
+          sum[0] += (int) args[0] + Integer.parseInt((String) args[1]);
+          return null;
+        });
+        soaList.forEachComponents((Class<Object>) visitorType, visitor);
+      }
+    }
+    assertEquals(2 * 10 * 90, sum[0]);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void forEachComponentsVisitorOfTheWrongType() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(21, "Ana"));
+    var visitorType = (Class<Object>) (Class<?>) PersonVisitor.class;
+    assertThrows(ClassCastException.class, () -> soaList.forEachComponents(visitorType, (PersonVisitor0) (age, name) -> {}));
+  }
+
+  public interface NotAVisitor { void visit(int age, String name); void visit2(); }
+  public interface IntVisitor { void visit(int age); }
+  public interface PersonLongVisitor { void visit(long age, String name); }
+  public interface PersonIntegerVisitor { void visit(int age, Integer name); }
+
+  @Test
+  public void forEachComponentsPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(21, "Ana"));
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> soaList.forEachComponents(null, (PersonVisitor) (age, name) -> {})),
+        () -> assertThrows(NullPointerException.class, () -> soaList.forEachComponents(PersonVisitor.class, null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.forEachComponents(String.class, "")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.forEachComponents(NotAVisitor.class, new NotAVisitor() {
+          public void visit(int age, String name) {}
+          public void visit2() {}
+        })),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.forEachComponents(IntVisitor.class, age -> {})),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.forEachComponents(PersonLongVisitor.class, (age, name) -> {})),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.forEachComponents(PersonIntegerVisitor.class, (age, name) -> {})),
+        () -> assertThrows(ConcurrentModificationException.class,
+            () -> soaList.forEachComponents(PersonVisitor.class, (age, name) -> soaList.add(new Person(age + 1, name)))),
+        () -> assertThrows(IllegalStateException.class,
+            () -> soaList.forEachComponents(PersonVisitor.class, (age, name) -> { throw new IllegalStateException(); }))
+    );
+  }
+
+  @Test
+  public void cursorScanAndUpdate() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Person(i, "" + i)));
+    var cursor = soaList.cursor();
+    var age = cursor.component("age");
+    var name = cursor.component("name");
+    while (cursor.next()) {
+      cursor.setInt(age, cursor.getInt(age) * 2);
+      cursor.setObject(name, "p" + cursor.getObject(name));
+    }
+    assertAll(
+        () -> assertEquals(0, age),
+        () -> assertEquals(1, name),
+        () -> assertFalse(cursor.next()),
+        () -> assertEquals(100, cursor.index()),
+        () -> assertEquals(IntStream.range(0, 100).mapToObj(i -> new Person(i * 2, "p" + i)).toList(), soaList)
+    );
+  }
+
+  @Test
+  public void cursorLongDoubleAndMoveTo() {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(new Sample(i, i * 10L, i / 2.0)));
+    var cursor = soaList.cursor();
+    cursor.moveTo(3);
+    cursor.setLong(1, 42L);
+    cursor.setDouble(2, 4.5);
+    assertAll(
+        () -> assertEquals(3, cursor.index()),
+        () -> assertEquals(3, cursor.getInt(0)),
+        () -> assertEquals(42L, cursor.getLong(1)),
+        () -> assertEquals(4.5, cursor.getDouble(2)),
+        () -> assertEquals(new Sample(3, 42L, 4.5), soaList.get(3)),
+        () -> assertTrue(cursor.next()),
+        () -> assertEquals(4, cursor.getInt(0))
+    );
+  }
+
+  public record AllPrimitives(boolean z, byte b, short s, char c, int i, float f, long j, double d) {}
+
+  private static AllPrimitives allPrimitives(int i) {
+    return new AllPrimitives(i % 2 == 0, (byte) i, (short) (i * 100), (char) ('a' + i), i, i / 4f, i * 10L, i / 2.0);
+  }
+
+  @Test
+  public void cursorAllPrimitives() {
+    var soaList = StructOfArrayList.of(lookup(), AllPrimitives.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(allPrimitives(i)));
+    var cursor = soaList.cursor();
+    cursor.moveTo(3);
+    assertAll(
+        () -> assertFalse(cursor.getBoolean(cursor.component("z"))),
+        () -> assertEquals((byte) 3, cursor.getByte(cursor.component("b"))),
+        () -> assertEquals((short) 300, cursor.getShort(cursor.component("s"))),
+        () -> assertEquals('d', cursor.getChar(cursor.component("c"))),
+        () -> assertEquals(3, cursor.getInt(cursor.component("i"))),
+        () -> assertEquals(0.75f, cursor.getFloat(cursor.component("f"))),
+        () -> assertEquals(30L, cursor.getLong(cursor.component("j"))),
+        () -> assertEquals(1.5, cursor.getDouble(cursor.component("d")))
+    );
+    cursor.setBoolean(0, true);
+    cursor.setByte(1, (byte) -1);
+    cursor.setShort(2, (short) -2);
+    cursor.setChar(3, 'z');
+    cursor.setFloat(5, 2.5f);
+    assertAll(
+        () -> assertEquals(new AllPrimitives(true, (byte) -1, (short) -2, 'z', 3, 2.5f, 30L, 1.5), soaList.get(3)),
+        () -> assertEquals(allPrimitives(2), soaList.get(2)),
+        () -> assertEquals(allPrimitives(4), soaList.get(4)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.getFloat(7)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.setBoolean(1, true)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.getChar(2)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.setShort(1, (short) 1)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.getByte(0))
+    );
+  }
+
+  @Test
+  public void cursorBooleansOnSnapshot() {
+    var soaList = StructOfArrayList.of(lookup(), AllPrimitives.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(allPrimitives(i)));
+    var snapshot = soaList.snapshot();
+    var cursor = soaList.cursor();
+    while (cursor.next()) {
+      cursor.setBoolean(0, !cursor.getBoolean(0));
+    }
+    assertAll(
+        () -> assertEquals(IntStream.range(0, 10).mapToObj(StructOfArrayListTest::allPrimitives).toList(), snapshot),
+        () -> assertTrue(IntStream.range(0, 10).allMatch(i -> soaList.get(i).z() == (i % 2 != 0)))
+    );
+  }
+
+  @Test
+  public void cursorNestedAndEnum() {
+    var soaList = StructOfArrayList.of(lookup(), Pixel.class);
+    soaList.add(new Pixel(1, Color.RED, new Point(2, 3)));
+    var cursor = soaList.cursor();
+    assertTrue(cursor.next());
+    cursor.setObject(cursor.component("color"), Color.BLUE);
+    cursor.setInt(cursor.component("point.y"), 7);
+    assertAll(
+        () -> assertEquals(Color.BLUE, cursor.getObject(1)),
+        () -> assertEquals(new Pixel(1, Color.BLUE, new Point(2, 7)), soaList.get(0)),
+        () -> assertThrows(ClassCastException.class, () -> cursor.setObject(1, "BLUE"))
+    );
+  }
+
+  @Test
+  public void cursorPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    var cursor = soaList.cursor();
+    assertAll(
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> cursor.getInt(0)),
+        () -> assertThrows(NullPointerException.class, () -> cursor.component(null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.component("foo")),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(1)),
+        () -> assertTrue(cursor.next()),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.getLong(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.getObject(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> cursor.setInt(1, 3)),
+        () -> assertThrows(IndexOutOfBoundsException.class, () -> cursor.getInt(2))
+    );
+    soaList.add(new Person(2, "Bob"));
+    assertThrows(ConcurrentModificationException.class, cursor::next);
+  }
+
+  @Test
+  public void snapshotIsImmutable() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    soaList.add(new Person(2, "Bob"));
+    var snapshot = soaList.snapshot();
+    assertAll(
+        () -> assertEquals(soaList, snapshot),
+        () -> assertSame(snapshot, snapshot.snapshot()),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.add(new Person(3, "Elo"))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.set(0, new Person(3, "Elo"))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0)),
+        () -> assertThrows(UnsupportedOperationException.class, snapshot::clear),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.sortBy("age")),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.removeIf(p -> true)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.intColumn("age").setInt(0, 3)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.objectColumn("name", String.class).setObject(0, "Elo")),
+        () -> assertThrows(UnsupportedOperationException.class, () -> {
+          var cursor = snapshot.cursor();
+          cursor.next();
+          cursor.setInt(0, 3);
+        }),
+        () -> assertThrows(UnsupportedOperationException.class, () -> {
+          var iterator = snapshot.listIterator();
+          iterator.next();
+          iterator.set(new Person(3, "Elo"));
+        }),
+        () -> assertEquals(List.of(new Person(1, "Ana"), new Person(2, "Bob")), snapshot)
+    );
+  }
+
+  @Test
+  public void snapshotCopyOnWrite() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 10).forEach(i -> soaList.add(new Person(i, "" + i)));
+    var snapshot = soaList.snapshot();
+    var expected = IntStream.range(0, 10).mapToObj(i -> new Person(i, "" + i)).toList();
+    soaList.add(new Person(10, "10"));
+    soaList.set(0, new Person(-1, "-1"));
+    var snapshot2 = soaList.snapshot();
+    soaList.intColumn("age").setInt(1, -2);
+    soaList.remove(2);
+    soaList.removeIf(p -> p.age() == 5);
+    soaList.sortBy("age");
+    assertAll(
+        () -> assertEquals(expected, snapshot),
+        () -> assertEquals(new Person(-1, "-1"), snapshot2.get(0)),
+        () -> assertEquals(new Person(1, "1"), snapshot2.get(1)),
+        () -> assertEquals(11, snapshot2.size()),
+        () -> assertEquals(9, soaList.size()),
+        () -> assertEquals(new Person(-2, "1"), soaList.get(0))
+    );
+  }
+
+  @Test
+  public void snapshotCopyOnWriteKeepsCapacity() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, false, true)));
+    var capacity = soaList.capacity();
+    var snapshot = soaList.snapshot();
+    soaList.set(0, new Flags(-1, true, true, true));
+    var ids = soaList.columnArray(0);
+    soaList.add(new Flags(100, true, true, true));
+    assertAll(
+        () -> assertTrue(capacity > 100),
+        () -> assertEquals(capacity, soaList.capacity()),
+        () -> assertSame(ids, soaList.columnArray(0)),
+        () -> assertEquals(new Flags(0, true, false, true), snapshot.get(0)),
+        () -> assertEquals(new Flags(-1, true, true, true), soaList.get(0)),
+        () -> assertEquals(101, soaList.size())
+    );
+  }
+
+  @Test
+  public void snapshotAfterClearAndBooleans() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, i % 3 == 0, false)));
+    var snapshot = soaList.snapshot();
+    var expected = List.copyOf(soaList);
+    soaList.clear();
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Flags(-i, true, true, true)));
+    soaList.set(0, new Flags(0, false, false, false));
+    assertEquals(expected, snapshot);
+  }
+
+  @Test
+  public void snapshotOfMapValues() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(1, new Person(1, "Ana"));
+    soaMap.put(2, new Person(2, "Bob"));
+    var snapshot = soaMap.values().snapshot();
+    soaMap.put(1, new Person(3, "Elo"));
+    soaMap.remove(2);
+    assertEquals(List.of(new Person(1, "Ana"), new Person(2, "Bob")), snapshot);
+  }
+
+  @Test
+  public void snapshotReadByManyThreads() throws InterruptedException {
+    var soaList = StructOfArrayList.of(lookup(), Sample.class);
+    IntStream.range(0, 10_000).forEach(i -> soaList.add(new Sample(i, i, i)));
+    var snapshot = soaList.snapshot();
+    var sums = new long[4];
+    var threads = IntStream.range(0, sums.length)
+        .mapToObj(t -> new Thread(() -> sums[t] = snapshot.sumInt("id")))
+        .toList();
+    threads.forEach(Thread::start);
+    soaList.intColumn("id").setInt(0, 1_000_000);
+    for (var thread : threads) {
+      thread.join();
+    }
+    assertArrayEquals(new long[] { 49_995_000, 49_995_000, 49_995_000, 49_995_000 }, sums);
+  }
+
+  @Test
+  public void addAllSameSpecies() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    var other = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100).forEach(i -> other.add(new Person(i, "" + i)));
+    var expected = new ArrayList<Person>(soaList);
+    expected.addAll(other);
+    assertAll(
+        () -> assertTrue(soaList.addAll(other)),
+        () -> assertEquals(101, soaList.size()),
+        () -> assertEquals(expected, soaList),
+        () -> assertEquals(100, other.size()),
+        () -> assertFalse(soaList.addAll(StructOfArrayList.of(lookup(), Person.class))),
+        () -> assertEquals(101, soaList.size())
+    );
+  }
+
+  @Test
+  public void addAllSameSpeciesBooleans() {
+    // the booleans are packed in a bitset, the bits are not aligned on a long
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    var other = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 37).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, i % 3 == 0, i % 5 == 0)));
+    IntStream.range(0, 1_000).forEach(i -> other.add(new Flags(-i, i % 7 == 0, i % 2 == 1, i % 3 == 0)));
+    var expected = new ArrayList<Flags>(soaList);
+    expected.addAll(other);
+    soaList.addAll(other);
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void addAllSameSpeciesEnumsAndDictionary() {
+    var pixels = StructOfArrayList.of(lookup(), Pixel.class);
+    pixels.add(new Pixel(1, Color.RED, new Point(1, 2)));
+    var otherPixels = StructOfArrayList.of(lookup(), Pixel.class);
+    otherPixels.add(new Pixel(2, null, new Point(3, 4)));
+    otherPixels.add(new Pixel(3, Color.BLUE, new Point(5, 6)));
+    pixels.addAll(otherPixels);
+    var customers = StructOfArrayList.of(lookup(), Customer.class);
+    customers.add(new Customer("Ana", "France"));
+    var otherCustomers = StructOfArrayList.of(lookup(), Customer.class);
+    otherCustomers.add(new Customer("Bob", "Italy"));
+    otherCustomers.add(new Customer("Cid", null));
+    customers.addAll(otherCustomers);
+    assertAll(
+        () -> assertEquals(List.of(
+            new Pixel(1, Color.RED, new Point(1, 2)),
+            new Pixel(2, null, new Point(3, 4)),
+            new Pixel(3, Color.BLUE, new Point(5, 6))), pixels),
+        () -> assertEquals(List.of(
+            new Customer("Ana", "France"),
+            new Customer("Bob", "Italy"),
+            new Customer("Cid", null)), customers)
+    );
+  }
+
+  @Test
+  public void addAllItself() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, i % 3 == 0, false)));
+    var expected = new ArrayList<Flags>(soaList);
+    expected.addAll(soaList);
+    soaList.addAll(soaList);
+    assertEquals(expected, soaList);
+  }
+
+  @Test
+  public void addAllOtherCollections() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    var people = IntStream.range(0, 1_000).mapToObj(i -> new Person(i, "" + i)).toList();
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(7, new Person(7, "Elo"));
+    var expected = new ArrayList<Person>(soaList);
+    expected.addAll(people);
+    expected.addAll(people.subList(10, 20));
+    expected.add(new Person(7, "Elo"));
+    assertAll(
+        () -> assertTrue(soaList.addAll(people)),
+        () -> assertTrue(soaList.addAll(new LinkedHashSet<>(people.subList(10, 20)))),
+        () -> assertTrue(soaList.addAll(soaMap.values())),
+        () -> assertFalse(soaList.addAll(List.of())),
+        () -> assertEquals(expected, soaList)
+    );
+  }
+
+  @Test
+  public void addAllAndSnapshot() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    var snapshot = soaList.snapshot();
+    var other = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100).forEach(i -> other.add(new Person(i, "" + i)));
+    soaList.addAll(other);
+    soaList.set(0, new Person(2, "Bob"));
+    assertAll(
+        () -> assertEquals(List.of(new Person(1, "Ana")), snapshot),
+        () -> assertEquals(101, soaList.size()),
+        () -> assertEquals(new Person(2, "Bob"), soaList.get(0)),
+        () -> assertEquals(new Person(99, "99"), soaList.get(100))
+    );
+  }
+
+  @Test
+  public void addAllPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.add(new Person(1, "Ana"));
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    var snapshot = soaList.snapshot();
+    var withNull = new ArrayList<Person>();
+    withNull.add(null);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> soaList.addAll(null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.addAll(withNull)),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().addAll(List.of(new Person(1, "Ana")))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.addAll(soaList))
+    );
+  }
+
+  @Test
+  public void addAllOnlyBooleans() {
+    var soaList = StructOfArrayList.of(lookup(), Options.class);
+    soaList.add(new Options(true, false));
+    soaList.addAll(List.copyOf(soaList));
+    soaList.addAll(soaList);
+    assertEquals(List.of(new Options(true, false), new Options(true, false), new Options(true, false), new Options(true, false)), soaList);
+  }
+
+  public record EmptyRecord() {}
+
+  @Test
+  public void addAllEmptyRecord() {
+    var soaList = StructOfArrayList.of(lookup(), EmptyRecord.class);
+    soaList.add(new EmptyRecord());
+    soaList.addAll(soaList);
+    soaList.addAll(List.of(new EmptyRecord()));
+    assertEquals(List.of(new EmptyRecord(), new EmptyRecord(), new EmptyRecord()), soaList);
+  }
+
+  @Test
+  public void ensureCapacityAndTrimToSize() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    soaList.ensureCapacity(1_000);
+    var capacity = soaList.capacity();
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Flags(i, i % 2 == 0, i % 3 == 0, false)));
+    var expected = List.copyOf(soaList);
+    assertEquals(capacity, soaList.capacity());
+    soaList.add(new Flags(1_000, true, true, true));
+    soaList.remove(1_000);
+    soaList.trimToSize();
+    assertAll(
+        () -> assertTrue(capacity >= 1_000),
+        () -> assertEquals(1_000, soaList.capacity()),
+        () -> assertEquals(expected, soaList)
+    );
+    soaList.add(new Flags(1_000, true, true, true));
+    assertEquals(new Flags(1_000, true, true, true), soaList.get(1_000));
+  }
+
+  @Test
+  public void trimToSizeAndSnapshot() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    IntStream.range(0, 100).forEach(i -> soaList.add(new Person(i, "" + i)));
+    var snapshot = soaList.snapshot();
+    soaList.trimToSize();
+    soaList.set(0, new Person(-1, "-1"));
+    assertAll(
+        () -> assertEquals(new Person(0, "0"), snapshot.get(0)),
+        () -> assertEquals(new Person(-1, "-1"), soaList.get(0)),
+        () -> assertThrows(UnsupportedOperationException.class, snapshot::trimToSize),
+        () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.ensureCapacity(1_000))
+    );
+  }
+
+  @Test
+  public void growthPolicy() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.setGrowthPolicy(StructOfArrayList.GrowthPolicy.linear(100));
+    var capacities = new LinkedHashSet<Integer>();
+    for (var i = 0; i < 1_000; i++) {
+      soaList.add(new Person(i, "" + i));
+      capacities.add(soaList.capacity());
+    }
+    soaList.ensureCapacity(1_050);
+    assertAll(
+        () -> assertEquals(IntStream.rangeClosed(1, 10).mapToObj(i -> i * 100).toList(), List.copyOf(capacities)),
+        () -> assertEquals(1_100, soaList.capacity()),
+        () -> assertEquals(new Person(999, "999"), soaList.get(999))
+    );
+  }
+
+  @Test
+  public void geometricGrowthPolicy() {
+    var policy = StructOfArrayList.GrowthPolicy.geometric(2.0);
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    soaList.setGrowthPolicy(policy);
+    IntStream.range(0, 17).forEach(i -> soaList.add(new Person(i, "" + i)));
+    assertAll(
+        () -> assertSame(policy, soaList.growthPolicy()),
+        () -> assertEquals(32, soaList.capacity()),
+        () -> assertEquals(16, policy.newCapacity(0, 1)),
+        () -> assertEquals(100, policy.newCapacity(10, 100)),
+        () -> assertEquals(Integer.MAX_VALUE - 8, policy.newCapacity(Integer.MAX_VALUE / 2 + 1, Integer.MAX_VALUE / 2 + 2))
+    );
+  }
+
+  @Test
+  public void growthPolicyPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaList.setGrowthPolicy((capacity, minCapacity) -> capacity);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> soaList.setGrowthPolicy(null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> StructOfArrayList.GrowthPolicy.geometric(1.0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> StructOfArrayList.GrowthPolicy.geometric(Double.NaN)),
+        () -> assertThrows(IllegalArgumentException.class, () -> StructOfArrayList.GrowthPolicy.linear(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.ensureCapacity(-1)),
+        () -> assertThrows(IllegalStateException.class, () -> soaList.add(new Person(1, "Ana"))),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().trimToSize()),
+        () -> assertThrows(UnsupportedOperationException.class, () -> soaMap.values().ensureCapacity(10))
+    );
+  }
+
+  @Test
+  public void scalarAndVectorKernels() {
+    var random = new java.util.Random(0);
+    var ints = random.ints(1_000, -100, 100).toArray();
+    var longs = random.longs(1_000, -100, 100).toArray();
+    var doubles = random.ints(1_000, -100, 100).asDoubleStream().toArray();
+    var scalar = new ScalarKernels();
+    var kernels = Kernels.KERNELS;
+    for (var comparison : StructOfArrayList.Comparison.values()) {
+      var scalarIndexes = new int[1_000];
+      var indexes = new int[1_000];
+      assertAll(
+          () -> assertEquals(scalar.count(ints, 997, comparison, 3), kernels.count(ints, 997, comparison, 3)),
+          () -> assertEquals(scalar.count(longs, 997, comparison, 3L), kernels.count(longs, 997, comparison, 3L)),
+          () -> assertEquals(scalar.count(doubles, 997, comparison, 3.0), kernels.count(doubles, 997, comparison, 3.0)),
+          () -> assertEquals(scalar.filterIndexes(ints, 997, comparison, 3, scalarIndexes), kernels.filterIndexes(ints, 997, comparison, 3, indexes)),
+          () -> assertArrayEquals(scalarIndexes, indexes)
+      );
+    }
+    assertAll(
+        () -> assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), kernels instanceof VectorKernels),
+        () -> assertEquals(scalar.min(ints, 997), kernels.min(ints, 997)),
+        () -> assertEquals(scalar.max(longs, 997), kernels.max(longs, 997)),
+        () -> assertEquals(scalar.min(doubles, 997), kernels.min(doubles, 997)),
+        () -> assertEquals(scalar.max(doubles, 3), kernels.max(doubles, 3)),
+        () -> assertEquals(scalar.sum(ints, 997), kernels.sum(ints, 997)),
+        () -> assertEquals(scalar.sum(longs, 997), kernels.sum(longs, 997)),
+        () -> assertEquals(scalar.sum(doubles, 997), kernels.sum(doubles, 997))
+    );
+  }
+
+  @Test
+  public void columnPreconditions() {
+    var soaList = StructOfArrayList.of(lookup(), Person.class);
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> soaList.intColumn(null)),
+        () -> assertThrows(NullPointerException.class, () -> soaList.objectColumn("name", null)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.intColumn("foo")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.intColumn("name")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.longColumn("age")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.doubleColumn("age")),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.objectColumn("age", int.class)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.objectColumn("name", Object.class))
+    );
+  }
+
+  public record Point(int x, int y) {}
+  public record Segment(Point start, Point end) {}
+
+  @Test
+  public void nestedRecord() {
+    var soaList = StructOfArrayList.of(lookup(), Segment.class);
+    soaList.add(new Segment(new Point(1, 2), new Point(3, 4)));
+    soaList.add(new Segment(new Point(5, 6), new Point(7, 8)));
+    soaList.set(0, new Segment(new Point(10, 20), new Point(30, 40)));
+    assertAll(
+        () -> assertEquals(List.of(
+            new Segment(new Point(10, 20), new Point(30, 40)),
+            new Segment(new Point(5, 6), new Point(7, 8))), soaList),
+        () -> assertEquals(1, soaList.indexOf(new Segment(new Point(5, 6), new Point(7, 8)))),
+        () -> assertEquals(-1, soaList.indexOf(new Segment(new Point(5, 6), new Point(7, 9)))),
+        () -> assertEquals(0, soaList.lastIndexOf(new Segment(new Point(10, 20), new Point(30, 40)))),
+        () -> assertEquals(6, soaList.intColumn("start.y").getInt(1)),
+        () -> assertEquals(30, soaList.intColumn("end.x").getInt(0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> soaList.objectColumn("start", Point.class))
+    );
+  }
+
+  @Test
+  public void nestedRecordNull() {
+    var soaList = StructOfArrayList.of(lookup(), Segment.class);
+    soaList.add(new Segment(new Point(1, 2), new Point(3, 4)));
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> soaList.add(new Segment(null, new Point(3, 4)))),
+        () -> assertThrows(NullPointerException.class, () -> soaList.set(0, new Segment(new Point(5, 6), null))),
+        () -> assertEquals(List.of(new Segment(new Point(1, 2), new Point(3, 4))), soaList)
+    );
+  }
+
+  public record Node(int value, Node next) {}
+
+  @Test
+  public void recursiveRecordIsNotFlattened() {
+    var soaList = StructOfArrayList.of(lookup(), Node.class);
+    soaList.add(new Node(1, new Node(2, null)));
+    soaList.add(new Node(3, null));
+    assertAll(
+        () -> assertEquals(List.of(new Node(1, new Node(2, null)), new Node(3, null)), soaList),
+        () -> assertEquals(new Node(2, null), soaList.objectColumn("next", Node.class).getObject(0)),
+        () -> assertEquals(1, soaList.indexOf(new Node(3, null)))
+    );
+  }
+
+  public record Flags(int id, boolean visible, boolean enabled, boolean selected) {}
+
+  private static Class<?> fieldType(Class<?> specializedClass, String name) throws NoSuchFieldException {
+    return specializedClass.getDeclaredField(name).getType();
+  }
+
+  @Test
+  public void booleanComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    var flags = IntStream.range(0, 200)
+        .mapToObj(i -> new Flags(i, i % 2 == 0, i % 3 == 0, i % 5 == 0))
+        .toList();
+    soaList.addAll(flags);
+    soaList.set(100, new Flags(100, false, true, true));
+    soaList.remove(0);
+    assertAll(
+        () -> assertEquals(long[].class, fieldType(soaList.getClass(), "array1")),
+        () -> assertEquals(long[].class, fieldType(soaList.getClass(), "array3")),
+        () -> assertEquals(199, soaList.size()),
+        () -> assertEquals(new Flags(199, false, false, false), soaList.get(0)),
+        () -> assertEquals(new Flags(100, false, true, true), soaList.get(100)),
+        () -> assertEquals(flags.subList(1, 100), soaList.subList(1, 100)),
+        () -> assertEquals(99, soaList.indexOf(new Flags(99, false, true, false))),
+        () -> assertEquals(-1, soaList.indexOf(new Flags(99, true, true, false)))
+    );
+  }
+
+  @PackedBooleans
+  public record PackedFlags(boolean visible, Flags flags, boolean selected) {}
+
+  @Test
+  public void packedBooleanComponents() {
+    var soaList = StructOfArrayList.of(lookup(), PackedFlags.class, 0);
+    var flags = IntStream.range(0, 100)
+        .mapToObj(i -> new PackedFlags(i % 7 == 0, new Flags(i, i % 2 == 0, i % 3 == 0, true), i % 5 == 0))
+        .toList();
+    soaList.addAll(flags);
+    soaList.set(50, new PackedFlags(true, new Flags(50, true, false, false), true));
+    assertAll(
+        () -> assertEquals(long[].class, fieldType(soaList.getClass(), "array0")),
+        () -> assertThrows(NoSuchFieldException.class, () -> fieldType(soaList.getClass(), "array2")),
+        () -> assertThrows(NoSuchFieldException.class, () -> fieldType(soaList.getClass(), "array5")),
+        () -> assertEquals(100, soaList.size()),
+        () -> assertEquals(flags.subList(0, 50), soaList.subList(0, 50)),
+        () -> assertEquals(new PackedFlags(true, new Flags(50, true, false, false), true), soaList.get(50)),
+        () -> assertEquals(flags.subList(51, 100), soaList.subList(51, 100)),
+        () -> assertEquals(63, soaList.indexOf(flags.get(63)))
+    );
+  }
+
+  public record Options(boolean verbose, boolean debug) {}
+
+  @Test
+  public void onlyBooleanComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Options.class);
+    IntStream.range(0, 1_000).forEach(i -> soaList.add(new Options(i % 2 == 0, i % 3 == 0)));
+    assertAll(
+        () -> assertEquals(1_000, soaList.size()),
+        () -> assertEquals(new Options(true, true), soaList.get(0)),
+        () -> assertEquals(new Options(false, false), soaList.get(997)),
+        () -> assertEquals(1, soaList.indexOf(new Options(false, false)))
+    );
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+  public record Pixel(int x, Color color, Point point) {}
+
+  @Test
+  public void enumComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Pixel.class);
+    soaList.add(new Pixel(1, Color.RED, new Point(1, 2)));
+    soaList.add(new Pixel(2, null, new Point(3, 4)));
+    soaList.add(new Pixel(3, Color.BLUE, new Point(5, 6)));
+    soaList.objectColumn("color", Color.class).setObject(0, Color.GREEN);
+    assertAll(
+        () -> assertEquals(byte[].class, fieldType(soaList.getClass(), "array1")),
+        () -> assertEquals(List.of(
+            new Pixel(1, Color.GREEN, new Point(1, 2)),
+            new Pixel(2, null, new Point(3, 4)),
+            new Pixel(3, Color.BLUE, new Point(5, 6))), soaList),
+        () -> assertEquals(Color.BLUE, soaList.objectColumn("color", Color.class).getObject(2)),
+        () -> assertNull(soaList.objectColumn("color", Color.class).getObject(1)),
+        () -> assertEquals(1, soaList.indexOf(new Pixel(2, null, new Point(3, 4)))),
+        () -> assertEquals(-1, soaList.indexOf(new Pixel(2, Color.RED, new Point(3, 4)))),
+        () -> assertEquals(2, soaList.lastIndexOf(new Pixel(3, Color.BLUE, new Point(5, 6))))
+    );
+  }
+
+  @Test
+  public void enumStorage() {
+    assertAll(
+        () -> assertEquals(Components.Storage.BYTE_ORDINAL, Components.Storage.ofEnum(255)),
+        () -> assertEquals(Components.Storage.SHORT_ORDINAL, Components.Storage.ofEnum(256)),
+        () -> assertEquals(Components.Storage.SHORT_ORDINAL, Components.Storage.ofEnum(65_535)),
+        () -> assertEquals(Components.Storage.ARRAY, Components.Storage.ofEnum(65_536))
+    );
+  }
+
+  public record Customer(String name, @DictionaryEncoded String country) {}
+
+  @Test
+  public void dictionaryEncodedComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Customer.class);
+    soaList.add(new Customer("Ana", new String("France")));
+    soaList.add(new Customer("Bob", new String("France")));
+    soaList.add(new Customer("Cid", null));
+    soaList.add(new Customer("Dan", "Spain"));
+    soaList.objectColumn("country", String.class).setObject(2, "Italy");
+    assertAll(
+        () -> assertEquals(int[].class, fieldType(soaList.getClass(), "array1")),
+        () -> assertEquals(List.of(
+            new Customer("Ana", "France"),
+            new Customer("Bob", "France"),
+            new Customer("Cid", "Italy"),
+            new Customer("Dan", "Spain")), soaList),
+        () -> assertSame(soaList.get(0).country(), soaList.get(1).country()),
+        () -> assertEquals("Italy", soaList.objectColumn("country", String.class).getObject(2)),
+        () -> assertEquals(1, soaList.indexOf(new Customer("Bob", "France"))),
+        () -> assertEquals(-1, soaList.indexOf(new Customer("Bob", "Germany"))),
+        () -> assertEquals(3, soaList.lastIndexOf(new Customer("Dan", "Spain")))
+    );
+  }
+
+  @Test
+  public void dictionaryEncodedNullComponents() {
+    var soaList = StructOfArrayList.of(lookup(), Customer.class);
+    soaList.add(new Customer("Ana", null));
+    soaList.add(new Customer("Bob", "Peru"));
+    assertAll(
+        () -> assertNull(soaList.get(0).country()),
+        () -> assertEquals(0, soaList.indexOf(new Customer("Ana", null))),
+        () -> assertEquals(-1, soaList.indexOf(new Customer("Bob", null)))
+    );
+  }
+
+  public record Counter(@DictionaryEncoded int value) {}
+
+  @Test
+  public void dictionaryEncodedPrimitiveComponent() {
+    assertThrows(IllegalArgumentException.class, () -> StructOfArrayList.of(lookup(), Counter.class));
+  }
 }
\ No newline at end of file
@@ -2,12 +2,18 @@ package com.github.forax.soa;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
 import static java.lang.invoke.MethodHandles.lookup;
@@ -307,6 +313,19 @@ public class StructOfArrayMapTest {
     );
   }
 
+  @Test
+  public void clearThenGetAndPut() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(0, new Person(1, "A"));
+    soaMap.clear();
+    assertAll(
+        () -> assertNull(soaMap.get(1)),
+        () -> assertFalse(soaMap.containsKey(0)),
+        () -> assertNull(soaMap.put(1, new Person(2, "B"))),
+        () -> assertEquals(Map.of(1, new Person(2, "B")), soaMap)
+    );
+  }
+
   @Test
   public void replaceTombstoneWorks() {
     var soaMap = StructOfArrayMap.of(lookup(), Person.class);
@@ -518,4 +537,350 @@ public class StructOfArrayMapTest {
         () -> assertThrows(UnsupportedOperationException.class, () -> values.remove(0))
     );
   }
-}
\ No newline at end of file
+
+  @Test
+  public void valuesIntColumn() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.put(3, new Person(36, "Ana"));
+    soaMap.put(7, new Person(18, "Bob"));
+    var ages = soaMap.values().intColumn("age");
+    ages.setInt(1, 19);
+    assertAll(
+        () -> assertEquals(36, ages.getInt(0)),
+        () -> assertEquals(19, ages.getInt(1)),
+        () -> assertEquals(new Person(19, "Bob"), soaMap.get(7))
+    );
+  }
+
+  @Test
+  public void intKeys() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    assertNull(soaMap.putInt(1_000, new Person(36, "Ana")));
+    assertNull(soaMap.putInt(-7, new Person(18, "Bob")));
+    var old = soaMap.putInt(1_000, new Person(37, "Ana"));
+    assertAll(
+        () -> assertEquals(new Person(36, "Ana"), old),
+        () -> assertEquals(2, soaMap.size()),
+        () -> assertEquals(new Person(37, "Ana"), soaMap.getInt(1_000)),
+        () -> assertEquals(new Person(18, "Bob"), soaMap.getInt(-7)),
+        () -> assertNull(soaMap.getInt(42)),
+        () -> assertEquals(new Person(0, "?"), soaMap.getOrDefaultInt(42, new Person(0, "?"))),
+        () -> assertEquals(new Person(18, "Bob"), soaMap.getOrDefaultInt(-7, new Person(0, "?"))),
+        () -> assertTrue(soaMap.containsKeyInt(1_000)),
+        () -> assertFalse(soaMap.containsKeyInt(42)),
+        () -> assertThrows(NullPointerException.class, () -> soaMap.putInt(3, null))
+    );
+  }
+
+  @Test
+  public void removeIntKeys() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.putInt(1_000, new Person(36, "Ana"));
+    soaMap.putInt(2_000, new Person(18, "Bob"));
+    var removed = soaMap.removeInt(1_000);
+    assertAll(
+        () -> assertEquals(new Person(36, "Ana"), removed),
+        () -> assertNull(soaMap.removeInt(1_000)),
+        () -> assertEquals(1, soaMap.size()),
+        () -> assertFalse(soaMap.containsKeyInt(1_000)),
+        () -> assertEquals(new Person(18, "Bob"), soaMap.getInt(2_000))
+    );
+  }
+
+  @Test
+  public void stridedKeys() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    IntStream.range(0, 10_000).forEach(i -> soaMap.putInt(i << 16, new Person(i, "" + i)));
+    IntStream.range(0, 10_000).filter(i -> i % 3 == 0).forEach(i -> soaMap.removeInt(i << 16));
+    assertAll(
+        () -> assertEquals(6_666, soaMap.size()),
+        () -> IntStream.range(0, 10_000).forEach(i -> {
+          if (i % 3 == 0) {
+            assertFalse(soaMap.containsKeyInt(i << 16));
+          } else {
+            assertEquals(new Person(i, "" + i), soaMap.getInt(i << 16));
+          }
+        })
+    );
+  }
+
+  @Test
+  public void probeLengthOfAMissingKey() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    soaMap.putInt(1, new Person(1, "A"));
+    assertAll(
+        () -> assertEquals(1, soaMap.probeLength(1)),
+        () -> assertEquals(0, soaMap.probeLength(2))
+    );
+  }
+
+  @Test
+  public void stridedKeysProbeLength() {
+    for (var shift = 0; shift <= 24; shift += 4) {
+      var stride = 1 << shift;
+      var keys = IntStream.range(0, 100_000).map(i -> i * stride).distinct().toArray();
+      var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+      Arrays.stream(keys).forEach(key -> soaMap.putInt(key, new Person(key, "")));
+      var probeLengths = Arrays.stream(keys).map(soaMap::probeLength).sorted().toArray();
+      var average = Arrays.stream(probeLengths).average().orElseThrow();
+      var p99 = probeLengths[probeLengths.length * 99 / 100];
+      var max = probeLengths[probeLengths.length - 1];
+      assertAll(
+          () -> assertTrue(average < 2.0, "stride " + stride + " average probe length " + average),
+          () -> assertTrue(p99 <= 16, "stride " + stride + " p99 probe length " + p99),
+          () -> assertTrue(max <= 64, "stride " + stride + " max probe length " + max)
+      );
+    }
+  }
+
+  @Test
+  public void putAfterRemoveOfACollidingKey() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    // find two keys that collide
+    var first = 0;
+    var second = IntStream.range(1, 1_000_000)
+        .filter(k -> (StructOfArrayMap.hash(k) & 31) == (StructOfArrayMap.hash(first) & 31))
+        .findFirst().orElseThrow();
+    soaMap.putInt(first, new Person(1, "A"));
+    soaMap.putInt(second, new Person(2, "B"));
+    soaMap.removeInt(first);
+    var old = soaMap.putInt(second, new Person(3, "C"));
+    assertAll(
+        () -> assertEquals(new Person(2, "B"), old),
+        () -> assertEquals(1, soaMap.size()),
+        () -> assertEquals(Map.of(second, new Person(3, "C")), soaMap)
+    );
+  }
+
+  @Test
+  public void putAndRemoveChurn() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    for (var i = 0; i < 100_000; i++) {
+      soaMap.putInt(i, new Person(i, "" + i));
+      if (i >= 8) {
+        assertEquals(new Person(i - 8, "" + (i - 8)), soaMap.removeInt(i - 8));
+      }
+    }
+    assertAll(
+        () -> assertEquals(8, soaMap.size()),
+        () -> assertEquals(32, soaMap.indexes.length),
+        () -> IntStream.range(100_000 - 8, 100_000).forEach(i -> assertEquals(new Person(i, "" + i), soaMap.getInt(i))),
+        () -> assertFalse(soaMap.containsKeyInt(0))
+    );
+  }
+
+  public record Point(int x, int y) {}
+  public record Segment(Point start, Point end) {}
+
+  @Test
+  public void nestedRecord() {
+    var soaMap = StructOfArrayMap.of(lookup(), Segment.class);
+    soaMap.put(1, new Segment(new Point(1, 2), new Point(3, 4)));
+    soaMap.put(2, new Segment(new Point(5, 6), new Point(7, 8)));
+    assertAll(
+        () -> assertEquals(new Segment(new Point(1, 2), new Point(3, 4)), soaMap.get(1)),
+        () -> assertEquals(new Segment(new Point(5, 6), new Point(7, 8)), soaMap.remove(2)),
+        () -> assertTrue(soaMap.containsValue(new Segment(new Point(1, 2), new Point(3, 4)))),
+        () -> assertFalse(soaMap.containsValue(new Segment(new Point(5, 6), new Point(7, 8)))),
+        () -> assertThrows(NullPointerException.class, () -> soaMap.put(3, new Segment(null, null)))
+    );
+  }
+
+  @PackedBooleans
+  public record Flags(int id, boolean visible, boolean enabled) {}
+
+  @Test
+  public void packedBooleanComponents() {
+    var soaMap = StructOfArrayMap.of(lookup(), Flags.class);
+    IntStream.range(0, 100).forEach(i -> soaMap.put(i, new Flags(i, i % 2 == 0, i % 3 == 0)));
+    soaMap.remove(0);
+    assertAll(
+        () -> assertEquals(99, soaMap.size()),
+        () -> assertEquals(new Flags(99, false, true), soaMap.get(99)),
+        () -> assertEquals(new Flags(42, true, true), soaMap.get(42)),
+        () -> assertTrue(soaMap.containsValue(new Flags(51, false, true))),
+        () -> assertFalse(soaMap.containsValue(new Flags(51, true, true))),
+        () -> assertEquals(new Flags(99, false, true), soaMap.values().get(0))
+    );
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+  public record Pixel(int x, Color color) {}
+
+  @Test
+  public void enumComponents() {
+    var soaMap = StructOfArrayMap.of(lookup(), Pixel.class);
+    IntStream.range(0, 100).forEach(i -> soaMap.put(i, new Pixel(i, i == 10? null: Color.values()[i % 3])));
+    soaMap.remove(0);
+    assertAll(
+        () -> assertEquals(99, soaMap.size()),
+        () -> assertEquals(new Pixel(99, Color.RED), soaMap.get(99)),
+        () -> assertEquals(new Pixel(10, null), soaMap.get(10)),
+        () -> assertTrue(soaMap.containsValue(new Pixel(50, Color.BLUE))),
+        () -> assertFalse(soaMap.containsValue(new Pixel(50, Color.RED))),
+        () -> assertEquals(new Pixel(99, Color.RED), soaMap.values().get(0))
+    );
+  }
+
+  public record Customer(String name, @DictionaryEncoded String country) {}
+
+  @Test
+  public void dictionaryEncodedComponents() {
+    var soaMap = StructOfArrayMap.of(lookup(), Customer.class);
+    var countries = List.of("France", "Spain", "Italy");
+    IntStream.range(0, 100).forEach(i -> soaMap.put(i, new Customer("" + i, countries.get(i % 3))));
+    soaMap.remove(0);
+    assertAll(
+        () -> assertEquals(99, soaMap.size()),
+        () -> assertEquals(new Customer("50", "Italy"), soaMap.get(50)),
+        () -> assertTrue(soaMap.containsValue(new Customer("51", "France"))),
+        () -> assertFalse(soaMap.containsValue(new Customer("51", "Spain"))),
+        () -> assertFalse(soaMap.containsValue(new Customer("51", "Peru"))),
+        () -> assertEquals(new Customer("99", "France"), soaMap.values().get(0))
+    );
+  }
+
+  private static byte[] snapshot(StructOfArrayMap<?> soaMap) throws IOException {
+    var output = new ByteArrayOutputStream();
+    soaMap.writeTo(Channels.newChannel(output));
+    return output.toByteArray();
+  }
+
+  private static <T extends Record> StructOfArrayMap<T> restore(Class<T> recordType, byte[] snapshot) throws IOException {
+    return StructOfArrayMap.readFrom(lookup(), recordType, Channels.newChannel(new ByteArrayInputStream(snapshot)));
+  }
+
+  @Test
+  public void writeToAndReadFrom() throws IOException {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    IntStream.range(0, 100_000).forEach(i -> soaMap.put(i, new Person(i, i % 10 == 0? null: "" + i)));
+    soaMap.remove(42);
+    var restoredMap = restore(Person.class, snapshot(soaMap));
+    assertAll(
+        () -> assertEquals(soaMap, restoredMap),
+        () -> assertEquals(99_999, restoredMap.size()),
+        () -> assertEquals(new Person(12_345, "12345"), restoredMap.get(12_345)),
+        () -> assertEquals(new Person(50, null), restoredMap.get(50)),
+        () -> assertNull(restoredMap.get(42)),
+        () -> assertEquals(soaMap.values(), restoredMap.values())
+    );
+    restoredMap.put(100_000, new Person(100_000, "100000"));
+    assertEquals(new Person(100_000, "100000"), restoredMap.get(100_000));
+  }
+
+  @Test
+  public void writeToAndReadFromEncodedComponents() throws IOException {
+    var pixels = StructOfArrayMap.of(lookup(), Pixel.class);
+    IntStream.range(0, 1_000).forEach(i -> pixels.put(i, new Pixel(i, i == 10? null: Color.values()[i % 3])));
+    var flags = StructOfArrayMap.of(lookup(), Flags.class);
+    IntStream.range(0, 1_000).forEach(i -> flags.put(i, new Flags(i, i % 2 == 0, i % 3 == 0)));
+    var segments = StructOfArrayMap.of(lookup(), Segment.class);
+    segments.put(7, new Segment(new Point(1, 2), new Point(3, 4)));
+    assertAll(
+        () -> assertEquals(pixels, restore(Pixel.class, snapshot(pixels))),
+        () -> assertEquals(flags, restore(Flags.class, snapshot(flags))),
+        () -> assertEquals(segments, restore(Segment.class, snapshot(segments)))
+    );
+  }
+
+  @Test
+  public void writeToAndReadFromEmpty() throws IOException {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    var restoredMap = restore(Person.class, snapshot(soaMap));
+    assertTrue(restoredMap.isEmpty());
+  }
+
+  @Test
+  public void readFromInvalid() throws IOException {
+    var soaMap = StructOfArrayMap.of(lookup(), Point.class);
+    soaMap.put(1, new Point(1, 2));
+    var snapshot = snapshot(soaMap);
+    assertAll(
+        () -> assertThrows(IOException.class, () -> restore(Pixel.class, snapshot)),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, Arrays.copyOf(snapshot, snapshot.length - 1))),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, new byte[0])),
+        () -> assertThrows(IllegalArgumentException.class, () -> restore(Customer.class, snapshot)),
+        () -> assertThrows(NullPointerException.class, () -> StructOfArrayMap.readFrom(lookup(), Point.class, null)),
+        () -> assertThrows(NullPointerException.class, () -> soaMap.writeTo(null))
+    );
+  }
+
+  // write a snapshot of a map which state was corrupted by the action
+  private static byte[] corruptedSnapshot(StructOfArrayMap<?> soaMap, Consumer<StructOfArrayMap<?>> action) throws IOException {
+    action.accept(soaMap);
+    return snapshot(soaMap);
+  }
+
+  private static StructOfArrayMap<Point> pointMap() {
+    var soaMap = StructOfArrayMap.of(lookup(), Point.class);
+    IntStream.range(0, 10).forEach(i -> soaMap.put(i, new Point(i, i)));
+    return soaMap;
+  }
+
+  private static StructOfArrayMap<Flags> flagsMap() {
+    var soaMap = StructOfArrayMap.of(lookup(), Flags.class);
+    IntStream.range(0, 10).forEach(i -> soaMap.put(i, new Flags(i, i % 2 == 0, i % 3 == 0)));
+    return soaMap;
+  }
+
+  private static int firstSlot(StructOfArrayMap<?> soaMap) {
+    return IntStream.range(0, soaMap.indexes.length).filter(slot -> soaMap.indexes[slot] != StructOfArrayMap.EMPTY).findFirst().orElseThrow();
+  }
+
+  private static int firstEmptySlot(StructOfArrayMap<?> soaMap) {
+    return IntStream.range(0, soaMap.indexes.length).filter(slot -> soaMap.indexes[slot] == StructOfArrayMap.EMPTY).findFirst().orElseThrow();
+  }
+
+  @Test
+  public void readFromCorrupted() throws IOException {
+    var shortColumn = corruptedSnapshot(pointMap(), map -> {
+      var columns = map.columns();
+      columns[0] = new int[3];
+      map.columns(columns);
+    });
+    var shortBitSet = corruptedSnapshot(flagsMap(), map -> {
+      var columns = map.columns();
+      columns[1] = new long[0];
+      map.columns(columns);
+    });
+    var longBitSet = corruptedSnapshot(flagsMap(), map -> {
+      var columns = map.columns();
+      columns[1] = new long[1_000];
+      map.columns(columns);
+    });
+    var indexTooBig = corruptedSnapshot(pointMap(), map -> map.indexes[firstSlot(map)] = 10);
+    var negativeIndex = corruptedSnapshot(pointMap(), map -> map.indexes[firstSlot(map)] = -2);
+    var duplicateIndex = corruptedSnapshot(pointMap(), map -> map.indexes[firstEmptySlot(map)] = map.indexes[firstSlot(map)]);
+    var missingIndex = corruptedSnapshot(pointMap(), map -> map.indexes[firstSlot(map)] = StructOfArrayMap.EMPTY);
+    assertAll(
+        () -> assertEquals(flagsMap(), restore(Flags.class, snapshot(flagsMap()))),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, shortColumn)),
+        () -> assertThrows(IOException.class, () -> restore(Flags.class, shortBitSet)),
+        () -> assertThrows(IOException.class, () -> restore(Flags.class, longBitSet)),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, indexTooBig)),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, negativeIndex)),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, duplicateIndex)),
+        () -> assertThrows(IOException.class, () -> restore(Point.class, missingIndex))
+    );
+  }
+
+  @Test
+  public void writeToNotWritable() {
+    var soaMap = StructOfArrayMap.of(lookup(), Customer.class);
+    assertThrows(UnsupportedOperationException.class, () -> snapshot(soaMap));
+  }
+
+  @Test
+  public void valuesAggregations() {
+    var soaMap = StructOfArrayMap.of(lookup(), Person.class);
+    IntStream.range(0, 100).forEach(i -> soaMap.put(i, new Person(i, "" + i)));
+    soaMap.remove(0);
+    var values = soaMap.values();
+    assertAll(
+        () -> assertEquals(4_950L, values.sumInt("age")),
+        () -> assertEquals(1, values.minInt("age").orElseThrow()),
+        () -> assertEquals(99, values.maxInt("age").orElseThrow()),
+        () -> assertEquals(50.0, values.average("age").orElseThrow())
+    );
+  }
+}
@@ -0,0 +1,177 @@
+package com.github.forax.soa;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodHandles.privateLookupIn;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StructOfArrayProcessorTest {
+  @StructOfArray
+  public record Point(int x, int y) {}
+
+  private static void assertGeneratedAtCompileTime(Class<?> specializedClass) {
+    // a class generated at runtime is defined in the protection domain of the library
+    var testClasses = StructOfArrayProcessorTest.class.getProtectionDomain().getCodeSource().getLocation();
+    assertAll(
+        () -> assertNotNull(specializedClass.getResource(specializedClass.getSimpleName() + ".class")),
+        () -> assertEquals(testClasses, specializedClass.getProtectionDomain().getCodeSource().getLocation())
+    );
+  }
+
+  @Test
+  public void list() {
+    var soaList = StructOfArrayList.of(lookup(), Point.class);
+    soaList.add(new Point(1, 3));
+    soaList.add(new Point(14, 51));
+    assertAll(
+        () -> assertEquals(RT.specializedClassName(StructOfArrayList$Template.class, Point.class.getName()), soaList.getClass().getName()),
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(List.of(new Point(1, 3), new Point(14, 51)), soaList),
+        () -> assertEquals(1, soaList.indexOf(new Point(14, 51)))
+    );
+  }
+
+  @Test
+  public void map() {
+    var soaMap = StructOfArrayMap.of(lookup(), Point.class);
+    soaMap.put(1, new Point(1, 3));
+    soaMap.put(14, new Point(14, 51));
+    assertAll(
+        () -> assertEquals(RT.specializedClassName(StructOfArrayMap$Template.class, Point.class.getName()), soaMap.getClass().getName()),
+        () -> assertGeneratedAtCompileTime(soaMap.getClass()),
+        () -> assertEquals(new Point(14, 51), soaMap.get(14)),
+        () -> assertEquals(List.of(new Point(1, 3), new Point(14, 51)), soaMap.values()),
+        () -> assertGeneratedAtCompileTime(soaMap.values().getClass())
+    );
+  }
+
+  @StructOfArray
+  public record Segment(Point start, Point end) {}
+
+  @Test
+  public void nestedRecord() {
+    var soaList = StructOfArrayList.of(lookup(), Segment.class);
+    soaList.add(new Segment(new Point(1, 2), new Point(3, 4)));
+    assertAll(
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(List.of(new Segment(new Point(1, 2), new Point(3, 4))), soaList),
+        () -> assertEquals(3, soaList.intColumn("end.x").getInt(0))
+    );
+  }
+
+  @StructOfArray
+  @PackedBooleans
+  public record Flags(boolean visible, int id, boolean enabled) {}
+
+  @Test
+  public void packedBooleans() throws NoSuchFieldException {
+    var soaList = StructOfArrayList.of(lookup(), Flags.class);
+    soaList.add(new Flags(true, 1, false));
+    soaList.add(new Flags(false, 2, true));
+    var field = soaList.getClass().getDeclaredField("array0");
+    assertAll(
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(long[].class, field.getType()),
+        () -> assertEquals(List.of(new Flags(true, 1, false), new Flags(false, 2, true)), soaList)
+    );
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+
+  @StructOfArray
+  public record Pixel(int x, Color color) {}
+
+  @Test
+  public void enumComponents() throws NoSuchFieldException {
+    var soaList = StructOfArrayList.of(lookup(), Pixel.class);
+    soaList.add(new Pixel(1, Color.RED));
+    soaList.add(new Pixel(2, null));
+    var field = soaList.getClass().getDeclaredField("array1");
+    assertAll(
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(byte[].class, field.getType()),
+        () -> assertEquals(List.of(new Pixel(1, Color.RED), new Pixel(2, null)), soaList)
+    );
+  }
+
+  @StructOfArray
+  public record Customer(String name, @DictionaryEncoded String country) {}
+
+  @Test
+  public void dictionaryEncodedComponents() throws NoSuchFieldException {
+    var soaList = StructOfArrayList.of(lookup(), Customer.class);
+    soaList.add(new Customer("Ana", "France"));
+    soaList.add(new Customer("Bob", null));
+    var field = soaList.getClass().getDeclaredField("array1");
+    assertAll(
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(int[].class, field.getType()),
+        () -> assertEquals(List.of(new Customer("Ana", "France"), new Customer("Bob", null)), soaList)
+    );
+  }
+
+  @Test
+  public void offHeapList() {
+    try(var soaList = OffHeapStructOfArrayList.of(lookup(), Point.class)) {
+      soaList.add(new Point(1, 3));
+      assertAll(
+          () -> assertGeneratedAtCompileTime(soaList.getClass()),
+          () -> assertEquals(List.of(new Point(1, 3)), soaList)
+      );
+    }
+  }
+
+  public record Pair(int first, int second) {}
+
+  // a class loader that sees the library and the test classes but not ASM
+  private static ClassLoader classLoaderWithoutASM() {
+    var libraryClasses = RT.class.getProtectionDomain().getCodeSource().getLocation();
+    var testClasses = StructOfArrayProcessorTest.class.getProtectionDomain().getCodeSource().getLocation();
+    return new URLClassLoader(new URL[] { libraryClasses, testClasses }, ClassLoader.getPlatformClassLoader());
+  }
+
+  private static Object newList(ClassLoader loader, Class<?> recordType) throws Throwable {
+    var listClass = loader.loadClass(StructOfArrayList.class.getName());
+    var recordLookup = privateLookupIn(recordType, lookup());
+    try {
+      return listClass.getMethod("of", Lookup.class, Class.class).invoke(null, recordLookup, recordType);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Test
+  public void listWithoutASM() throws Throwable {
+    var loader = classLoaderWithoutASM();
+    assertThrows(ClassNotFoundException.class, () -> loader.loadClass("org.objectweb.asm.ClassVisitor"));
+    var pointClass = loader.loadClass(Point.class.getName());
+    var soaList = (List<?>) newList(loader, pointClass);
+    var point = pointClass.getConstructor(int.class, int.class).newInstance(1, 3);
+    @SuppressWarnings("unchecked")
+    var list = (List<Object>) soaList;
+    list.add(point);
+    assertAll(
+        () -> assertGeneratedAtCompileTime(soaList.getClass()),
+        () -> assertEquals(List.of(point), soaList)
+    );
+  }
+
+  @Test
+  public void listWithoutASMNotAnnotated() throws ClassNotFoundException {
+    var loader = classLoaderWithoutASM();
+    var pairClass = loader.loadClass(Pair.class.getName());
+    var error = assertThrows(LinkageError.class, () -> newList(loader, pairClass));
+    assertTrue(error.getMessage().contains("ASM"));
+  }
+}